@@ -71,6 +71,20 @@ public class IrrKlangSingleton {
 	}
 	
 	
+	/**
+	 * @return The name of the irrKlang library without prefix and suffix.
+	 */
+	public static String getLibraryName() {
+		String operatingSystem = System.getProperty("os.name");
+		
+		if (operatingSystem.contains("Windows")) {
+			return "irrKlang";
+		} else if (operatingSystem.contains("Mac OS")) {
+			return "irrklang";
+		}
+		return "IrrKlang";
+	}
+	
 	public static String getLibraryDirectory() {
 		String path = null;
 		try {
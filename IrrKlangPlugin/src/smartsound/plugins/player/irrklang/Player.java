@@ -17,7 +17,14 @@
 
 package smartsound.plugins.player.irrklang;
 
+import smartsound.plugins.player.IPlayer;
+import smartsound.plugins.player.IPlayerListener;
 import smartsound.plugins.player.ISound;
+import smartsound.plugins.player.NativeResource;
+import smartsound.plugins.player.NativeResourceTracker;
+import smartsound.plugins.player.PlayerEventPoller;
+import smartsound.plugins.player.PlayerEventSupport;
+import smartsound.plugins.player.PlayerState;
 
 public class Player implements smartsound.plugins.player.IPlayer {
 
@@ -25,9 +32,13 @@ public class Player implements smartsound.plugins.player.IPlayer {
 	private IrrKlang_Sound jirrklang_sound; 
 	private ISound sound;
 	private int startTime;
+	private int length = -1;
+	private final PlayerEventSupport events = new PlayerEventSupport(this);
+	private final NativeResource resource;
 	
-	Player(IrrKlang_Sound jirrklang_sound, ISound sound) {
+	Player(IrrKlang_Sound jirrklang_sound, ISound sound, NativeResourceTracker tracker) {
 		this.jirrklang_sound = jirrklang_sound;
+		this.resource = new SoundResource(this, tracker, jirrklang_sound, sound);
 		this.sound = sound;
 		this.startTime = sound.getStartTime();
 		
@@ -51,10 +62,14 @@ public class Player implements smartsound.plugins.player.IPlayer {
 
 	@Override
 	public void stop() {
-		//TODO Free ressources
 		jirrklang_sound.stop();
 	}
 
+	@Override
+	public void release() {
+		resource.release();
+	}
+
 	@Override
 	public float getVolume() {
 		//TODO adjust scale
@@ -67,6 +82,12 @@ public class Player implements smartsound.plugins.player.IPlayer {
 		jirrklang_sound.setVolume(volume);
 	}
 
+	@Override
+	public boolean slideVolume(float volume, int duration) {
+		// Not supported by irrKlang
+		return false;
+	}
+
 	@Override
 	public float getPan() {
 		//TODO adjust scale
@@ -108,11 +129,74 @@ public class Player implements smartsound.plugins.player.IPlayer {
 
 	@Override
 	public int getPlayLength() {
-		return Math.min(jirrklang_sound.getPlayLength(), sound.getEndTime()) - startTime;
+		if (length < 0) {
+			// The length of a sound never changes, so it is determined once
+			length = Math.min(jirrklang_sound.getPlayLength(), sound.getEndTime()) - startTime;
+		}
+		return length;
+	}
+
+	/**
+	 * Fills in a snapshot of this player. The length is cached, so only the
+	 * position, finished and paused state cross the native boundary.
+	 * @param state The snapshot.
+	 */
+	void getState(PlayerState state) {
+		state.set(jirrklang_sound.getPlayPosition() - startTime, getPlayLength(),
+				jirrklang_sound.isFinished(), jirrklang_sound.getIsPaused());
 	}
 	
 	@Override
 	public ISound getPlayListEntry() {
 		return this.sound;
 	}
+
+	@Override
+	public boolean addPlayerListener(IPlayerListener listener) {
+		// The wrapper library does not expose the stop event receiver of
+		// irrKlang, so the events are found by polling
+		events.addListener(listener);
+		PlayerEventPoller.watch(events);
+		return true;
+	}
+
+	@Override
+	public void removePlayerListener(IPlayerListener listener) {
+		events.removeListener(listener);
+	}
+
+	@Override
+	public void addMarker(int position) {
+		events.addMarker(position);
+	}
+
+	@Override
+	public void removeMarker(int position) {
+		events.removeMarker(position);
+	}
+
+	@Override
+	public boolean queueSuccessor(IPlayer successor, int position) {
+		// irrKlang has no way to start a sound at a position of another one
+		return false;
+	}
+
+	/**
+	 * The sound of the player. The irrKlang wrapper offers no way to drop
+	 * a sound, so it is only stopped, which lets irrKlang reuse its
+	 * source.
+	 */
+	private static class SoundResource extends NativeResource {
+		private final IrrKlang_Sound sound;
+
+		private SoundResource(Player owner, NativeResourceTracker tracker, IrrKlang_Sound sound, ISound entry) {
+			super(owner, tracker, "sound of " + entry.getFilePath());
+			this.sound = sound;
+		}
+
+		@Override
+		protected void free() {
+			sound.stop();
+		}
+	}
 }
\ No newline at end of file
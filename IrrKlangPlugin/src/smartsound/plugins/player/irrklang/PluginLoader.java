@@ -17,12 +17,17 @@
 
 package smartsound.plugins.player.irrklang;
 
+import java.io.File;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import smartsound.common.Tuple;
 
 public class PluginLoader extends smartsound.plugins.player.PluginLoader {
 
+	private static final Logger LOGGER = Logger.getLogger(PluginLoader.class.getName());
+
 	@Override
 	public Class<? extends smartsound.plugins.player.SoundEngine> getEngineClass() {
 		return SoundEngine.class;
@@ -32,5 +37,21 @@ public class PluginLoader extends smartsound.plugins.player.PluginLoader {
 	public List<Tuple<String, String>> neededEnvironment() {
 		return IrrKlangSingleton.getPathVariables();
 	}
+
+	/**
+	 * Loads irrKlang by its path. The wrapper depending on it is loaded by
+	 * JNA from the plugin directory later on.
+	 */
+	@Override
+	public boolean loadLibraries() {
+		File directory = new File(IrrKlangSingleton.getLibraryDirectory());
+		try {
+			loadLibrary(directory, IrrKlangSingleton.getLibraryName());
+		} catch (UnsatisfiedLinkError e) {
+			LOGGER.log(Level.WARNING, "Loading irrKlang from " + directory + " failed", e);
+			return false;
+		}
+		return true;
+	}
 	
 }
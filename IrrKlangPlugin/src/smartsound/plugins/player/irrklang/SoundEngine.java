@@ -17,22 +17,80 @@
 
 package smartsound.plugins.player.irrklang;
 
+import java.io.File;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import smartsound.plugins.player.EngineCapability;
 import smartsound.plugins.player.IPlayer;
 import smartsound.plugins.player.ISound;
+import smartsound.plugins.player.NativeResourceTracker;
+import smartsound.plugins.player.PlayerState;
 
 public class SoundEngine extends smartsound.plugins.player.SoundEngine {
 
+	/**
+	 * The stream modes of irrKlang: detected by irrKlang or decoded
+	 * completely into memory.
+	 */
+	private static final int ESM_AUTO_DETECT = 0;
+	private static final int ESM_NO_STREAMING = 2;
+
+	/**
+	 * The default maximum size in bytes of a file which is decoded
+	 * completely into memory.
+	 */
+	public static final long DEFAULT_MAX_CLIP_SIZE = 512 * 1024;
+
+	/**
+	 * The system property which sets the maximum size in bytes of a file
+	 * which is decoded completely into memory.
+	 */
+	public static final String MAX_CLIP_SIZE_PROPERTY = "smartsound.irrklang.maxClipSize";
+
+	/**
+	 * irrKlang cannot slide the volume or queue a sound, so fades and
+	 * transitions are done by the core.
+	 */
+	private static final Set<EngineCapability> CAPABILITIES = Collections.unmodifiableSet(EnumSet.of(
+			EngineCapability.PLAYER_EVENTS, EngineCapability.SAMPLE_CACHE, EngineCapability.BULK_STATE,
+			EngineCapability.PLAYBACK_SPEED));
+
 	IrrKlang_SoundEngine engine = new IrrKlang_SoundEngine(); 
+
+	private final NativeResourceTracker tracker = new NativeResourceTracker("irrKlang");
+
+	private final long maxClipSize = Long.getLong(MAX_CLIP_SIZE_PROPERTY, DEFAULT_MAX_CLIP_SIZE);
 	
+	/**
+	 * Short clips are not streamed: irrKlang decodes them once and keeps
+	 * them in memory as sound source for later plays.
+	 */
 	@Override
 	public IPlayer getPlayer2D(ISound sound) {
-		return new Player(engine.play2D(sound.getFilePath(), false, true, true, 0, true), sound);
+		String filePath = sound.getFilePath();
+		int streamMode = new File(filePath).length() <= maxClipSize ? ESM_NO_STREAMING : ESM_AUTO_DETECT;
+		return new Player(engine.play2D(filePath, false, true, true, streamMode, true), sound, tracker);
 	}
 
+	@Override
+	public Set<EngineCapability> getCapabilities() {
+		return CAPABILITIES;
+	}
+
+	@Override
+	public int getLiveHandleCount() {
+		return tracker.getLiveCount();
+	}
+
+
+	/**
+	 * 3D sounds are not supported yet, they are played as 2D sounds.
+	 */
 	@Override
 	public IPlayer getPlayer3D(ISound sound) {
-		//TODO: implement
-		return null;
+		return getPlayer2D(sound);
 	}
 
 	@Override
@@ -50,4 +108,18 @@ public class SoundEngine extends smartsound.plugins.player.SoundEngine {
 		engine.stopAllSounds();
 	}
 
+	@Override
+	public void getPlayerStates(IPlayer[] players, PlayerState[] states, int count) {
+		IPlayer player;
+		for (int i = 0; i < count; i++) {
+			player = players[i];
+			if (player instanceof Player) {
+				((Player) player).getState(states[i]);
+			} else {
+				states[i].set(player.getPlayPosition(), player.getPlayLength(),
+						player.isFinished(), player.getPaused());
+			}
+		}
+	}
+
 }
@@ -0,0 +1,203 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player.javasound;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Decodes a sound file into frames of float samples with the sample rate of
+ * the file and one or two channels. Every format <c>javax.sound.sampled</c>
+ * can read is supported; further formats, e.g. mp3, are added by putting a
+ * service provider jar on the class path.
+ * @author Andr Becker
+ *
+ */
+class Decoder {
+
+	private final File file;
+	private final AudioFormat format;
+	private final int channels;
+	private long frameLength;
+	private AudioInputStream stream;
+	private long framePosition = 0;
+	private byte[] bytes = new byte[0];
+	private boolean closed = false;
+
+	/**
+	 * Opens a sound file.
+	 * @param filePath The path of the file.
+	 * @throws IOException If the file cannot be read.
+	 * @throws UnsupportedAudioFileException If the format of the file is
+	 * 	not supported.
+	 * @throws IllegalArgumentException If the file cannot be decoded to PCM.
+	 */
+	Decoder(final String filePath) throws IOException, UnsupportedAudioFileException {
+		file = new File(filePath);
+		stream = open();
+		format = stream.getFormat();
+		channels = Math.min(format.getChannels(), 2);
+		frameLength = stream.getFrameLength();
+		if (frameLength == AudioSystem.NOT_SPECIFIED) {
+			frameLength = getFrameLengthFromProperties();
+		}
+	}
+
+	private AudioInputStream open() throws IOException, UnsupportedAudioFileException {
+		AudioInputStream source = AudioSystem.getAudioInputStream(file);
+		AudioFormat sourceFormat = source.getFormat();
+		AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sourceFormat.getSampleRate(), 16,
+				sourceFormat.getChannels(), sourceFormat.getChannels() * 2, sourceFormat.getSampleRate(), false);
+		if (sourceFormat.matches(pcm)) {
+			return source;
+		}
+		try {
+			return AudioSystem.getAudioInputStream(pcm, source);
+		} catch (IllegalArgumentException e) {
+			source.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Decoders of compressed formats usually do not know the number of
+	 * frames but publish the duration as file property.
+	 */
+	private long getFrameLengthFromProperties() throws IOException {
+		try {
+			Map<String, Object> properties = AudioSystem.getAudioFileFormat(file).properties();
+			Object duration = properties.get("duration");
+			if (duration instanceof Long) {
+				return (long) ((Long) duration * (double) format.getSampleRate() / 1000000);
+			}
+		} catch (UnsupportedAudioFileException e) {
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The sample rate in frames per second.
+	 */
+	float getSampleRate() {
+		return format.getSampleRate();
+	}
+
+	/**
+	 * @return The number of channels of the decoded frames, 1 or 2.
+	 * 	Further channels of the file are dropped.
+	 */
+	int getChannels() {
+		return channels;
+	}
+
+	/**
+	 * @return The number of frames of the file or -1 if it is not known
+	 * 	before the end of the file has been reached.
+	 */
+	synchronized long getFrameLength() {
+		return frameLength;
+	}
+
+	/**
+	 * Decodes the next frames.
+	 * @param buffer The buffer the samples are written to, interleaved if
+	 * 	there are two channels.
+	 * @param frames The maximum number of frames to decode.
+	 * @return The number of decoded frames or -1 at the end of the file.
+	 * @throws IOException If the file cannot be read.
+	 */
+	synchronized int read(final float[] buffer, final int frames) throws IOException {
+		if (closed) {
+			return -1;
+		}
+		int frameSize = format.getFrameSize();
+		if (bytes.length < frames * frameSize) {
+			bytes = new byte[frames * frameSize];
+		}
+		int length = stream.read(bytes, 0, frames * frameSize);
+		if (length <= 0) {
+			frameLength = framePosition;
+			return -1;
+		}
+		int count = length / frameSize;
+		int sample = 0;
+		for (int frame = 0; frame < count; frame++) {
+			int offset = frame * frameSize;
+			for (int channel = 0; channel < channels; channel++) {
+				int value = (bytes[offset + 1] << 8) | (bytes[offset] & 0xff);
+				buffer[sample++] = value / 32768f;
+				offset += 2;
+			}
+		}
+		framePosition += count;
+		return count;
+	}
+
+	/**
+	 * Continues decoding at a given frame. The file is opened again and
+	 * decoded up to the frame, since compressed formats do not allow to
+	 * seek.
+	 * @param frame The index of the frame.
+	 * @throws IOException If the file cannot be read.
+	 */
+	synchronized void seek(final long frame) throws IOException {
+		if (closed) {
+			return;
+		}
+		if (frame < framePosition) {
+			stream.close();
+			try {
+				stream = open();
+			} catch (UnsupportedAudioFileException e) {
+				throw new IOException(e);
+			}
+			framePosition = 0;
+		}
+		int frameSize = format.getFrameSize();
+		long remaining = (frame - framePosition) * frameSize;
+		while (remaining > 0) {
+			long skipped = stream.skip(remaining);
+			if (skipped <= 0) {
+				break;
+			}
+			remaining -= skipped;
+		}
+		framePosition = frame - remaining / frameSize;
+	}
+
+	/**
+	 * Closes the file. Reading afterwards returns the end of the file.
+	 */
+	synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			stream.close();
+		} catch (IOException e) {
+		}
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player.javasound;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decodes ahead for all players of an engine, so that the mixer never
+ * waits for file I/O. Players request a refill when their buffer is half
+ * empty and are only referenced until it has been refilled. For offline
+ * rendering the thread is not started and the buffers are refilled on the
+ * requesting thread instead.
+ * @author Andr Becker
+ *
+ */
+class DecoderThread extends Thread {
+
+	private static final Logger LOGGER = Logger.getLogger(DecoderThread.class.getName());
+
+	private final LinkedBlockingQueue<Player> requests = new LinkedBlockingQueue<Player>();
+	private final boolean synchronous;
+
+	/**
+	 * @param synchronous If <c>true</c> the buffers are refilled on the
+	 * 	requesting thread.
+	 */
+	DecoderThread(final boolean synchronous) {
+		super("JavaSoundDecoder");
+		this.synchronous = synchronous;
+		setDaemon(true);
+	}
+
+	/**
+	 * Requests a player's buffer to be refilled.
+	 * @param player The player.
+	 */
+	void request(final Player player) {
+		if (synchronous) {
+			player.refill(new float[2 * Player.CHUNK_FRAMES]);
+		} else {
+			requests.offer(player);
+		}
+	}
+
+	@Override
+	public void run() {
+		float[] chunk = new float[2 * Player.CHUNK_FRAMES];
+		while (true) {
+			Player player;
+			try {
+				player = requests.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			try {
+				player.refill(chunk);
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Decoding " + player.getPlayListEntry().getFilePath() + " failed", e);
+			}
+			// The player must not stay reachable while waiting for the next request
+			player = null;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player.javasound;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * The destination of the mixed output of the Java sound engine.
+ * @author Andr Becker
+ *
+ */
+public interface IAudioSink {
+
+	/**
+	 * Opens the sink. Called by the mixer's thread before anything is
+	 * written.
+	 * @param format The format of the data written.
+	 * @throws LineUnavailableException If the sink cannot be opened.
+	 */
+	public void open(AudioFormat format) throws LineUnavailableException;
+
+	/**
+	 * Writes mixed frames. The call blocks until the sink has taken the
+	 * data, so the sink determines how fast the output is mixed.
+	 * @param data The frames in the format given to <c>open</c>.
+	 * @param length The number of bytes to write.
+	 */
+	public void write(byte[] data, int length);
+
+	/**
+	 * Closes the sink.
+	 */
+	public void close();
+}
@@ -0,0 +1,70 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player.javasound;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Writes the output to the default <c>SourceDataLine</c>, i.e. to the sound
+ * card. One line is used for all players.
+ * @author Andr Becker
+ *
+ */
+public class LineSink implements IAudioSink {
+
+	/**
+	 * The default number of blocks buffered by the line. It determines the
+	 * latency of the output.
+	 */
+	public static final int DEFAULT_BUFFERED_BLOCKS = 4;
+
+	private final int bufferedBlocks;
+	private SourceDataLine line;
+
+	public LineSink() {
+		this(DEFAULT_BUFFERED_BLOCKS);
+	}
+
+	/**
+	 * @param bufferedBlocks The number of blocks buffered by the line.
+	 */
+	public LineSink(final int bufferedBlocks) {
+		this.bufferedBlocks = bufferedBlocks;
+	}
+
+	@Override
+	public void open(final AudioFormat format) throws LineUnavailableException {
+		line = AudioSystem.getSourceDataLine(format);
+		line.open(format, bufferedBlocks * Mixer.BLOCK_FRAMES * format.getFrameSize());
+		line.start();
+	}
+
+	@Override
+	public void write(final byte[] data, final int length) {
+		line.write(data, 0, length);
+	}
+
+	@Override
+	public void close() {
+		line.drain();
+		line.close();
+	}
+}
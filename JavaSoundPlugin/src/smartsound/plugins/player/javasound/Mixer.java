@@ -0,0 +1,227 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player.javasound;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * Mixes all playing players block by block into one stereo output. The
+ * samples are mixed as floats and converted to 16 bit PCM once per block,
+ * which is written to an <c>IAudioSink</c> by the mixer's thread. Writing
+ * blocks until the sink takes the data, so the sink determines the pace.
+ * @author Andr Becker
+ *
+ */
+class Mixer {
+
+	private static final Logger LOGGER = Logger.getLogger(Mixer.class.getName());
+
+	/**
+	 * The format of the output.
+	 */
+	static final AudioFormat FORMAT = new AudioFormat(44100, 16, 2, true, false);
+
+	/**
+	 * The number of frames mixed at once.
+	 */
+	static final int BLOCK_FRAMES = 512;
+
+	private final List<Player> players = new ArrayList<Player>();
+	private Player[] snapshot = new Player[0];
+	private final List<Player> mixedPlayers = new ArrayList<Player>();
+	private final List<Player> successors = new ArrayList<Player>();
+	private final List<Integer> successorOffsets = new ArrayList<Integer>();
+	private volatile float masterVolume = 1.0f;
+	private volatile boolean paused = false;
+	private Thread thread;
+
+	/**
+	 * @return The sample rate of the output in frames per second.
+	 */
+	float getSampleRate() {
+		return FORMAT.getSampleRate();
+	}
+
+	/**
+	 * Starts the thread which mixes into the sink. If the sink cannot be
+	 * opened, e.g. because there is no audio device, the output is
+	 * discarded.
+	 * @param sink The sink.
+	 */
+	synchronized void start(final IAudioSink sink) {
+		if (thread != null) {
+			return;
+		}
+		thread = new Thread("JavaSoundMixer") {
+			@Override
+			public void run() {
+				IAudioSink output = sink;
+				try {
+					output.open(FORMAT);
+				} catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+					// Without an audio device there is no matching line at all
+					LOGGER.log(Level.WARNING, "The audio output is not available, the output is discarded", e);
+					output = new NullSink();
+					try {
+						output.open(FORMAT);
+					} catch (LineUnavailableException e1) {
+						return;
+					}
+				}
+				float[] block = new float[2 * BLOCK_FRAMES];
+				byte[] bytes = new byte[FORMAT.getFrameSize() * BLOCK_FRAMES];
+				try {
+					while (!isInterrupted()) {
+						render(block, BLOCK_FRAMES);
+						toPCM(block, bytes, BLOCK_FRAMES);
+						output.write(bytes, bytes.length);
+					}
+				} finally {
+					output.close();
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+	}
+
+	/**
+	 * Adds a player which has been started.
+	 * @param player The player.
+	 */
+	synchronized void add(final Player player) {
+		if (!player.mixed) {
+			player.mixed = true;
+			players.add(player);
+		}
+	}
+
+	/**
+	 * Starts a queued successor within the block being mixed. Called by a
+	 * player while it is mixed.
+	 * @param successor The successor.
+	 * @param offset The index of the output frame the successor starts at.
+	 */
+	void startSuccessor(final Player successor, final int offset) {
+		successors.add(successor);
+		successorOffsets.add(offset);
+	}
+
+	/**
+	 * Mixes the next block of frames. Called by the mixer's thread or by
+	 * the thread rendering offline only.
+	 * @param block The interleaved stereo output.
+	 * @param frames The number of frames.
+	 */
+	void render(final float[] block, final int frames) {
+		Arrays.fill(block, 0, 2 * frames, 0);
+		if (paused) {
+			return;
+		}
+		int count;
+		synchronized (this) {
+			count = players.size();
+			snapshot = players.toArray(snapshot);
+		}
+		for (int i = 0; i < count; i++) {
+			snapshot[i].mix(block, 0, frames);
+			mixedPlayers.add(snapshot[i]);
+		}
+		for (int i = 0; i < successors.size(); i++) {
+			Player successor = successors.get(i);
+			boolean playing;
+			synchronized (this) {
+				playing = successor.mixed;
+			}
+			if (!playing) {
+				successor.startAsSuccessor();
+				successor.mix(block, successorOffsets.get(i), frames);
+				mixedPlayers.add(successor);
+				add(successor);
+			}
+		}
+		successors.clear();
+		successorOffsets.clear();
+		Arrays.fill(snapshot, 0, count, null);
+		synchronized (this) {
+			Iterator<Player> it = players.iterator();
+			Player player;
+			while (it.hasNext()) {
+				player = it.next();
+				if (!player.isActive()) {
+					player.mixed = false;
+					it.remove();
+				}
+			}
+		}
+		for (Player player : mixedPlayers) {
+			player.fireEvents();
+		}
+		mixedPlayers.clear();
+	}
+
+	/**
+	 * Converts a mixed block to 16 bit PCM, applying the master volume.
+	 */
+	void toPCM(final float[] block, final byte[] bytes, final int frames) {
+		float gain = masterVolume;
+		for (int i = 0; i < 2 * frames; i++) {
+			float sample = Math.max(-1, Math.min(1, block[i] * gain));
+			int value = (int) (sample * 32767);
+			bytes[2 * i] = (byte) value;
+			bytes[2 * i + 1] = (byte) (value >> 8);
+		}
+	}
+
+	void setMasterVolume(final float volume) {
+		masterVolume = volume;
+	}
+
+	void setPaused(final boolean paused) {
+		this.paused = paused;
+	}
+
+	/**
+	 * Stops all players which are playing.
+	 */
+	void stopAll() {
+		Player[] playing;
+		synchronized (this) {
+			playing = players.toArray(new Player[players.size()]);
+		}
+		for (Player player : playing) {
+			player.stop();
+		}
+	}
+
+	/**
+	 * @return The number of players being mixed.
+	 */
+	synchronized int getPlayerCount() {
+		return players.size();
+	}
+}
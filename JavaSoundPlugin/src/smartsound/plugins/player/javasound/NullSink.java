@@ -0,0 +1,74 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player.javasound;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Discards the output, e.g. for tests on machines without audio hardware.
+ * By default it takes the data as fast as a sound card would, so that the
+ * players advance in real time.
+ * @author Andr Becker
+ *
+ */
+public class NullSink implements IAudioSink {
+
+	private final boolean realTime;
+	private double nanosPerByte;
+	private long start;
+	private long written;
+
+	public NullSink() {
+		this(true);
+	}
+
+	/**
+	 * @param realTime If <c>false</c> the output is taken as fast as it is
+	 * 	mixed.
+	 */
+	public NullSink(final boolean realTime) {
+		this.realTime = realTime;
+	}
+
+	@Override
+	public void open(final AudioFormat format) {
+		nanosPerByte = 1e9 / (format.getFrameRate() * format.getFrameSize());
+		start = System.nanoTime();
+		written = 0;
+	}
+
+	@Override
+	public void write(final byte[] data, final int length) {
+		written += length;
+		if (!realTime) {
+			return;
+		}
+		long wait = start + (long) (written * nanosPerByte) - System.nanoTime();
+		if (wait > 0) {
+			try {
+				Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player.javasound;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+import smartsound.plugins.player.IOfflineRenderer;
+
+/**
+ * A Java sound engine without output. The players are decoded and mixed
+ * by the thread calling <c>render</c>, as fast as it calls it. They are
+ * also opened by the calling thread, so they start at the exact time.
+ * @author Andr Becker
+ *
+ */
+public class OfflineSoundEngine extends SoundEngine implements IOfflineRenderer {
+
+	private final float[] block = new float[2 * Mixer.BLOCK_FRAMES];
+	private final byte[] bytes = new byte[Mixer.FORMAT.getFrameSize() * Mixer.BLOCK_FRAMES];
+
+	public OfflineSoundEngine() {
+		super(new DecoderThread(true), "JavaSound offline");
+	}
+
+	@Override
+	protected Executor getIOExecutor() {
+		return new Executor() {
+			@Override
+			public void execute(final Runnable command) {
+				command.run();
+			}
+		};
+	}
+
+	@Override
+	public float getSampleRate() {
+		return mixer.getSampleRate();
+	}
+
+	@Override
+	public synchronized void render(final ByteBuffer buffer, final int frames) {
+		int remaining = frames;
+		int count;
+		while (remaining > 0) {
+			count = Math.min(remaining, Mixer.BLOCK_FRAMES);
+			mixer.render(block, count);
+			mixer.toPCM(block, bytes, count);
+			buffer.put(bytes, 0, count * Mixer.FORMAT.getFrameSize());
+			remaining -= count;
+		}
+	}
+
+	/**
+	 * The mixer has no thread and its players have been released, so
+	 * there is nothing left to free.
+	 */
+	@Override
+	public void release() {
+	}
+}
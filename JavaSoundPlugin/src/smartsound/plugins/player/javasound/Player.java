@@ -0,0 +1,492 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player.javasound;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import smartsound.plugins.player.IPlayer;
+import smartsound.plugins.player.IPlayerListener;
+import smartsound.plugins.player.ISound;
+import smartsound.plugins.player.NativeResource;
+import smartsound.plugins.player.NativeResourceTracker;
+import smartsound.plugins.player.PlayerEventSupport;
+
+/**
+ * An <c>IPlayer</c> of the Java sound engine. The <c>DecoderThread</c>
+ * keeps a buffer of decoded frames ahead of the play position, from which
+ * the <c>Mixer</c> resamples the frames to the output rate and adds them to
+ * the output with the gain and pan of the player. Volume slides, markers
+ * and queued successors are handled by the mixer frame by frame, so a
+ * successor starts without any gap.
+ * @author Andr Becker
+ *
+ */
+public class Player implements IPlayer {
+
+	private static final Logger LOGGER = Logger.getLogger(Player.class.getName());
+
+	/**
+	 * The number of milliseconds decoded ahead of the play position. The
+	 * buffer is refilled when it is half empty.
+	 */
+	private static final int BUFFER_LENGTH = 1000;
+
+	/**
+	 * The maximum number of frames decoded at once.
+	 */
+	static final int CHUNK_FRAMES = 4096;
+
+	private final Mixer mixer;
+	private final DecoderThread decoderThread;
+	private final ISound sound;
+	private final Decoder decoder;
+	private final NativeResource resource;
+	private final PlayerEventSupport events = new PlayerEventSupport(this);
+	private final float sampleRate;
+	private final int channels;
+
+	/**
+	 * The ring buffer of decoded frames. A seek increases the generation,
+	 * so that frames decoded before are dropped.
+	 */
+	private final float[] buffer;
+	private final int capacity;
+	private int readIndex = 0;
+	private int fill = 0;
+	private long generation = 0;
+	private long seekFrame = -1;
+	private boolean endOfStream = false;
+	private boolean refillRequested = false;
+
+	private boolean started = false;
+	private boolean paused = false;
+	private boolean stopped = false;
+	private boolean finished = false;
+
+	/**
+	 * The frame played is interpolated between the frames <c>previous</c>
+	 * and <c>current</c>. <c>framePosition</c> is the index of the previous
+	 * frame and <c>phase</c> the fraction between both.
+	 */
+	private long framePosition;
+	private double phase;
+	private float previousLeft;
+	private float previousRight;
+	private float currentLeft;
+	private float currentRight;
+
+	private float volume = 1.0f;
+	private float slideStep;
+	private float slideTarget;
+	private int slideFrames = 0;
+	private float pan = 0;
+	private float speed = 1.0f;
+
+	private Player successor;
+	private long successorFrame;
+
+	private boolean finishedEvent = false;
+	private final List<Integer> reachedMarkers = new ArrayList<Integer>();
+
+	/**
+	 * Guarded by the lock of the mixer.
+	 */
+	boolean mixed = false;
+
+	Player(final Mixer mixer, final DecoderThread decoderThread, final ISound sound, final Decoder decoder,
+			final NativeResourceTracker tracker) {
+		this.mixer = mixer;
+		this.decoderThread = decoderThread;
+		this.sound = sound;
+		this.decoder = decoder;
+		this.resource = new DecoderResource(this, tracker, decoder, sound);
+		sampleRate = decoder.getSampleRate();
+		channels = decoder.getChannels();
+		capacity = Math.max(2 * CHUNK_FRAMES, (int) (sampleRate * BUFFER_LENGTH / 1000));
+		buffer = new float[capacity * channels];
+		setPlayPosition(Math.max(0, sound.getStartTime()));
+	}
+
+	private long toFrames(final int milliseconds) {
+		return (long) ((double) milliseconds * sampleRate / 1000);
+	}
+
+	private int toMilliseconds(final double frames) {
+		return (int) (frames * 1000 / sampleRate);
+	}
+
+	@Override
+	public ISound getPlayListEntry() {
+		return sound;
+	}
+
+	@Override
+	public void play() {
+		synchronized (this) {
+			if (resource.isReleased()) {
+				return;
+			}
+			started = true;
+			paused = false;
+			stopped = false;
+		}
+		mixer.add(this);
+	}
+
+	@Override
+	public synchronized void pause() {
+		paused = true;
+	}
+
+	@Override
+	public synchronized boolean getPaused() {
+		return paused;
+	}
+
+	@Override
+	public synchronized void stop() {
+		stopped = true;
+	}
+
+	@Override
+	public void release() {
+		stop();
+		resource.release();
+	}
+
+	@Override
+	public synchronized float getVolume() {
+		return volume;
+	}
+
+	@Override
+	public synchronized void setVolume(final float volume) {
+		this.volume = volume;
+		slideFrames = 0;
+	}
+
+	@Override
+	public synchronized boolean slideVolume(final float volume, final int duration) {
+		slideFrames = (int) ((long) duration * mixer.getSampleRate() / 1000);
+		if (slideFrames <= 0) {
+			this.volume = volume;
+			slideFrames = 0;
+		} else {
+			slideTarget = volume;
+			slideStep = (volume - this.volume) / slideFrames;
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized float getPan() {
+		return pan;
+	}
+
+	@Override
+	public synchronized void setPan(final float pan) {
+		this.pan = Math.max(-1, Math.min(1, pan));
+	}
+
+	@Override
+	public synchronized boolean isFinished() {
+		return finished || stopped;
+	}
+
+	@Override
+	public synchronized int getPlayPosition() {
+		return toMilliseconds(framePosition + phase);
+	}
+
+	@Override
+	public void setPlayPosition(final int position) {
+		synchronized (this) {
+			long frame = toFrames(position);
+			generation++;
+			readIndex = 0;
+			fill = 0;
+			endOfStream = false;
+			finished = false;
+			seekFrame = frame;
+			// Two frames have to be read before the first one is played
+			framePosition = frame - 2;
+			phase = 2;
+			previousLeft = previousRight = currentLeft = currentRight = 0;
+		}
+		requestRefill();
+	}
+
+	@Override
+	public synchronized float getPlaybackSpeed() {
+		return speed;
+	}
+
+	@Override
+	public synchronized void setPlaybackSpeed(final float speed) {
+		if (speed > 0) {
+			this.speed = speed;
+		}
+	}
+
+	@Override
+	public int getPlayLength() {
+		long length = decoder.getFrameLength();
+		return length < 0 ? -1 : toMilliseconds(length);
+	}
+
+	@Override
+	public boolean addPlayerListener(final IPlayerListener listener) {
+		events.addListener(listener);
+		return true;
+	}
+
+	@Override
+	public void removePlayerListener(final IPlayerListener listener) {
+		events.removeListener(listener);
+	}
+
+	@Override
+	public void addMarker(final int position) {
+		events.addMarker(position);
+	}
+
+	@Override
+	public void removeMarker(final int position) {
+		events.removeMarker(position);
+	}
+
+	@Override
+	public synchronized boolean queueSuccessor(final IPlayer successor, final int position) {
+		if (successor == null) {
+			this.successor = null;
+			return true;
+		}
+		if (!(successor instanceof Player) || ((Player) successor).mixer != mixer) {
+			return false;
+		}
+		this.successor = (Player) successor;
+		successorFrame = position < 0 ? -1 : toFrames(position);
+		return true;
+	}
+
+	/**
+	 * @return <c>true</c> if the player has to be mixed.
+	 */
+	synchronized boolean isActive() {
+		return started && !paused && !stopped && !finished;
+	}
+
+	/**
+	 * Starts a queued successor at the position it has been set to.
+	 */
+	synchronized void startAsSuccessor() {
+		if (!resource.isReleased()) {
+			started = true;
+			paused = false;
+			stopped = false;
+		}
+	}
+
+	private void requestRefill() {
+		synchronized (this) {
+			if (refillRequested || resource.isReleased()) {
+				return;
+			}
+			refillRequested = true;
+		}
+		decoderThread.request(this);
+	}
+
+	/**
+	 * Decodes frames until the buffer is full. Called by the
+	 * <c>DecoderThread</c>.
+	 * @param chunk A buffer for one chunk of decoded frames.
+	 */
+	void refill(final float[] chunk) {
+		while (true) {
+			long chunkGeneration;
+			long seek;
+			int frames;
+			synchronized (this) {
+				if (resource.isReleased() || (seekFrame < 0 && (endOfStream || capacity - fill < CHUNK_FRAMES))) {
+					refillRequested = false;
+					return;
+				}
+				chunkGeneration = generation;
+				seek = seekFrame;
+				seekFrame = -1;
+				frames = Math.min(CHUNK_FRAMES, capacity - fill);
+			}
+			int count;
+			try {
+				if (seek >= 0) {
+					decoder.seek(seek);
+				}
+				count = decoder.read(chunk, frames);
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Decoding " + sound.getFilePath() + " failed", e);
+				count = -1;
+			}
+			synchronized (this) {
+				if (chunkGeneration != generation) {
+					continue;
+				}
+				if (count < 0) {
+					endOfStream = true;
+					continue;
+				}
+				int writeIndex = (readIndex + fill) % capacity;
+				for (int i = 0; i < count; i++) {
+					System.arraycopy(chunk, i * channels, buffer, writeIndex * channels, channels);
+					writeIndex = (writeIndex + 1) % capacity;
+				}
+				fill += count;
+			}
+		}
+	}
+
+	/**
+	 * Moves on to the next decoded frame.
+	 * @return <c>false</c> if no frame is available.
+	 */
+	private boolean nextFrame() {
+		if (fill == 0) {
+			return false;
+		}
+		previousLeft = currentLeft;
+		previousRight = currentRight;
+		int index = readIndex * channels;
+		currentLeft = buffer[index];
+		currentRight = channels == 2 ? buffer[index + 1] : currentLeft;
+		readIndex = (readIndex + 1) % capacity;
+		fill--;
+		framePosition++;
+		return true;
+	}
+
+	/**
+	 * Adds the player's frames to a block of output frames. Called by the
+	 * <c>Mixer</c>.
+	 * @param output The interleaved stereo output.
+	 * @param offset The index of the first output frame.
+	 * @param frames The number of frames of the block.
+	 */
+	synchronized void mix(final float[] output, final int offset, final int frames) {
+		if (!isActive()) {
+			return;
+		}
+		int startPosition = toMilliseconds(framePosition + phase);
+		double step = sampleRate * speed / mixer.getSampleRate();
+		float leftGain = pan > 0 ? 1 - pan : 1;
+		float rightGain = pan < 0 ? 1 + pan : 1;
+		int frame;
+		for (frame = offset; frame < frames; frame++) {
+			while (phase >= 1) {
+				if (!nextFrame()) {
+					if (endOfStream) {
+						finish(frame);
+					}
+					// Otherwise the decoder is late, the rest of the block stays silent
+					frame = frames;
+					break;
+				}
+				phase -= 1;
+				if (successor != null && successorFrame >= 0 && framePosition >= successorFrame) {
+					mixer.startSuccessor(successor, frame);
+					successor = null;
+				}
+			}
+			if (frame == frames) {
+				break;
+			}
+			if (slideFrames > 0) {
+				volume = --slideFrames == 0 ? slideTarget : volume + slideStep;
+			}
+			float left = previousLeft + (float) ((currentLeft - previousLeft) * phase);
+			float right = previousRight + (float) ((currentRight - previousRight) * phase);
+			output[2 * frame] += left * leftGain * volume;
+			output[2 * frame + 1] += right * rightGain * volume;
+			phase += step;
+		}
+		int position = toMilliseconds(framePosition + phase);
+		int marker = events.getNextMarker(startPosition);
+		while (marker >= 0 && marker <= position) {
+			reachedMarkers.add(marker);
+			marker = events.getNextMarker(marker);
+		}
+		if (!endOfStream && !refillRequested && fill < capacity / 2) {
+			refillRequested = true;
+			decoderThread.request(this);
+		}
+	}
+
+	private void finish(final int frame) {
+		finished = true;
+		finishedEvent = true;
+		if (successor != null) {
+			mixer.startSuccessor(successor, frame);
+			successor = null;
+		}
+	}
+
+	/**
+	 * Informs the listeners about the markers reached and the end reached
+	 * while mixing. Called by the <c>Mixer</c> after each block.
+	 */
+	void fireEvents() {
+		Integer[] markers;
+		boolean fireFinished;
+		synchronized (this) {
+			if (reachedMarkers.isEmpty() && !finishedEvent) {
+				return;
+			}
+			markers = reachedMarkers.toArray(new Integer[reachedMarkers.size()]);
+			reachedMarkers.clear();
+			fireFinished = finishedEvent;
+			finishedEvent = false;
+		}
+		for (Integer marker : markers) {
+			events.fireMarkerReached(marker);
+		}
+		if (fireFinished) {
+			events.fireFinished();
+		}
+	}
+
+	/**
+	 * The decoder of the player, which keeps the file open.
+	 */
+	private static class DecoderResource extends NativeResource {
+		private final Decoder decoder;
+
+		private DecoderResource(final Player owner, final NativeResourceTracker tracker, final Decoder decoder,
+				final ISound sound) {
+			super(owner, tracker, "decoder of " + sound.getFilePath());
+			this.decoder = decoder;
+		}
+
+		@Override
+		protected void free() {
+			decoder.close();
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player.javasound;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import smartsound.common.Tuple;
+
+public class PluginLoader extends smartsound.plugins.player.PluginLoader {
+
+	@Override
+	public Class<? extends smartsound.plugins.player.SoundEngine> getEngineClass() {
+		return SoundEngine.class;
+	}
+
+	/**
+	 * No native libraries are needed, so the environment stays as it is.
+	 */
+	@Override
+	public List<Tuple<String, String>> neededEnvironment() {
+		return new LinkedList<Tuple<String, String>>();
+	}
+
+	@Override
+	public boolean loadLibraries() {
+		return true;
+	}
+
+}
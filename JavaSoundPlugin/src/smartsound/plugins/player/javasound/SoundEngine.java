@@ -0,0 +1,140 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player.javasound;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import smartsound.plugins.player.EngineCapability;
+import smartsound.plugins.player.IPlayer;
+import smartsound.plugins.player.ISound;
+import smartsound.plugins.player.NativeResourceTracker;
+
+/**
+ * A sound engine written in Java only. All players are mixed by one thread
+ * into one output line, so it needs neither native libraries nor a channel
+ * of the sound card per sound. The output is discarded if there is no
+ * audio device or if the system property <c>smartsound.javasound.sink</c>
+ * is set to <c>null</c>.
+ * @author Andr Becker
+ *
+ */
+public class SoundEngine extends smartsound.plugins.player.SoundEngine {
+
+	private static final Logger LOGGER = Logger.getLogger(SoundEngine.class.getName());
+
+	/**
+	 * The system property which selects the sink.
+	 */
+	public static final String SINK_PROPERTY = "smartsound.javasound.sink";
+
+	/**
+	 * The state of a player is plain Java fields, so there is nothing to
+	 * gain from taking it in bulk.
+	 */
+	private static final Set<EngineCapability> CAPABILITIES = Collections.unmodifiableSet(EnumSet.of(
+			EngineCapability.VOLUME_SLIDES, EngineCapability.PLAYER_EVENTS, EngineCapability.SUCCESSOR_QUEUE,
+			EngineCapability.PLAYBACK_SPEED));
+
+	final Mixer mixer = new Mixer();
+	private final DecoderThread decoderThread;
+	private final NativeResourceTracker tracker;
+
+	public SoundEngine() {
+		this("null".equals(System.getProperty(SINK_PROPERTY)) ? new NullSink() : new LineSink());
+	}
+
+	/**
+	 * @param sink The sink the output is written to.
+	 */
+	public SoundEngine(final IAudioSink sink) {
+		this(new DecoderThread(false), "JavaSound");
+		decoderThread.start();
+		mixer.start(sink);
+	}
+
+	/**
+	 * Creates an engine without starting its threads.
+	 * @param decoderThread The decoder thread.
+	 * @param name The name of the engine's resource tracker.
+	 */
+	SoundEngine(final DecoderThread decoderThread, final String name) {
+		this.decoderThread = decoderThread;
+		tracker = new NativeResourceTracker(name);
+	}
+
+	@Override
+	public IPlayer getPlayer2D(final ISound sound) {
+		Decoder decoder;
+		try {
+			decoder = new Decoder(sound.getFilePath());
+		} catch (IOException | UnsupportedAudioFileException | IllegalArgumentException e) {
+			LOGGER.log(Level.WARNING, "Cannot decode " + sound.getFilePath(), e);
+			return null;
+		}
+		return new Player(mixer, decoderThread, sound, decoder, tracker);
+	}
+
+	@Override
+	public Set<EngineCapability> getCapabilities() {
+		return CAPABILITIES;
+	}
+
+	@Override
+	public IPlayer getPlayer3D(final ISound sound) {
+		return getPlayer2D(sound);
+	}
+
+	@Override
+	public void setMasterVolume(final float volume) {
+		mixer.setMasterVolume(volume);
+	}
+
+	@Override
+	public void stopAllPlayers() {
+		mixer.stopAll();
+	}
+
+	@Override
+	public void setAllPlayersPaused(final boolean paused) {
+		mixer.setPaused(paused);
+	}
+
+	@Override
+	public int getLiveHandleCount() {
+		return tracker.getLiveCount();
+	}
+
+	@Override
+	public smartsound.plugins.player.SoundEngine createOfflineEngine() {
+		return new OfflineSoundEngine();
+	}
+
+	/**
+	 * @return The number of players being mixed at the moment.
+	 */
+	public int getMixedPlayerCount() {
+		return mixer.getPlayerCount();
+	}
+}
@@ -0,0 +1,405 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player.nativebass;
+
+import static jouvieje.bass.Bass.BASS_ChannelBytes2Seconds;
+import static jouvieje.bass.Bass.BASS_ChannelGetData;
+import static jouvieje.bass.Bass.BASS_ChannelIsActive;
+import static jouvieje.bass.Bass.BASS_ChannelSeconds2Bytes;
+import static jouvieje.bass.Bass.BASS_ErrorGetCode;
+import static jouvieje.bass.Bass.BASS_GetDevice;
+import static jouvieje.bass.Bass.BASS_Init;
+import static jouvieje.bass.Bass.BASS_Mixer_ChannelFlags;
+import static jouvieje.bass.Bass.BASS_Mixer_ChannelGetPosition;
+import static jouvieje.bass.Bass.BASS_Mixer_ChannelSetPosition;
+import static jouvieje.bass.Bass.BASS_Mixer_StreamAddChannel;
+import static jouvieje.bass.Bass.BASS_Mixer_StreamCreate;
+import static jouvieje.bass.Bass.BASS_SetDevice;
+import static jouvieje.bass.Bass.BASS_StreamCreateFile;
+import static jouvieje.bass.Bass.BASS_StreamFree;
+import static jouvieje.bass.defines.BASS_ACTIVE.BASS_ACTIVE_STOPPED;
+import static jouvieje.bass.defines.BASS_ERROR.BASS_ERROR_ALREADY;
+import static jouvieje.bass.defines.BASS_MIXER_FLAGS.BASS_MIXER_NONSTOP;
+import static jouvieje.bass.defines.BASS_MIXER_SOURCE.BASS_MIXER_PAUSE;
+import static jouvieje.bass.defines.BASS_POS.BASS_POS_BYTE;
+import static jouvieje.bass.defines.BASS_STREAM.BASS_STREAM_DECODE;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+import jouvieje.bass.structures.HSTREAM;
+import org.jouvieje.libloader.LibLoader;
+import smartsound.plugins.player.EngineCapability;
+import smartsound.plugins.player.IOfflineRenderer;
+import smartsound.plugins.player.IPlayer;
+import smartsound.plugins.player.IPlayerListener;
+import smartsound.plugins.player.ISound;
+import smartsound.plugins.player.NativeResource;
+import smartsound.plugins.player.NativeResourceTracker;
+
+/**
+ * A BASS sound engine without output. Each player is a decoding stream
+ * which is added paused to a bassmix mixer, and the mixer is decoded by
+ * the thread calling <c>render</c>, as fast as it calls it. Players are
+ * opened by the calling thread, so they start at the exact time. Fades,
+ * events and transitions are left to the core, which drives them by the
+ * same clock as the rendering.
+ * @author Andr Becker
+ *
+ */
+public class OfflineSoundEngine extends smartsound.plugins.player.SoundEngine implements IOfflineRenderer {
+
+	private static final Logger LOGGER = Logger.getLogger(OfflineSoundEngine.class.getName());
+
+	private static final Set<EngineCapability> CAPABILITIES = Collections.unmodifiableSet(EnumSet.of(
+			EngineCapability.PLAYBACK_SPEED));
+
+	private static final int SAMPLE_RATE = 44100;
+
+	/**
+	 * BASS's "no sound" device. It is always available and suffices for
+	 * decoding, so rendering works without a sound card and never touches
+	 * the live engine's device.
+	 */
+	private static final int NO_SOUND = 0;
+
+	/**
+	 * The size of a 16 bit stereo frame in bytes.
+	 */
+	private static final int FRAME_SIZE = 4;
+
+	private final NativeResourceTracker tracker = new NativeResourceTracker("NativeBass offline");
+	private final HSTREAM mixer;
+	private final NativeResource mixerResource;
+
+	/**
+	 * The players which have not been released yet. Guarded by the engine.
+	 */
+	private final Set<OfflinePlayer> players = new LinkedHashSet<OfflinePlayer>();
+	private boolean paused = false;
+	private float masterVolume = 1.0f;
+
+	/**
+	 * Receives the frames if the caller's buffer is not a direct one,
+	 * which BASS cannot write to.
+	 */
+	private ByteBuffer direct;
+
+	private OfflineSoundEngine(final HSTREAM mixer) {
+		this.mixer = mixer;
+		this.mixerResource = new MixerResource(this, tracker, mixer);
+	}
+
+	/**
+	 * Creates an engine on the BASS device initialized by the live engine.
+	 * @return The engine or <c>null</c> if bassmix is not available.
+	 */
+	static OfflineSoundEngine create() {
+		// BassInit loads the add-ons by System.loadLibrary, which keeps their
+		// functions from the binding on Linux. LibLoader exports them.
+		if (!LibLoader.loadLibrary("bassmix", System.mapLibraryName("bassmix"), true)) {
+			LOGGER.warning("bassmix cannot be loaded, so nothing can be rendered offline");
+			return null;
+		}
+		// An earlier engine may have initialized the device already
+		if (!BASS_Init(NO_SOUND, SAMPLE_RATE, 0, null, null) && BASS_ErrorGetCode() != BASS_ERROR_ALREADY) {
+			LOGGER.warning("Initializing BASS without output failed with BASS error " + BASS_ErrorGetCode());
+			return null;
+		}
+		int device = selectNoSoundDevice();
+		// Without a source playing, the mixer keeps producing silence
+		HSTREAM mixer = BASS_Mixer_StreamCreate(SAMPLE_RATE, 2, BASS_STREAM_DECODE | BASS_MIXER_NONSTOP);
+		restoreDevice(device);
+		if (mixer == null) {
+			LOGGER.warning("Creating the offline mixer failed with BASS error " + BASS_ErrorGetCode());
+			return null;
+		}
+		return new OfflineSoundEngine(mixer);
+	}
+
+	/**
+	 * Makes the "no sound" device the current thread's device, which BASS
+	 * creates streams on.
+	 * @return The thread's previous device or -1 if it had none.
+	 */
+	private static int selectNoSoundDevice() {
+		int device = BASS_GetDevice();
+		BASS_SetDevice(NO_SOUND);
+		return device;
+	}
+
+	/**
+	 * Restores the current thread's device, so the thread's later live
+	 * streams are not created on the "no sound" device.
+	 * @param device The device returned by <c>selectNoSoundDevice</c>.
+	 */
+	private static void restoreDevice(final int device) {
+		if (device != -1) {
+			BASS_SetDevice(device);
+		}
+	}
+
+	@Override
+	protected Executor getIOExecutor() {
+		return new Executor() {
+			@Override
+			public void execute(final Runnable command) {
+				command.run();
+			}
+		};
+	}
+
+	@Override
+	public synchronized IPlayer getPlayer2D(final ISound sound) {
+		int device = selectNoSoundDevice();
+		HSTREAM hstream = BASS_StreamCreateFile(false, sound.getFilePath(), 0, 0, BASS_STREAM_DECODE);
+		restoreDevice(device);
+		if (hstream == null) {
+			return null;
+		}
+		if (!BASS_Mixer_StreamAddChannel(mixer, hstream.asInt(), BASS_MIXER_PAUSE)) {
+			BASS_StreamFree(hstream);
+			return null;
+		}
+		OfflinePlayer player = new OfflinePlayer(hstream, sound);
+		players.add(player);
+		return player;
+	}
+
+	@Override
+	public IPlayer getPlayer3D(final ISound sound) {
+		return getPlayer2D(sound);
+	}
+
+	@Override
+	public Set<EngineCapability> getCapabilities() {
+		return CAPABILITIES;
+	}
+
+	@Override
+	public int getLiveHandleCount() {
+		return tracker.getLiveCount();
+	}
+
+	@Override
+	public synchronized void setMasterVolume(final float volume) {
+		masterVolume = volume;
+	}
+
+	@Override
+	public synchronized void stopAllPlayers() {
+		for (OfflinePlayer player : players) {
+			player.stop();
+		}
+	}
+
+	/**
+	 * The players keep their positions while the engine is paused, since
+	 * the mixer is not decoded then.
+	 */
+	@Override
+	public synchronized void setAllPlayersPaused(final boolean paused) {
+		this.paused = paused;
+	}
+
+	@Override
+	public float getSampleRate() {
+		return SAMPLE_RATE;
+	}
+
+	/**
+	 * BASS decodes 16 bit samples in the native byte order, which is little
+	 * endian on every platform the binding is shipped for.
+	 */
+	@Override
+	public synchronized void render(final ByteBuffer buffer, final int frames) {
+		int length = frames * FRAME_SIZE;
+		int start = buffer.position();
+		if (paused || mixerResource.isReleased()) {
+			for (int i = 0; i < length; i++) {
+				buffer.put((byte) 0);
+			}
+			return;
+		}
+
+		ByteBuffer target = buffer;
+		if (!buffer.isDirect()) {
+			if (direct == null || direct.capacity() < length) {
+				direct = ByteBuffer.allocateDirect(length);
+			}
+			direct.clear();
+			target = direct;
+		}
+		int offset = target.position();
+		int decoded = 0;
+		int count;
+		while (decoded < length) {
+			// BASS writes at the position without moving it
+			count = BASS_ChannelGetData(mixer.asInt(), target, length - decoded);
+			if (count <= 0) {
+				break;
+			}
+			decoded += count;
+			target.position(offset + decoded);
+		}
+		while (decoded++ < length) {
+			target.put((byte) 0);
+		}
+		if (target != buffer) {
+			target.flip();
+			buffer.put(target);
+		}
+
+		if (masterVolume != 1.0f) {
+			ByteBuffer rendered = buffer.duplicate();
+			rendered.position(start);
+			ShortBuffer samples = rendered.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+			for (int i = 0; i < 2 * frames; i++) {
+				samples.put(i, (short) (samples.get(i) * masterVolume));
+			}
+		}
+	}
+
+	/**
+	 * Frees the mixer. The players still attached to it are not mixed
+	 * anymore; they are released by their owners.
+	 */
+	@Override
+	public synchronized void release() {
+		mixerResource.release();
+	}
+
+	/**
+	 * A decoding stream of the mixer. It is started, paused and stopped by
+	 * the mixer's pause flag; BASS's channel calls do not apply to a
+	 * decoding stream. Engine side slides, events and successors are not
+	 * supported, so the core emulates them.
+	 */
+	private class OfflinePlayer extends Player {
+
+		private volatile boolean stopped = false;
+
+		private OfflinePlayer(final HSTREAM hstream, final ISound sound) {
+			super(hstream, sound, tracker);
+		}
+
+		@Override
+		public void play() {
+			stopped = false;
+			BASS_Mixer_ChannelFlags(getHandle(), 0, BASS_MIXER_PAUSE);
+		}
+
+		@Override
+		public void pause() {
+			BASS_Mixer_ChannelFlags(getHandle(), BASS_MIXER_PAUSE, BASS_MIXER_PAUSE);
+		}
+
+		/**
+		 * Pauses the stream like BASS stops a playing one: playing it again
+		 * resumes it at its position.
+		 */
+		@Override
+		public void stop() {
+			stopped = true;
+			pause();
+		}
+
+		@Override
+		public boolean getPaused() {
+			if (stopped) {
+				return false;
+			}
+			int flags = BASS_Mixer_ChannelFlags(getHandle(), 0, 0);
+			return flags != -1 && (flags & BASS_MIXER_PAUSE) != 0;
+		}
+
+		@Override
+		public boolean isFinished() {
+			return stopped || BASS_ChannelIsActive(getHandle()) == BASS_ACTIVE_STOPPED;
+		}
+
+		@Override
+		public int getPlayPosition() {
+			long bytes = BASS_Mixer_ChannelGetPosition(getHandle(), BASS_POS_BYTE);
+			return (int) (BASS_ChannelBytes2Seconds(getHandle(), bytes) * 1000);
+		}
+
+		@Override
+		public void setPlayPosition(final int position) {
+			long bytePos = BASS_ChannelSeconds2Bytes(getHandle(), position / 1000.0);
+			BASS_Mixer_ChannelSetPosition(getHandle(), bytePos, BASS_POS_BYTE);
+		}
+
+		@Override
+		public boolean slideVolume(final float volume, final int duration) {
+			return false;
+		}
+
+		@Override
+		public boolean addPlayerListener(final IPlayerListener listener) {
+			return false;
+		}
+
+		@Override
+		public void addMarker(final int position) {
+		}
+
+		@Override
+		public void removeMarker(final int position) {
+		}
+
+		@Override
+		public boolean queueSuccessor(final IPlayer successor, final int position) {
+			return successor == null;
+		}
+
+		@Override
+		public void release() {
+			synchronized (OfflineSoundEngine.this) {
+				players.remove(this);
+			}
+			super.release();
+		}
+	}
+
+	/**
+	 * The mixer, which is freed when rendering is done. Freeing it detaches
+	 * the streams still added to it.
+	 */
+	private static class MixerResource extends NativeResource {
+		private final HSTREAM mixer;
+
+		private MixerResource(final OfflineSoundEngine owner, final NativeResourceTracker tracker,
+				final HSTREAM mixer) {
+			super(owner, tracker, "offline mixer");
+			this.mixer = mixer;
+		}
+
+		@Override
+		protected void free() {
+			BASS_StreamFree(mixer);
+		}
+	}
+}
@@ -22,50 +22,137 @@ import static jouvieje.bass.Bass.BASS_ChannelStop;
 import static jouvieje.bass.Bass.BASS_ChannelPause;
 import static jouvieje.bass.Bass.BASS_ChannelGetAttribute;
 import static jouvieje.bass.Bass.BASS_ChannelSetAttribute;
+import static jouvieje.bass.Bass.BASS_ChannelSlideAttribute;
 import static jouvieje.bass.Bass.BASS_ChannelGetLength;
 import static jouvieje.bass.Bass.BASS_ChannelGetPosition;
 import static jouvieje.bass.Bass.BASS_ChannelSetPosition;
 import static jouvieje.bass.Bass.BASS_ChannelIsActive;
 import static jouvieje.bass.Bass.BASS_ChannelBytes2Seconds;
 import static jouvieje.bass.Bass.BASS_ChannelSeconds2Bytes;
+import static jouvieje.bass.Bass.BASS_ChannelSetSync;
+import static jouvieje.bass.Bass.BASS_ChannelRemoveSync;
+import static jouvieje.bass.Bass.BASS_ChannelUpdate;
+import static jouvieje.bass.Bass.BASS_ChannelGetInfo;
+import static jouvieje.bass.Bass.BASS_StreamFree;
 import static jouvieje.bass.defines.BASS_ATTRIB.BASS_ATTRIB_VOL;
 import static jouvieje.bass.defines.BASS_ATTRIB.BASS_ATTRIB_PAN;
+import static jouvieje.bass.defines.BASS_ATTRIB.BASS_ATTRIB_FREQ;
 import static jouvieje.bass.defines.BASS_POS.BASS_POS_BYTE;
 import static jouvieje.bass.defines.BASS_ACTIVE.BASS_ACTIVE_STOPPED;
+import static jouvieje.bass.defines.BASS_ACTIVE.BASS_ACTIVE_PAUSED;
+import static jouvieje.bass.defines.BASS_SYNC.BASS_SYNC_END;
+import static jouvieje.bass.defines.BASS_SYNC.BASS_SYNC_POS;
+import static jouvieje.bass.defines.BASS_SYNC.BASS_SYNC_ONETIME;
 
 import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
 
+import jouvieje.bass.callbacks.SYNCPROC;
+import jouvieje.bass.structures.BASS_CHANNELINFO;
+import jouvieje.bass.structures.HCHANNEL;
 import jouvieje.bass.structures.HSTREAM;
+import jouvieje.bass.structures.HSYNC;
+import jouvieje.bass.utils.Pointer;
 import smartsound.plugins.player.IPlayer;
+import smartsound.plugins.player.IPlayerListener;
 import smartsound.plugins.player.ISound;
+import smartsound.plugins.player.NativeResource;
+import smartsound.plugins.player.NativeResourceTracker;
+import smartsound.plugins.player.PlayerEventSupport;
+import smartsound.plugins.player.PlayerState;
 
 public class Player implements IPlayer {
 
-	private HSTREAM hstream;
+	/**
+	 * The handle of a stream or of a channel playing a cached sample.
+	 */
+	private final int handle;
+	private final NativeResource resource;
 	private ISound sound;
 	
-	public Player(HSTREAM hstream, ISound sound) {
-		this.hstream = hstream;
+	/**
+	 * The length of the stream in milliseconds and the number of bytes per
+	 * millisecond. The length of a stream never changes, so both are
+	 * determined once. The length is -1 until then.
+	 */
+	private int length = -1;
+	private double bytesPerMillisecond;
+
+	/**
+	 * The sample rate of the stream. The speed is changed by playing it at
+	 * a multiple of this rate. It is 0 until it is determined.
+	 */
+	private int frequency = 0;
+	
+	/**
+	 * Player events are sent by BASS syncs: one for the end of the stream
+	 * and one per marker. The callbacks are kept referenced as long as the
+	 * syncs exist.
+	 */
+	private final PlayerEventSupport events = new PlayerEventSupport(this);
+	private HSYNC endSync;
+	private final Map<Integer, MarkerSync> markerSyncs = new HashMap<Integer, MarkerSync>();
+	private SuccessorSync successorSync;
+	private final SYNCPROC endProc = new SYNCPROC() {
+		@Override
+		public void SYNCPROC(HSYNC handle, int channel, int data, Pointer user) {
+			events.fireFinished();
+		}
+	};
+	
+	public Player(HSTREAM hstream, ISound sound, NativeResourceTracker tracker) {
+		this.handle = hstream.asInt();
+		this.resource = new StreamResource(this, tracker, hstream, sound);
+		this.sound = sound;
+	}
+
+	public Player(HCHANNEL channel, ISound sound, NativeResourceTracker tracker, SampleCache samples) {
+		this.handle = channel.asInt();
+		this.resource = new ChannelResource(this, tracker, handle, sound, samples);
 		this.sound = sound;
 	}
 
 	@Override
 	public float getPan() {
 		FloatBuffer buf = FloatBuffer.wrap(new float[1]);
-		BASS_ChannelGetAttribute(hstream.asInt(), BASS_ATTRIB_PAN, buf);
+		BASS_ChannelGetAttribute(handle, BASS_ATTRIB_PAN, buf);
 		return buf.get();
 	}
 
 	@Override
 	public boolean getPaused() {
-		// TODO Auto-generated method stub
-		return false;
+		return BASS_ACTIVE_PAUSED == BASS_ChannelIsActive(handle);
 	}
 
 	@Override
 	public int getPlayLength() {
-		long bytes = BASS_ChannelGetLength(hstream.asInt(), BASS_POS_BYTE);
-		return (int) (BASS_ChannelBytes2Seconds(hstream.asInt(), bytes) * 1000);
+		if (length < 0) {
+			long bytes = BASS_ChannelGetLength(handle, BASS_POS_BYTE);
+			length = (int) (BASS_ChannelBytes2Seconds(handle, bytes) * 1000);
+			bytesPerMillisecond = length > 0 ? (double) bytes / length : 0;
+		}
+		return length;
+	}
+
+	/**
+	 * @return The BASS handle of the stream or channel.
+	 */
+	int getHandle() {
+		return handle;
+	}
+
+	/**
+	 * Fills in a snapshot of this player from the raw values the engine
+	 * read for it. The position is converted using the cached byte rate,
+	 * the activity tells whether the stream is finished or paused.
+	 * @param state The snapshot.
+	 * @param bytes The play position in bytes.
+	 * @param active The activity of the channel.
+	 */
+	void setState(PlayerState state, long bytes, int active) {
+		int position = bytesPerMillisecond > 0 ? (int) (bytes / bytesPerMillisecond) : 0;
+		state.set(position, length, active == BASS_ACTIVE_STOPPED, active == BASS_ACTIVE_PAUSED);
 	}
 
 	@Override
@@ -75,61 +162,238 @@ public class Player implements IPlayer {
 
 	@Override
 	public int getPlayPosition() {
-		long bytes = BASS_ChannelGetPosition(hstream.asInt(), BASS_POS_BYTE);
-		return (int) (BASS_ChannelBytes2Seconds(hstream.asInt(), bytes) * 1000);
+		long bytes = BASS_ChannelGetPosition(handle, BASS_POS_BYTE);
+		return (int) (BASS_ChannelBytes2Seconds(handle, bytes) * 1000);
 	}
 
 	@Override
 	public float getPlaybackSpeed() {
-		return 1.0f;
+		int defaultFrequency = getFrequency();
+		if (defaultFrequency <= 0) {
+			return 1.0f;
+		}
+		FloatBuffer buf = FloatBuffer.wrap(new float[1]);
+		BASS_ChannelGetAttribute(handle, BASS_ATTRIB_FREQ, buf);
+		return buf.get() / defaultFrequency;
+	}
+
+	private int getFrequency() {
+		if (frequency == 0) {
+			BASS_CHANNELINFO info = BASS_CHANNELINFO.allocate();
+			if (BASS_ChannelGetInfo(handle, info)) {
+				frequency = info.getFreq();
+			}
+			info.release();
+		}
+		return frequency;
 	}
 
 	@Override
 	public float getVolume() {
 		FloatBuffer buf = FloatBuffer.wrap(new float[1]);
-		BASS_ChannelGetAttribute(hstream.asInt(), BASS_ATTRIB_VOL, buf);
+		BASS_ChannelGetAttribute(handle, BASS_ATTRIB_VOL, buf);
 		return buf.get();
 	}
 
 	@Override
 	public boolean isFinished() {
-		return BASS_ACTIVE_STOPPED == BASS_ChannelIsActive(hstream.asInt());
+		return BASS_ACTIVE_STOPPED == BASS_ChannelIsActive(handle);
 	}
 
 	@Override
 	public void pause() {
-		BASS_ChannelPause(hstream.asInt());
+		BASS_ChannelPause(handle);
 	}
 
 	@Override
 	public void play() {
-		BASS_ChannelPlay(hstream.asInt(), false);
+		BASS_ChannelPlay(handle, false);
 	}
 
 	@Override
 	public void setPan(float pan) {
-		BASS_ChannelSetAttribute(hstream.asInt(), BASS_ATTRIB_PAN, pan);
+		BASS_ChannelSetAttribute(handle, BASS_ATTRIB_PAN, pan);
 	}
 
 	@Override
 	public void setPlayPosition(int position) {
-		long bytePos = BASS_ChannelSeconds2Bytes(hstream.asInt(), position / 1000.0);
-		BASS_ChannelSetPosition(hstream.asInt(), bytePos, BASS_POS_BYTE);
+		long bytePos = BASS_ChannelSeconds2Bytes(handle, position / 1000.0);
+		BASS_ChannelSetPosition(handle, bytePos, BASS_POS_BYTE);
 	}
 
 	@Override
 	public void setPlaybackSpeed(float speed) {
-		// Not supported yet
+		int defaultFrequency = getFrequency();
+		if (defaultFrequency > 0) {
+			BASS_ChannelSetAttribute(handle, BASS_ATTRIB_FREQ, defaultFrequency * speed);
+		}
 	}
 
 	@Override
 	public void setVolume(float volume) {
-		BASS_ChannelSetAttribute(hstream.asInt(), BASS_ATTRIB_VOL, volume);
+		BASS_ChannelSetAttribute(handle, BASS_ATTRIB_VOL, volume);
+	}
+
+	@Override
+	public boolean slideVolume(float volume, int duration) {
+		return BASS_ChannelSlideAttribute(handle, BASS_ATTRIB_VOL, volume, duration);
 	}
 
 	@Override
 	public void stop() {
-		BASS_ChannelStop(hstream.asInt());
+		BASS_ChannelStop(handle);
+	}
+
+	@Override
+	public void release() {
+		resource.release();
+	}
+
+	@Override
+	public synchronized boolean addPlayerListener(IPlayerListener listener) {
+		if (endSync == null) {
+			endSync = BASS_ChannelSetSync(handle, BASS_SYNC_END, 0, endProc, null);
+			if (endSync == null) {
+				return false;
+			}
+		}
+		events.addListener(listener);
+		return true;
+	}
+
+	@Override
+	public void removePlayerListener(IPlayerListener listener) {
+		events.removeListener(listener);
+	}
+
+	@Override
+	public synchronized void addMarker(int position) {
+		if (!events.addMarker(position)) {
+			return;
+		}
+		MarkerSync sync = new MarkerSync(position);
+		long bytePos = BASS_ChannelSeconds2Bytes(handle, position / 1000.0);
+		sync.handle = BASS_ChannelSetSync(handle, BASS_SYNC_POS, bytePos, sync, null);
+		markerSyncs.put(position, sync);
+	}
+
+	@Override
+	public synchronized void removeMarker(int position) {
+		events.removeMarker(position);
+		MarkerSync sync = markerSyncs.remove(position);
+		if (sync != null && sync.handle != null) {
+			BASS_ChannelRemoveSync(handle, sync.handle);
+		}
+	}
+
+	/**
+	 * Queues the successor by a one-time sync at the given position. Its
+	 * playback buffer is filled in advance, so it is audible right after
+	 * the sync has called <c>BASS_ChannelPlay</c>. The transition is
+	 * accurate to BASS's update period, not to the sample: that would
+	 * require all streams to be decoding channels of a mixer.
+	 */
+	@Override
+	public synchronized boolean queueSuccessor(IPlayer successor, int position) {
+		if (successorSync != null) {
+			BASS_ChannelRemoveSync(handle, successorSync.handle);
+			successorSync = null;
+		}
+		if (successor == null) {
+			return true;
+		}
+		if (!(successor instanceof Player)) {
+			return false;
+		}
+		SuccessorSync sync = new SuccessorSync((Player) successor);
+		BASS_ChannelUpdate(sync.successor.handle, 0);
+		if (position >= getPlayLength()) {
+			sync.handle = BASS_ChannelSetSync(handle, BASS_SYNC_END | BASS_SYNC_ONETIME, 0, sync, null);
+		} else {
+			long bytePos = BASS_ChannelSeconds2Bytes(handle, Math.max(0, position) / 1000.0);
+			sync.handle = BASS_ChannelSetSync(handle, BASS_SYNC_POS | BASS_SYNC_ONETIME, bytePos, sync, null);
+		}
+		if (sync.handle == null) {
+			return false;
+		}
+		successorSync = sync;
+		return true;
+	}
+
+	/**
+	 * The callback of the sync for a queued successor.
+	 */
+	private class SuccessorSync implements SYNCPROC {
+		private final Player successor;
+		private HSYNC handle;
+
+		private SuccessorSync(Player successor) {
+			this.successor = successor;
+		}
+
+		@Override
+		public void SYNCPROC(HSYNC handle, int channel, int data, Pointer user) {
+			BASS_ChannelPlay(successor.handle, false);
+		}
+	}
+
+	/**
+	 * The callback of the sync for a marker.
+	 */
+	private class MarkerSync implements SYNCPROC {
+		private final int position;
+		private HSYNC handle;
+
+		private MarkerSync(int position) {
+			this.position = position;
+		}
+
+		@Override
+		public void SYNCPROC(HSYNC handle, int channel, int data, Pointer user) {
+			events.fireMarkerReached(position);
+		}
+	}
+
+	/**
+	 * A stream of its own, which is freed together with its syncs.
+	 */
+	private static class StreamResource extends NativeResource {
+		private final HSTREAM hstream;
+
+		private StreamResource(Player owner, NativeResourceTracker tracker, HSTREAM hstream, ISound sound) {
+			super(owner, tracker, "stream of " + sound.getFilePath());
+			this.hstream = hstream;
+		}
+
+		@Override
+		protected void free() {
+			BASS_StreamFree(hstream);
+		}
+	}
+
+	/**
+	 * A channel of a sample in the <c>SampleCache</c>. The sample belongs
+	 * to the cache, so the channel is only stopped, which returns it to
+	 * the sample, and handed back to the cache.
+	 */
+	private static class ChannelResource extends NativeResource {
+		private final int channel;
+		private final String filePath;
+		private final SampleCache samples;
+
+		private ChannelResource(Player owner, NativeResourceTracker tracker, int channel, ISound sound,
+				SampleCache samples) {
+			super(owner, tracker, "sample channel of " + sound.getFilePath());
+			this.channel = channel;
+			this.filePath = sound.getFilePath();
+			this.samples = samples;
+		}
+
+		@Override
+		protected void free() {
+			BASS_ChannelStop(channel);
+			samples.release(filePath);
+		}
 	}
 
 }
@@ -21,11 +21,21 @@ import java.io.File;
 import java.net.URISyntaxException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import smartsound.common.Tuple;
 
 public class PluginLoader extends smartsound.plugins.player.PluginLoader {
 
+	private static final Logger LOGGER = Logger.getLogger(PluginLoader.class.getName());
+
+	/**
+	 * Directory the NativeBass <c>LibLoader</c> searches next to
+	 * <c>java.library.path</c>. It reads the property on every load.
+	 */
+	private static final String LIBRARY_PATH_PROPERTY = "org.lwjgl.librarypath";
+
 	@Override
 	public Class<? extends smartsound.plugins.player.SoundEngine> getEngineClass() {
 		return SoundEngine.class;
@@ -50,6 +60,24 @@ public class PluginLoader extends smartsound.plugins.player.PluginLoader {
 		return result;
 	}
 
+	/**
+	 * Loads BASS itself by its path, so the NativeBass binding finds it
+	 * without a search path, and points the NativeBass loader at the library
+	 * directory before <c>BassInit</c> loads the binding from there.
+	 */
+	@Override
+	public boolean loadLibraries() {
+		File directory = new File(getLibraryDirectory());
+		try {
+			loadLibrary(directory, "bass");
+		} catch (UnsatisfiedLinkError e) {
+			LOGGER.log(Level.WARNING, "Loading BASS from " + directory + " failed", e);
+			return false;
+		}
+		System.setProperty(LIBRARY_PATH_PROPERTY, directory.getAbsolutePath());
+		return true;
+	}
+
 	public static String getLibraryDirectory() {
 		String path = null;
 		try {
@@ -0,0 +1,161 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player.nativebass;
+
+import static jouvieje.bass.Bass.BASS_ChannelGetLength;
+import static jouvieje.bass.Bass.BASS_SampleFree;
+import static jouvieje.bass.Bass.BASS_SampleGetChannel;
+import static jouvieje.bass.Bass.BASS_SampleLoad;
+import static jouvieje.bass.defines.BASS_POS.BASS_POS_BYTE;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import jouvieje.bass.structures.HCHANNEL;
+import jouvieje.bass.structures.HSAMPLE;
+
+/**
+ * Keeps short clips fully decoded in memory as BASS samples, so playing
+ * them again neither reads nor decodes the file. Only files up to a
+ * maximum size are cached. The decoded data is held by BASS outside of the
+ * Java heap; its total size is limited by a byte budget. The samples played
+ * least recently are freed first, but never while a player still owns one
+ * of their channels.
+ * @author Andr Becker
+ *
+ */
+class SampleCache {
+
+	/**
+	 * The default maximum size in bytes of a file which is cached.
+	 */
+	static final long DEFAULT_MAX_CLIP_SIZE = 512 * 1024;
+
+	/**
+	 * The default maximum size in bytes of all decoded samples.
+	 */
+	static final long DEFAULT_BYTE_BUDGET = 64 * 1024 * 1024;
+
+	/**
+	 * The maximum number of channels playing the same sample at once. If
+	 * another one is requested, the clip is streamed instead. Channels are
+	 * never taken over from another player.
+	 */
+	private static final int MAX_CHANNELS = 16;
+
+	private final LinkedHashMap<String, CachedSample> samples = new LinkedHashMap<String, CachedSample>(16, 0.75f, true);
+	private final Set<String> uncacheable = new HashSet<String>();
+	private final long maxClipSize;
+	private final long byteBudget;
+	private long usedBytes = 0;
+
+	/**
+	 * @param maxClipSize The maximum size in bytes of a file which is
+	 * 	cached.
+	 * @param byteBudget The maximum size in bytes of all decoded samples.
+	 * 	Samples in use are kept even if they exceed it.
+	 */
+	SampleCache(long maxClipSize, long byteBudget) {
+		this.maxClipSize = maxClipSize;
+		this.byteBudget = byteBudget;
+	}
+
+	/**
+	 * Returns a new channel playing a cached clip. The clip is loaded and
+	 * decoded if it is not cached yet. The sample is kept until the channel
+	 * is handed back with <c>release</c>.
+	 * @param filePath The path of the clip.
+	 * @return The channel or <c>null</c> if the file is too large to be
+	 * 	cached, cannot be loaded as sample or all channels of the sample
+	 * 	are in use.
+	 */
+	synchronized HCHANNEL getChannel(String filePath) {
+		CachedSample cached = samples.get(filePath);
+		if (cached != null) {
+			HCHANNEL channel = BASS_SampleGetChannel(cached.sample, true);
+			if (channel != null) {
+				cached.users++;
+			}
+			return channel;
+		}
+		if (uncacheable.contains(filePath) || new File(filePath).length() > maxClipSize) {
+			return null;
+		}
+
+		HSAMPLE sample = BASS_SampleLoad(false, filePath, 0, 0, MAX_CHANNELS, 0);
+		if (sample == null) {
+			uncacheable.add(filePath);
+			return null;
+		}
+		HCHANNEL channel = BASS_SampleGetChannel(sample, true);
+		long bytes = channel == null ? -1 : BASS_ChannelGetLength(channel.asInt(), BASS_POS_BYTE);
+		if (bytes < 0 || bytes > byteBudget) {
+			BASS_SampleFree(sample);
+			uncacheable.add(filePath);
+			return null;
+		}
+
+		cached = new CachedSample(sample, bytes);
+		cached.users++;
+		samples.put(filePath, cached);
+		usedBytes += bytes;
+		evict();
+		return channel;
+	}
+
+	/**
+	 * Hands back a channel obtained by <c>getChannel</c> after it has been
+	 * stopped. Samples without channels in use may be freed afterwards.
+	 * @param filePath The path of the clip.
+	 */
+	synchronized void release(String filePath) {
+		CachedSample cached = samples.get(filePath);
+		if (cached != null && cached.users > 0) {
+			cached.users--;
+			evict();
+		}
+	}
+
+	private void evict() {
+		Iterator<Entry<String, CachedSample>> it = samples.entrySet().iterator();
+		while (usedBytes > byteBudget && it.hasNext()) {
+			CachedSample cached = it.next().getValue();
+			if (cached.users > 0) {
+				continue;
+			}
+			BASS_SampleFree(cached.sample);
+			usedBytes -= cached.bytes;
+			it.remove();
+		}
+	}
+
+	private static class CachedSample {
+		private final HSAMPLE sample;
+		private final long bytes;
+		private int users = 0;
+
+		private CachedSample(HSAMPLE sample, long bytes) {
+			this.sample = sample;
+			this.bytes = bytes;
+		}
+	}
+}
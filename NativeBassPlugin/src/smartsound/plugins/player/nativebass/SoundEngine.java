@@ -17,16 +17,56 @@
 
 package smartsound.plugins.player.nativebass;
 
+import static jouvieje.bass.Bass.BASS_ChannelGetPosition;
+import static jouvieje.bass.Bass.BASS_ChannelIsActive;
 import static jouvieje.bass.Bass.BASS_Init;
 import static jouvieje.bass.Bass.BASS_StreamCreateFile;
+import static jouvieje.bass.defines.BASS_POS.BASS_POS_BYTE;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
 import jouvieje.bass.Bass;
 import jouvieje.bass.BassInit;
+import jouvieje.bass.structures.HCHANNEL;
 import jouvieje.bass.structures.HSTREAM;
+import smartsound.plugins.player.EngineCapability;
 import smartsound.plugins.player.IPlayer;
 import smartsound.plugins.player.ISound;
+import smartsound.plugins.player.NativeResourceTracker;
+import smartsound.plugins.player.PlayerState;
 
 public class SoundEngine extends smartsound.plugins.player.SoundEngine {
 
+	private static final Set<EngineCapability> CAPABILITIES = Collections.unmodifiableSet(EnumSet.of(
+			EngineCapability.VOLUME_SLIDES, EngineCapability.PLAYER_EVENTS, EngineCapability.SUCCESSOR_QUEUE,
+			EngineCapability.SAMPLE_CACHE, EngineCapability.BULK_STATE, EngineCapability.PLAYBACK_SPEED));
+
+	/**
+	 * The system property which sets the maximum size in bytes of a file
+	 * which is decoded once and then played from memory.
+	 */
+	public static final String MAX_CLIP_SIZE_PROPERTY = "smartsound.nativebass.maxClipSize";
+
+	/**
+	 * The system property which sets the maximum size in bytes of all
+	 * decoded clips.
+	 */
+	public static final String SAMPLE_BUDGET_PROPERTY = "smartsound.nativebass.sampleBudget";
+
+	private final SampleCache samples = new SampleCache(
+			Long.getLong(MAX_CLIP_SIZE_PROPERTY, SampleCache.DEFAULT_MAX_CLIP_SIZE),
+			Long.getLong(SAMPLE_BUDGET_PROPERTY, SampleCache.DEFAULT_BYTE_BUDGET));
+	private final NativeResourceTracker tracker = new NativeResourceTracker("NativeBass");
+
+	/**
+	 * The raw positions and activities read by getPlayerStates. They are
+	 * reused by every snapshot and guarded by the engine.
+	 */
+	private long[] positions = new long[0];
+	private int[] activities = new int[0];
+
 	public SoundEngine() {
 		BassInit.loadLibraries();
 		BASS_Init(-1, 44100, 0, null, null);
@@ -34,18 +74,44 @@ public class SoundEngine extends smartsound.plugins.player.SoundEngine {
 
 	@Override
 	public IPlayer getPlayer2D(final ISound sound) {
+		HCHANNEL channel = samples.getChannel(sound.getFilePath());
+		if (channel != null) {
+			return new Player(channel, sound, tracker, samples);
+		}
 		HSTREAM hstream = BASS_StreamCreateFile(false, sound.getFilePath(), 0, 0, 0);
-		return hstream != null ? new Player(hstream, sound) : null;
+		return hstream != null ? new Player(hstream, sound, tracker) : null;
+	}
+
+	@Override
+	public Set<EngineCapability> getCapabilities() {
+		return CAPABILITIES;
 	}
 
 	@Override
-	public IPlayer getPlayer3D(final ISound arg0) {
-		// TODO Auto-generated method stub
-		return null;
+	public int getLiveHandleCount() {
+		return tracker.getLiveCount();
 	}
 
+
+	/**
+	 * Mixes decoding streams with bassmix, which is loaded together with
+	 * BASS's other add-ons.
+	 */
 	@Override
-	public void setAllPlayersPaused(final boolean paused) {
+	public smartsound.plugins.player.SoundEngine createOfflineEngine() {
+		return OfflineSoundEngine.create();
+	}
+
+	/**
+	 * 3D sounds are not supported yet, they are played as 2D sounds.
+	 */
+	@Override
+	public IPlayer getPlayer3D(final ISound sound) {
+		return getPlayer2D(sound);
+	}
+
+	@Override
+	public synchronized void setAllPlayersPaused(final boolean paused) {
 		if (paused) {
 			Bass.BASS_Pause();
 		} else {
@@ -59,8 +125,50 @@ public class SoundEngine extends smartsound.plugins.player.SoundEngine {
 	}
 
 	@Override
-	public void stopAllPlayers() {
+	public synchronized void stopAllPlayers() {
 		Bass.BASS_Stop();
 	}
 
+	/**
+	 * BASS has no call which queries several channels at once. The
+	 * snapshot therefore reads the position and activity of every channel
+	 * in one tight pass under the engine lock, so it cannot interleave with
+	 * pausing or stopping all players, and converts the values afterwards.
+	 * The lengths are determined beforehand since they never change.
+	 */
+	@Override
+	public void getPlayerStates(final IPlayer[] players, final PlayerState[] states, final int count) {
+		for (int i = 0; i < count; i++) {
+			if (players[i] instanceof Player) {
+				players[i].getPlayLength();
+			}
+		}
+
+		synchronized (this) {
+			if (positions.length < count) {
+				positions = new long[count];
+				activities = new int[count];
+			}
+			int handle;
+			for (int i = 0; i < count; i++) {
+				if (players[i] instanceof Player) {
+					handle = ((Player) players[i]).getHandle();
+					positions[i] = BASS_ChannelGetPosition(handle, BASS_POS_BYTE);
+					activities[i] = BASS_ChannelIsActive(handle);
+				}
+			}
+
+			IPlayer player;
+			for (int i = 0; i < count; i++) {
+				player = players[i];
+				if (player instanceof Player) {
+					((Player) player).setState(states[i], positions[i], activities[i]);
+				} else {
+					states[i].set(player.getPlayPosition(), player.getPlayLength(),
+							player.isFinished(), player.getPaused());
+				}
+			}
+		}
+	}
+
 }
@@ -0,0 +1,65 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player;
+
+/**
+ * The optional features a <c>SoundEngine</c> may support natively. The
+ * core asks <c>SoundEngine.getCapabilities</c> once per player and
+ * emulates in Java what is missing, instead of trying each feature on
+ * each player.
+ * @author Andr Becker
+ *
+ */
+public enum EngineCapability {
+
+	/**
+	 * <c>IPlayer.slideVolume</c> slides the volume in the engine, so fades
+	 * need no volume updates from Java.
+	 */
+	VOLUME_SLIDES,
+
+	/**
+	 * <c>IPlayer.addPlayerListener</c> is supported, so the end of a sound
+	 * and markers are reported instead of being polled by the core.
+	 */
+	PLAYER_EVENTS,
+
+	/**
+	 * <c>IPlayer.queueSuccessor</c> starts the next sound at the exact
+	 * position of the transition.
+	 */
+	SUCCESSOR_QUEUE,
+
+	/**
+	 * Short sounds are decoded once and played from memory, so opening
+	 * them again is cheap.
+	 */
+	SAMPLE_CACHE,
+
+	/**
+	 * <c>SoundEngine.getPlayerStates</c> is overridden and takes the state
+	 * of several players with fewer calls than asking each player.
+	 */
+	BULK_STATE,
+
+	/**
+	 * <c>IPlayer.setPlaybackSpeed</c> changes the speed. Without it the
+	 * speed is always 1.
+	 */
+	PLAYBACK_SPEED
+}
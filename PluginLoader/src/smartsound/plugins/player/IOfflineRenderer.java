@@ -0,0 +1,51 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implemented by sound engines which do not play their players in real time
+ * but mix them on request, see <c>SoundEngine.createOfflineEngine</c>. The
+ * players advance only by rendering, so the caller decides how fast time
+ * passes.
+ * @author Andr Becker
+ *
+ */
+public interface IOfflineRenderer {
+
+	/**
+	 * @return The sample rate of the rendered frames in frames per second.
+	 */
+	public float getSampleRate();
+
+	/**
+	 * Mixes the next frames of all playing players. The frames are 16 bit
+	 * signed little endian stereo samples.
+	 * @param buffer The buffer the frames are put into, starting at its
+	 * 	position. It must have room for four bytes per frame.
+	 * @param frames The number of frames.
+	 */
+	public void render(ByteBuffer buffer, int frames);
+
+	/**
+	 * Frees the resources of the renderer once rendering is done and its
+	 * players have been released. Nothing is rendered afterwards.
+	 */
+	public void release();
+}
@@ -40,9 +40,17 @@ public interface IPlayer {
 	public boolean getPaused();
 	
 	/**
-	 * Stops the sound and frees all resources used by it.
+	 * Stops the sound. The native resources of the player are kept until
+	 * <c>release</c> is called.
 	 */
 	public void stop();
+
+	/**
+	 * Stops the sound if necessary and frees all resources used by it. The
+	 * player must not be used anymore afterwards. Releasing a player again
+	 * has no effect.
+	 */
+	public void release();
 	
 	/**
 	 * @return The current volume as value between 0 and 1.0.
@@ -55,6 +63,17 @@ public interface IPlayer {
 	 */
 	public void setVolume(float volume);
 	
+	/**
+	 * Changes the volume smoothly over a given time, done by the sound
+	 * engine itself. A call to <c>setVolume</c> ends a running slide.
+	 * @param volume The target volume as value between 0 and 1.0.
+	 * @param duration The duration of the slide in milliseconds.
+	 * @return <c>false</c> if the engine does not support volume slides.
+	 * 	The volume is not changed then and the caller has to fade by
+	 * 	itself.
+	 */
+	public boolean slideVolume(float volume, int duration);
+	
 	/**
 	 * @return The stereo balance as value between -1 and 1.
 	 */
@@ -98,4 +117,48 @@ public interface IPlayer {
 	 */
 	public int getPlayLength();
 	
+	/**
+	 * Adds a listener which is informed when the sound reaches its end or
+	 * a position marker.
+	 * @param listener The listener.
+	 * @return <c>false</c> if the player cannot send events. The listener
+	 * 	is not added then and the caller has to poll the player.
+	 */
+	public boolean addPlayerListener(IPlayerListener listener);
+	
+	/**
+	 * Removes a listener.
+	 * @param listener The listener.
+	 */
+	public void removePlayerListener(IPlayerListener listener);
+	
+	/**
+	 * Adds a position marker. The listeners are informed whenever the play
+	 * position passes it.
+	 * @param position The position in milliseconds.
+	 */
+	public void addMarker(int position);
+	
+	/**
+	 * Removes a position marker.
+	 * @param position The position in milliseconds.
+	 */
+	public void removeMarker(int position);
+	
+	/**
+	 * Hands over a player of the same sound engine which the engine starts
+	 * by itself as soon as this player reaches a given position, without
+	 * waiting for the caller. This allows gapless transitions between two
+	 * sounds. The successor should not have been started yet. Only one
+	 * successor can be queued at a time, a new one replaces the old one.
+	 * @param successor The successor or <c>null</c> to cancel the queued
+	 * 	one. Cancelling does not stop a successor which has already been
+	 * 	started.
+	 * @param position The position in milliseconds.
+	 * @return <c>false</c> if the engine cannot start the successor by
+	 * 	itself. Nothing is queued then and the caller has to start the
+	 * 	successor.
+	 */
+	public boolean queueSuccessor(IPlayer successor, int position);
+	
 }
@@ -0,0 +1,35 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player;
+
+/**
+ * Is informed when a player requested with
+ * <c>SoundEngine.getPlayer2DAsync</c> has been created. It is called by a
+ * thread of the sound engine and must return quickly.
+ * @author Andr Becker
+ *
+ */
+public interface IPlayerCallback {
+
+	/**
+	 * Is called when the player has been created.
+	 * @param player The player or <c>null</c> if the sound cannot be
+	 * 	played.
+	 */
+	public void playerCreated(IPlayer player);
+}
@@ -0,0 +1,41 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player;
+
+/**
+ * Is informed by an <c>IPlayer</c> when its sound reaches the end or a
+ * position marker. Listeners may be called from any thread, including
+ * threads of the sound engine, and must return quickly.
+ * @author Andr Becker
+ *
+ */
+public interface IPlayerListener {
+
+	/**
+	 * Is called when the sound has played to its end.
+	 * @param player The player.
+	 */
+	public void playerFinished(IPlayer player);
+
+	/**
+	 * Is called when the play position passes a marker.
+	 * @param player The player.
+	 * @param position The position of the marker in milliseconds.
+	 */
+	public void markerReached(IPlayer player, int position);
+}
@@ -0,0 +1,89 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player;
+
+import java.lang.ref.PhantomReference;
+
+/**
+ * A native resource of a sound engine, e.g. a stream handle, which belongs
+ * to a Java object such as an <c>IPlayer</c>. Subclasses free the resource
+ * in <c>free</c> and must not keep the owner referenced. The resource is
+ * registered at a <c>NativeResourceTracker</c>; if the owner becomes
+ * unreachable before the resource has been released, the tracker reports
+ * the leak and releases the resource itself.
+ * @author Andr Becker
+ *
+ */
+public abstract class NativeResource extends PhantomReference<Object> {
+
+	private final NativeResourceTracker tracker;
+	private final String description;
+	private boolean released = false;
+
+	/**
+	 * Creates and registers a resource.
+	 * @param owner The object the resource belongs to.
+	 * @param tracker The tracker.
+	 * @param description A description of the resource for the log.
+	 */
+	protected NativeResource(Object owner, NativeResourceTracker tracker, String description) {
+		super(owner, NativeResourceTracker.getQueue());
+		this.tracker = tracker;
+		this.description = description;
+		tracker.add(this);
+	}
+
+	/**
+	 * Frees the resource unless this has been done before.
+	 * @return <c>false</c> if the resource had already been released.
+	 */
+	public boolean release() {
+		return release(false);
+	}
+
+	/**
+	 * @return <c>true</c> if the resource has been released.
+	 */
+	public synchronized boolean isReleased() {
+		return released;
+	}
+
+	boolean release(boolean leaked) {
+		synchronized (this) {
+			if (released) {
+				return false;
+			}
+			released = true;
+		}
+		clear();
+		tracker.remove(this, leaked);
+		free();
+		return true;
+	}
+
+	/**
+	 * Frees the native resource. Called once, possibly by the tracker's
+	 * thread.
+	 */
+	protected abstract void free();
+
+	@Override
+	public String toString() {
+		return description;
+	}
+}
@@ -0,0 +1,143 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts the native resources of a sound engine and detects leaks: a
+ * resource whose owner has been garbage collected without releasing it is
+ * logged and released by a background thread. The counts are published as
+ * MBean, so it can be checked that the number of live resources stays flat
+ * during a long session.
+ * @author Andr Becker
+ *
+ */
+public class NativeResourceTracker implements NativeResourceTrackerMBean {
+
+	private static final Logger LOGGER = Logger.getLogger(NativeResourceTracker.class.getName());
+
+	private static final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+	static {
+		Thread thread = new Thread("NativeResourceTracker") {
+			@Override
+			public void run() {
+				while (true) {
+					try {
+						NativeResource resource = (NativeResource) queue.remove();
+						if (resource.release(true)) {
+							LOGGER.warning("Released leaked native resource " + resource);
+						}
+					} catch (InterruptedException e) {
+						return;
+					} catch (RuntimeException e) {
+						LOGGER.log(Level.WARNING, "Releasing a leaked native resource failed", e);
+					}
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private final String name;
+	private final Set<NativeResource> live = Collections.newSetFromMap(new ConcurrentHashMap<NativeResource, Boolean>());
+	private final AtomicLong createdCount = new AtomicLong();
+	private final AtomicLong releasedCount = new AtomicLong();
+	private final AtomicLong leakedCount = new AtomicLong();
+
+	/**
+	 * Creates a tracker and publishes it as MBean.
+	 * @param name The name of the tracker, usually the one of the sound
+	 * 	engine.
+	 */
+	public NativeResourceTracker(final String name) {
+		this.name = name;
+		// Starting the MBean server takes a while
+		Thread thread = new Thread("NativeResourceTracker " + name) {
+			@Override
+			public void run() {
+				try {
+					ManagementFactory.getPlatformMBeanServer().registerMBean(NativeResourceTracker.this,
+							new ObjectName("smartsound:type=NativeResources,name=" + ObjectName.quote(name)));
+				} catch (InstanceAlreadyExistsException e) {
+					LOGGER.fine("A native resource tracker " + name + " is already registered");
+				} catch (JMException e) {
+					LOGGER.log(Level.WARNING, "Could not register the native resource tracker " + name, e);
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	static ReferenceQueue<Object> getQueue() {
+		return queue;
+	}
+
+	void add(NativeResource resource) {
+		live.add(resource);
+		createdCount.incrementAndGet();
+	}
+
+	void remove(NativeResource resource, boolean leaked) {
+		live.remove(resource);
+		if (leaked) {
+			leakedCount.incrementAndGet();
+		} else {
+			releasedCount.incrementAndGet();
+		}
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public int getLiveCount() {
+		return live.size();
+	}
+
+	@Override
+	public long getCreatedCount() {
+		return createdCount.get();
+	}
+
+	@Override
+	public long getReleasedCount() {
+		return releasedCount.get();
+	}
+
+	@Override
+	public long getLeakedCount() {
+		return leakedCount.get();
+	}
+}
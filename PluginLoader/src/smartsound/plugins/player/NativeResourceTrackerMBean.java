@@ -0,0 +1,55 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player;
+
+/**
+ * Management interface of a <c>NativeResourceTracker</c>. Each tracker is
+ * published through the platform MBean server under the name
+ * <c>smartsound:type=NativeResources,name=</c> followed by its name.
+ * @author Andr Becker
+ *
+ */
+public interface NativeResourceTrackerMBean {
+
+	/**
+	 * @return The name of the tracker, usually the one of the sound engine.
+	 */
+	public String getName();
+
+	/**
+	 * @return The number of resources which have been created and not yet
+	 * 	released.
+	 */
+	public int getLiveCount();
+
+	/**
+	 * @return The number of resources created so far.
+	 */
+	public long getCreatedCount();
+
+	/**
+	 * @return The number of resources released explicitly so far.
+	 */
+	public long getReleasedCount();
+
+	/**
+	 * @return The number of resources whose owner became unreachable before
+	 * 	they were released. They have been released by the tracker.
+	 */
+	public long getLeakedCount();
+}
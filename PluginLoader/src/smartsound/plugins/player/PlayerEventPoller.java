@@ -0,0 +1,164 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Sends the events of players whose sound engine has no callbacks by
+ * polling them from a thread of its own. Each player is polled again when
+ * its next marker or its end can be reached at the earliest, but at least
+ * every <c>MAX_INTERVAL</c> milliseconds.
+ * @author Andr Becker
+ *
+ */
+public class PlayerEventPoller extends Thread {
+
+	/**
+	 * Bounds of the time in milliseconds between two polls of a player.
+	 */
+	public static final int MIN_INTERVAL = 10;
+	public static final int MAX_INTERVAL = 250;
+
+	private static PlayerEventPoller instance;
+
+	private final PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+	private final Map<PlayerEventSupport, Entry> entries = new IdentityHashMap<PlayerEventSupport, Entry>();
+
+	private PlayerEventPoller() {
+		super("PlayerEventPoller");
+		setDaemon(true);
+	}
+
+	private static synchronized PlayerEventPoller getInstance() {
+		if (instance == null) {
+			instance = new PlayerEventPoller();
+			instance.start();
+		}
+		return instance;
+	}
+
+	/**
+	 * Starts polling a player unless it is polled already. Polling ends
+	 * when the player has finished or has no more listeners.
+	 * @param events The event support of the player.
+	 */
+	public static void watch(PlayerEventSupport events) {
+		PlayerEventPoller poller = getInstance();
+		int position = events.getPlayer().getPlayPosition();
+		synchronized (poller.queue) {
+			if (poller.entries.containsKey(events)) {
+				return;
+			}
+			Entry entry = new Entry(events, position);
+			poller.entries.put(events, entry);
+			poller.queue.add(entry);
+			poller.queue.notify();
+		}
+	}
+
+	@Override
+	public void run() {
+		Entry entry;
+		long wait;
+		while (true) {
+			synchronized (queue) {
+				entry = queue.peek();
+				wait = entry == null ? 0 : (entry.due - System.nanoTime()) / 1000000L;
+				if (entry == null || wait > 0) {
+					try {
+						queue.wait(wait);
+					} catch (InterruptedException e) {
+						return;
+					}
+					continue;
+				}
+				queue.poll();
+			}
+			if (poll(entry)) {
+				synchronized (queue) {
+					queue.add(entry);
+				}
+			} else {
+				synchronized (queue) {
+					if (!entry.finished && entry.events.hasListeners()) {
+						// A listener has been added in the meantime
+						queue.add(entry);
+					} else {
+						entries.remove(entry.events);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Polls a player and sends its events.
+	 * @return <c>true</c> if the player has to be polled again.
+	 */
+	private boolean poll(Entry entry) {
+		PlayerEventSupport events = entry.events;
+		if (!events.hasListeners()) {
+			return false;
+		}
+		IPlayer player = events.getPlayer();
+		if (player.isFinished()) {
+			entry.finished = true;
+			events.fireFinished();
+			return false;
+		}
+
+		int position = player.getPlayPosition();
+		int marker = events.getNextMarker(entry.position);
+		while (marker >= 0 && marker <= position) {
+			events.fireMarkerReached(marker);
+			marker = events.getNextMarker(marker);
+		}
+		entry.position = position;
+
+		long interval = MAX_INTERVAL;
+		if (!player.getPaused()) {
+			int target = player.getPlayLength();
+			if (marker >= 0) {
+				target = Math.min(target, marker);
+			}
+			interval = Math.max(MIN_INTERVAL, Math.min(MAX_INTERVAL, target - position));
+		}
+		entry.due = System.nanoTime() + interval * 1000000L;
+		return true;
+	}
+
+	private static class Entry implements Comparable<Entry> {
+		private final PlayerEventSupport events;
+		private int position;
+		private long due = System.nanoTime();
+		private boolean finished = false;
+
+		private Entry(PlayerEventSupport events, int position) {
+			this.events = events;
+			this.position = position;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			return due < other.due ? -1 : (due == other.due ? 0 : 1);
+		}
+	}
+}
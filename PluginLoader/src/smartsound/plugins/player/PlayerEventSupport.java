@@ -0,0 +1,112 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player;
+
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Manages the <c>IPlayerListener</c>s and position markers of an
+ * <c>IPlayer</c>. Sound engines use it to implement the listener methods of
+ * <c>IPlayer</c>, either backed by native callbacks or by the
+ * <c>PlayerEventPoller</c>.
+ * @author Andr Becker
+ *
+ */
+public class PlayerEventSupport {
+
+	private final IPlayer player;
+	private final List<IPlayerListener> listeners = new CopyOnWriteArrayList<IPlayerListener>();
+	private final TreeSet<Integer> markers = new TreeSet<Integer>();
+
+	/**
+	 * @param player The player sending the events.
+	 */
+	public PlayerEventSupport(IPlayer player) {
+		this.player = player;
+	}
+
+	/**
+	 * @return The player sending the events.
+	 */
+	public IPlayer getPlayer() {
+		return player;
+	}
+
+	public void addListener(IPlayerListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(IPlayerListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return <c>true</c> if there is at least one listener.
+	 */
+	public boolean hasListeners() {
+		return !listeners.isEmpty();
+	}
+
+	/**
+	 * Adds a position marker.
+	 * @param position The position in milliseconds.
+	 * @return <c>false</c> if the marker already existed.
+	 */
+	public synchronized boolean addMarker(int position) {
+		return markers.add(position);
+	}
+
+	/**
+	 * Removes a position marker.
+	 * @param position The position in milliseconds.
+	 * @return <c>false</c> if there was no such marker.
+	 */
+	public synchronized boolean removeMarker(int position) {
+		return markers.remove(position);
+	}
+
+	/**
+	 * @param position A position in milliseconds.
+	 * @return The first marker after the position or -1 if there is none.
+	 */
+	public synchronized int getNextMarker(int position) {
+		Integer marker = markers.higher(position);
+		return marker == null ? -1 : marker;
+	}
+
+	/**
+	 * Informs all listeners that the sound has played to its end.
+	 */
+	public void fireFinished() {
+		for (IPlayerListener listener : listeners) {
+			listener.playerFinished(player);
+		}
+	}
+
+	/**
+	 * Informs all listeners that a marker has been passed.
+	 * @param position The position of the marker in milliseconds.
+	 */
+	public void fireMarkerReached(int position) {
+		for (IPlayerListener listener : listeners) {
+			listener.markerReached(player, position);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.plugins.player;
+
+/**
+ * A snapshot of the state of an <c>IPlayer</c>, filled in by
+ * <c>SoundEngine.getPlayerStates</c>. Instances are meant to be reused from
+ * one snapshot to the next.
+ * @author Andr Becker
+ *
+ */
+public class PlayerState {
+
+	private int position;
+	private int length;
+	private boolean finished;
+	private boolean paused;
+
+	/**
+	 * Sets all values of the snapshot.
+	 * @param position The play position in milliseconds.
+	 * @param length The length of the sound in milliseconds.
+	 * @param finished <c>true</c> if the sound has stopped.
+	 * @param paused <c>true</c> if the sound is paused.
+	 */
+	public void set(int position, int length, boolean finished, boolean paused) {
+		this.position = position;
+		this.length = length;
+		this.finished = finished;
+		this.paused = paused;
+	}
+
+	/**
+	 * @return The play position in milliseconds.
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * @return The length of the sound in milliseconds.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return <c>true</c> if the sound has stopped.
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * @return <c>true</c> if the sound is paused.
+	 */
+	public boolean isPaused() {
+		return paused;
+	}
+}
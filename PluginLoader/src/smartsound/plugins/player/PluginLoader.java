@@ -17,6 +17,7 @@
 
 package smartsound.plugins.player;
 
+import java.io.File;
 import java.util.List;
 
 import smartsound.common.Tuple;
@@ -24,7 +25,9 @@ import smartsound.common.Tuple;
 /**
  * Each plugin has to implement a sub class of <c>PluginLoader</c> which can
  * then be used to determine the needed environment as well as a subclass of
- * <c>SoundEngine</c>.
+ * <c>SoundEngine</c>. Plugins with native libraries should load them with
+ * <c>loadLibraries</c>; the process is only restarted with the needed
+ * environment if that fails.
  * @author Andr Becker
  *
  */
@@ -42,4 +45,28 @@ public abstract class PluginLoader {
 	 * 	multiple values of an environment variables.
 	 */
 	public abstract List<Tuple<String,String>> neededEnvironment();
+
+	/**
+	 * Loads the native libraries of the plugin into the running process by
+	 * their absolute paths, so the process does not have to be restarted
+	 * with the environment returned by <c>neededEnvironment</c>. The
+	 * default implementation loads nothing and returns <c>false</c>.
+	 * @return <c>true</c> if the libraries have been loaded.
+	 */
+	public boolean loadLibraries() {
+		return false;
+	}
+
+	/**
+	 * Loads a native library from a directory. A library other libraries
+	 * depend on has to be loaded first: the dynamic linker then uses the
+	 * loaded one instead of searching the library path.
+	 * @param directory The directory containing the library.
+	 * @param name The name of the library without prefix and suffix, e.g.
+	 * 	<c>bass</c> for <c>libbass.so</c> or <c>bass.dll</c>.
+	 * @throws UnsatisfiedLinkError If the library cannot be loaded.
+	 */
+	protected static void loadLibrary(File directory, String name) {
+		System.load(new File(directory, System.mapLibraryName(name)).getAbsolutePath());
+	}
 }
@@ -17,6 +17,19 @@
 
 package smartsound.plugins.player;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 import smartsound.plugins.player.IPlayer;
 import smartsound.plugins.player.ISound;
 
@@ -27,6 +40,26 @@ import smartsound.plugins.player.ISound;
  *
  */
 public abstract class SoundEngine {
+
+	private static final Logger LOGGER = Logger.getLogger(SoundEngine.class.getName());
+
+	/**
+	 * The number of threads creating players in the background.
+	 */
+	private static final int IO_THREADS = 2;
+
+	private ExecutorService ioExecutor;
+
+	/**
+	 * Returns the features this engine supports natively. The core uses
+	 * them for each player created afterwards and emulates the others in
+	 * Java. The default implementation declares none, so everything is
+	 * emulated.
+	 * @return The capabilities. The set is not modified by the caller.
+	 */
+	public Set<EngineCapability> getCapabilities() {
+		return Collections.unmodifiableSet(EnumSet.noneOf(EngineCapability.class));
+	}
 	
 	/**
 	 * Retrieves an instance of <c>IPlayer</c> to play 2D sounds.
@@ -34,6 +67,58 @@ public abstract class SoundEngine {
 	 * @return The <c>IPlayer</c> instance.
 	 */
 	public abstract IPlayer getPlayer2D(ISound entry);
+
+	/**
+	 * Retrieves an instance of <c>IPlayer</c> to play 2D sounds without
+	 * blocking the caller. Opening a file may take long, so the player is
+	 * created by <c>getPlayer2D</c> on the executor returned by
+	 * <c>getIOExecutor</c>. If the returned <c>Future</c> is cancelled
+	 * before the creation has started, the callback is not called.
+	 * @param entry An instance of <c>ISound</c> to be played.
+	 * @param callback Is called with the player as soon as it has been
+	 * 	created, also if the sound cannot be played.
+	 * @return The <c>Future</c> of the player.
+	 */
+	public Future<IPlayer> getPlayer2DAsync(final ISound entry, final IPlayerCallback callback) {
+		FutureTask<IPlayer> task = new FutureTask<IPlayer>(new Callable<IPlayer>() {
+			@Override
+			public IPlayer call() {
+				IPlayer player = null;
+				try {
+					player = getPlayer2D(entry);
+				} catch (RuntimeException e) {
+					LOGGER.log(Level.WARNING, "Creating a player for " + entry + " failed", e);
+				}
+				callback.playerCreated(player);
+				return player;
+			}
+		});
+		getIOExecutor().execute(task);
+		return task;
+	}
+
+	/**
+	 * Returns the executor creating players for <c>getPlayer2DAsync</c>. By
+	 * default this is a small pool of daemon threads owned by this engine.
+	 * Engines whose players are created without any I/O, e.g. engines
+	 * driven by a virtual clock, may return an executor which runs the
+	 * creation on the calling thread.
+	 * @return The executor.
+	 */
+	protected synchronized Executor getIOExecutor() {
+		if (ioExecutor == null) {
+			final String name = getClass().getSimpleName() + "-IO";
+			ioExecutor = Executors.newFixedThreadPool(IO_THREADS, new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					Thread thread = new Thread(runnable, name);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return ioExecutor;
+	}
 	
 	/**
 	 * Retrieves an instance of <c>IPlayer</c> to play 3D sounds.
@@ -59,4 +144,44 @@ public abstract class SoundEngine {
 	 * 	all paused players are resumed.
 	 */
 	public abstract void setAllPlayersPaused(boolean paused);
+	
+	/**
+	 * Takes a snapshot of the play position, length, finished and paused
+	 * state of several players at once. This is called for all players
+	 * which are due at once, so engines should override it to get along
+	 * with as few native calls as possible. The default implementation
+	 * asks each player one value after another.
+	 * @param players The players. They have been created by this engine.
+	 * @param states The snapshots to fill in, one per player.
+	 * @param count The number of players to take a snapshot of.
+	 */
+	public void getPlayerStates(IPlayer[] players, PlayerState[] states, int count) {
+		IPlayer player;
+		for (int i = 0; i < count; i++) {
+			player = players[i];
+			states[i].set(player.getPlayPosition(), player.getPlayLength(),
+					player.isFinished(), player.getPaused());
+		}
+	}
+
+	/**
+	 * Returns the number of native handles, e.g. streams or channels, this
+	 * engine currently holds. Engines which track their handles with a
+	 * <c>NativeResourceTracker</c> should override it.
+	 * @return The number of handles or -1 if they are not tracked.
+	 */
+	public int getLiveHandleCount() {
+		return -1;
+	}
+
+	/**
+	 * Creates an engine of the same kind which does not play its players
+	 * but mixes them on request as fast as possible, e.g. to render a scene
+	 * to a file. The engine implements <c>IOfflineRenderer</c>.
+	 * @return The engine or <c>null</c> if offline rendering is not
+	 * 	supported.
+	 */
+	public SoundEngine createOfflineEngine() {
+		return null;
+	}
 }
@@ -0,0 +1,68 @@
+#!/bin/sh
+#
+# Builds the jars of the smartSound distribution in smartSound/ from the
+# sources: smartSound.jar, lib/PluginLoader.jar and the Plugin.jar of every
+# sound engine plugin. The plugin jars contain the libraries the plugins
+# bind to, e.g. NativeBass or JNA, since the plugin's class loader only
+# sees its Plugin.jar. The jars are not kept in the repository; run this
+# after checking out or changing the sources. Requires a JDK which can
+# still compile for Java 7.
+#
+
+set -e
+
+ROOT=$(cd "$(dirname "$0")" && pwd)
+BUILD="$ROOT/build"
+DIST="$ROOT/smartSound"
+JAVAC="javac -encoding ISO-8859-1 -source 1.7 -target 1.7 -nowarn"
+
+rm -rf "$BUILD"
+mkdir -p "$BUILD"
+
+# compile <output directory> <source directory> [classpath]
+compile() {
+	mkdir -p "$1"
+	find "$2" -name '*.java' > "$BUILD/sources.txt"
+	$JAVAC -d "$1" -cp "${3:-.}" @"$BUILD/sources.txt"
+}
+
+# unpack <jar> <directory>: adds the classes of a library without its
+# manifest and signatures
+unpack() {
+	(cd "$2" && jar xf "$1" && rm -rf META-INF)
+}
+
+# manifest <main class>
+manifest() {
+	printf 'Class-Path: .\nMain-Class: %s\n' "$1" > "$BUILD/manifest.txt"
+}
+
+# The plugin SPI, which the player and the plugins are compiled against
+compile "$BUILD/pluginloader" "$ROOT/PluginLoader/src"
+mkdir -p "$DIST/lib"
+jar cf "$DIST/lib/PluginLoader.jar" -C "$BUILD/pluginloader" .
+
+# The player; it contains the SPI, so the plugins find it through the
+# parent class loader
+compile "$BUILD/smartsound" "$ROOT/smartSound/src" "$BUILD/pluginloader"
+cp -R "$BUILD/pluginloader/." "$BUILD/smartsound"
+manifest smartsound.controller.Launcher
+jar cfm "$DIST/smartSound.jar" "$BUILD/manifest.txt" -C "$BUILD/smartsound" .
+
+# The plugins
+compile "$BUILD/javasound" "$ROOT/JavaSoundPlugin/src" "$BUILD/pluginloader"
+jar cf "$DIST/plugins/javasound/Plugin.jar" -C "$BUILD/javasound" .
+
+NATIVEBASS="$ROOT/NativeBassPlugin/lib/NativeBass/NativeBass.jar"
+compile "$BUILD/nativebass" "$ROOT/NativeBassPlugin/src" "$BUILD/pluginloader:$NATIVEBASS"
+unpack "$NATIVEBASS" "$BUILD/nativebass"
+manifest smartsound.plugins.player.nativebass.Start
+jar cfm "$DIST/plugins/nativebass/Plugin.jar" "$BUILD/manifest.txt" -C "$BUILD/nativebass" .
+
+JNA="$ROOT/IrrKlangPlugin/lib/jna.jar"
+compile "$BUILD/irrklang" "$ROOT/IrrKlangPlugin/src" "$BUILD/pluginloader:$JNA"
+unpack "$JNA" "$BUILD/irrklang"
+manifest smartsound.plugins.player.irrklang.Start
+jar cfm "$DIST/plugins/irrklang/Plugin.jar" "$BUILD/manifest.txt" -C "$BUILD/irrklang" .
+
+rm -rf "$BUILD"
@@ -17,12 +17,17 @@
 
 package smartsound.controller;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import smartsound.common.IObserver;
 import smartsound.common.Observable;
+import smartsound.player.FadeCurve;
 import smartsound.player.ItemData;
+import smartsound.player.VoiceStealing;
 
 /**
  * This abstract class is a facade to divide model and view.
@@ -262,6 +267,15 @@ public abstract class AbstractController extends Observable implements IObserver
 	 */
 	public abstract void setStopAfterEachSound(UUID playListUUID, boolean stopAfterEachSound);
 
+	/**
+	 * Sets if the transitions between the entries of the <c>PlayList</c>
+	 * are gapless.
+	 * @param playListUUID The <c>UUID</c> identifying the <c>PlayList</c>.
+	 * @param gapless If set to <c>true</c> the next entry is opened ahead
+	 * 	of time and started by the sound engine where possible.
+	 */
+	public abstract void setGapless(UUID playListUUID, boolean gapless);
+
 	/**
 	 * Sets the time sounds are faded in.
 	 * @param playListUUID The <c>UUID</c> identifying the <c>PlayList</c>.
@@ -285,6 +299,21 @@ public abstract class AbstractController extends Observable implements IObserver
 	 */
 	public abstract void setOverlap(UUID playListUUID, int overlap);
 
+	/**
+	 * Sets the shape of fade ins and fade outs.
+	 * @param playListUUID The <c>UUID</c> identifying the <c>PlayList</c>.
+	 * @param fadeCurve The fade curve.
+	 */
+	public abstract void setFadeCurve(UUID playListUUID, FadeCurve fadeCurve);
+
+	/**
+	 * Sets the items whose players are kept opened, so they start without
+	 * delay, e.g. the items bound to hotkeys.
+	 * @param itemUUIDs The <c>UUID</c>s of the items, mapped by the
+	 * 	<c>UUID</c>s of the <c>PlayList</c>s containing them.
+	 */
+	public abstract void setArmedItems(Map<UUID, Set<UUID>> itemUUIDs);
+
 	/**
 	 * If this returns <c>true</c> then the <c>PlayList</c> stops after each
 	 * played entry if it is not repeated or chained with another entry.
@@ -293,6 +322,13 @@ public abstract class AbstractController extends Observable implements IObserver
 	 */
 	public abstract boolean isStopAfterEachSound(UUID playListUUID);
 
+	/**
+	 * @param playListUUID The <c>UUID</c> identifying the <c>PlayList</c>.
+	 * @return <c>true</c> if the transitions between the entries of the
+	 * 	<c>PlayList</c> are gapless.
+	 */
+	public abstract boolean isGapless(UUID playListUUID);
+
 	/**
 	 * Gets the minimum volume for a specific <c>PlayList</c>. The actual
 	 * volume of a played entry is chosen uniformly from the interval
@@ -334,6 +370,69 @@ public abstract class AbstractController extends Observable implements IObserver
 	 */
 	public abstract int getOverlap(UUID playListUUID);
 
+	/**
+	 * Gets the shape of fade ins and fade outs.
+	 * @param playListUUID The <c>UUID</c> identifying the <c>PlayList</c>.
+	 * @result The fade curve.
+	 */
+	public abstract FadeCurve getFadeCurve(UUID playListUUID);
+
+	/**
+	 * Sets the maximum number of sounds a <c>PlayList</c> plays at the same
+	 * time, including those fading out.
+	 * @param playListUUID The <c>UUID</c> identifying the <c>PlayList</c>.
+	 * @param maxVoices The maximum number of voices or 0 if it is not
+	 * 	limited.
+	 */
+	public abstract void setMaxVoices(UUID playListUUID, int maxVoices);
+
+	/**
+	 * Gets the maximum number of sounds a <c>PlayList</c> plays at the same
+	 * time, including those fading out.
+	 * @param playListUUID The <c>UUID</c> identifying the <c>PlayList</c>.
+	 * @return The maximum number of voices or 0 if it is not limited.
+	 */
+	public abstract int getMaxVoices(UUID playListUUID);
+
+	/**
+	 * Sets the maximum number of voices of each entry of a <c>PlayList</c>.
+	 * @param playListUUID The <c>UUID</c> identifying the <c>PlayList</c>.
+	 * @param maxItemVoices The maximum number of voices or 0 if it is not
+	 * 	limited.
+	 */
+	public abstract void setMaxItemVoices(UUID playListUUID, int maxItemVoices);
+
+	/**
+	 * Gets the maximum number of voices of each entry of a <c>PlayList</c>.
+	 * @param playListUUID The <c>UUID</c> identifying the <c>PlayList</c>.
+	 * @return The maximum number of voices or 0 if it is not limited.
+	 */
+	public abstract int getMaxItemVoices(UUID playListUUID);
+
+	/**
+	 * Sets the policy choosing the voice which is stopped if a cap is
+	 * reached.
+	 * @param playListUUID The <c>UUID</c> identifying the <c>PlayList</c>.
+	 * @param voiceStealing The policy.
+	 */
+	public abstract void setVoiceStealing(UUID playListUUID, VoiceStealing voiceStealing);
+
+	/**
+	 * Gets the policy choosing the voice which is stopped if a cap is
+	 * reached.
+	 * @param playListUUID The <c>UUID</c> identifying the <c>PlayList</c>.
+	 * @return The policy.
+	 */
+	public abstract VoiceStealing getVoiceStealing(UUID playListUUID);
+
+	/**
+	 * Gets the number of sounds a <c>PlayList</c> currently plays,
+	 * including those which are paused or fading out.
+	 * @param playListUUID The <c>UUID</c> identifying the <c>PlayList</c>.
+	 * @return The number of voices.
+	 */
+	public abstract int getActiveVoiceCount(UUID playListUUID);
+
 	/**
 	 * Sets the volume for a specific <c>PlayList</c>.
 	 * @param playListUUID The <c>UUID</c> identifying the <c>PlayList</c>.
@@ -360,6 +459,18 @@ public abstract class AbstractController extends Observable implements IObserver
 	 */
 	public abstract void load(String loadPath);
 
+	/**
+	 * Renders the autoplay lists of a <c>PlayListSet</c> to a WAV file,
+	 * faster than real time. The live playback is not affected.
+	 * @param playListSetUUID The <c>UUID</c> identifying the
+	 * 	<c>PlayListSet</c>.
+	 * @param filePath The path of the WAV file.
+	 * @param length The length to render in milliseconds.
+	 * @throws IOException If the file cannot be written or the sound
+	 * 	engine cannot render offline.
+	 */
+	public abstract void render(UUID playListSetUUID, String filePath, int length) throws IOException;
+
 	/**
 	 * Retrieves all <c>PlayList</c>s directly contained in a
 	 * <c>PlayListSet</c>.
@@ -17,21 +17,29 @@
 
 package smartsound.controller;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
 
 import smartsound.common.IObserver;
 import smartsound.common.Observable;
 import smartsound.common.PropertyMap;
+import smartsound.player.FadeCurve;
 import smartsound.player.ItemData;
 import smartsound.player.LoadingException;
 import smartsound.player.PlayList;
 import smartsound.player.PlayListItem;
 import smartsound.player.PlayListSet;
 import smartsound.player.PlayListSetElement;
+import smartsound.player.PlayerPool;
+import smartsound.player.SceneRenderer;
+import smartsound.player.VoiceStealing;
 import smartsound.view.AbstractViewController;
 import smartsound.view.ViewController;
 import smartsound.view.gui.GUIController;
@@ -47,6 +55,18 @@ public class DefaultController extends AbstractController {
 	private final UUID controllerUUID = UUID.randomUUID();
 	private final AbstractViewController viewController;
 	private final Map<UUID, PlayListSet> rootPlayListSets = new HashMap<UUID, PlayListSet>();
+
+	/**
+	 * All sets and lists of the tree by their UUIDs, so they are found
+	 * without searching the tree.
+	 */
+	private final Map<UUID, PlayListSetElement> elements = new HashMap<UUID, PlayListSetElement>();
+
+	/**
+	 * The UUID of the parent set of every nested element. Root sets have no
+	 * entry.
+	 */
+	private final Map<UUID, UUID> parents = new HashMap<UUID, UUID>();
 	private UUID activeSet = null;
 
 	/**
@@ -85,28 +105,52 @@ public class DefaultController extends AbstractController {
 	}
 
 	private PlayList getPlayList(final UUID playListUUID) {
-		PlayList playList = null;
-
-		for (PlayListSet set : rootPlayListSets.values()) {
-			playList = set.getPlayList(playListUUID);
-			if (playList != null)
-				break;
-		}
-
-		return playList;
+		PlayListSetElement element = elements.get(playListUUID);
+		return element instanceof PlayList ? (PlayList) element : null;
 	}
 
 	private PlayListSet getPlayListSet(final UUID playListSetUUID) {
-		PlayListSet set = rootPlayListSets.get(playListSetUUID);
+		PlayListSetElement element = elements.get(playListSetUUID);
+		return element instanceof PlayListSet ? (PlayListSet) element : null;
+	}
 
-		if (set == null)
-			for (PlayListSet s : rootPlayListSets.values()) {
-				set = s.getPlayListSet(playListSetUUID);
-				if (set != null)
-					break;
+	/**
+	 * Adds an element and everything nested in it to the index.
+	 * @param parentUUID The UUID of the parent set or <c>null</c> for a root
+	 * 	set.
+	 * @param element The element.
+	 */
+	private void index(final UUID parentUUID, final PlayListSetElement element) {
+		elements.put(element.getUUID(), element);
+		if (parentUUID != null) {
+			parents.put(element.getUUID(), parentUUID);
+		}
+		if (element instanceof PlayListSet) {
+			PlayListSet set = (PlayListSet) element;
+			for (PlayListSet nestedSet : set.getNestedSets()) {
+				index(set.getUUID(), nestedSet);
+			}
+			for (PlayList playList : set.getNestedPlayLists()) {
+				index(set.getUUID(), playList);
 			}
+		}
+	}
 
-		return set;
+	/**
+	 * Removes an element and everything nested in it from the index.
+	 */
+	private void unindex(final PlayListSetElement element) {
+		elements.remove(element.getUUID());
+		parents.remove(element.getUUID());
+		if (element instanceof PlayListSet) {
+			PlayListSet set = (PlayListSet) element;
+			for (PlayListSet nestedSet : set.getNestedSets()) {
+				unindex(nestedSet);
+			}
+			for (PlayList playList : set.getNestedPlayLists()) {
+				unindex(playList);
+			}
+		}
 	}
 
 	@Override
@@ -169,8 +213,7 @@ public class DefaultController extends AbstractController {
 
 	@Override
 	public void play(final UUID playListUUID) {
-		PlayListSetElement element = getPlayList(playListUUID);
-		element = (element != null) ? element : getPlayListSet(playListUUID);
+		PlayListSetElement element = getElement(playListUUID);
 		element.play();
 
 		stopOthers(playListUUID);
@@ -215,8 +258,7 @@ public class DefaultController extends AbstractController {
 	}
 
 	private PlayListSetElement getElement(final UUID uuid) {
-		PlayListSetElement element = getPlayList(uuid);
-		return element != null ? element : getPlayListSet(uuid);
+		return elements.get(uuid);
 	}
 	@Override
 	public UUID addPlayList(final UUID parentSet) {
@@ -235,6 +277,7 @@ public class DefaultController extends AbstractController {
 			return;
 
 		set.addPlayList(playList);
+		index(parentSet, playList);
 
 		playList.addObserver(this);
 		//newPlayList(playList.getUUID());
@@ -442,6 +485,16 @@ public class DefaultController extends AbstractController {
 		playList.setStopAfterEachSound(stopAfterEachSound);
 	}
 
+	@Override
+	public void setGapless(final UUID playListUUID, final boolean gapless) {
+		PlayList playList = getPlayList(playListUUID);
+		if (playList == null) {
+			//TODO: Exception
+			return;
+		}
+		playList.setGapless(gapless);
+	}
+
 	@Override
 	public void setFadeIn(final UUID playListUUID, final int fadeIn) {
 		PlayList playList = getPlayList(playListUUID);
@@ -472,6 +525,34 @@ public class DefaultController extends AbstractController {
 		playList.setOverlapTime(overlap);
 	}
 
+	@Override
+	public void setFadeCurve(final UUID playListUUID, final FadeCurve fadeCurve) {
+		PlayList playList = getPlayList(playListUUID);
+		if (playList == null) {
+			//TODO: Exception
+			return;
+		}
+		playList.setFadeCurve(fadeCurve);
+	}
+
+	@Override
+	public void setArmedItems(final Map<UUID, Set<UUID>> itemUUIDs) {
+		List<PlayListItem> items = new LinkedList<PlayListItem>();
+		for (Entry<UUID, Set<UUID>> entry : itemUUIDs.entrySet()) {
+			PlayList playList = getPlayList(entry.getKey());
+			if (playList == null) {
+				continue;
+			}
+			for (UUID itemUUID : entry.getValue()) {
+				PlayListItem item = playList.getEntry(itemUUID);
+				if (item != null) {
+					items.add(item);
+				}
+			}
+		}
+		PlayerPool.getInstance().setArmedItems(items);
+	}
+
 	@Override
 	public boolean isStopAfterEachSound(final UUID playListUUID) {
 		PlayList playList = getPlayList(playListUUID);
@@ -482,6 +563,16 @@ public class DefaultController extends AbstractController {
 		return playList.isStopAfterEachSound();
 	}
 
+	@Override
+	public boolean isGapless(final UUID playListUUID) {
+		PlayList playList = getPlayList(playListUUID);
+		if (playList == null) {
+			//TODO: Exception
+			return false;
+		}
+		return playList.isGapless();
+	}
+
 	@Override
 	public float getRandomizeVolumeFrom(final UUID playListUUID) {
 		PlayList playList = getPlayList(playListUUID);
@@ -532,6 +623,86 @@ public class DefaultController extends AbstractController {
 		return playList.getOverlapTime();
 	}
 
+	@Override
+	public FadeCurve getFadeCurve(final UUID playListUUID) {
+		PlayList playList = getPlayList(playListUUID);
+		if (playList == null) {
+			//TODO: Exception
+			return null;
+		}
+		return playList.getFadeCurve();
+	}
+
+	@Override
+	public void setMaxVoices(final UUID playListUUID, final int maxVoices) {
+		PlayList playList = getPlayList(playListUUID);
+		if (playList == null) {
+			//TODO: Exception
+			return;
+		}
+		playList.setMaxVoices(maxVoices);
+	}
+
+	@Override
+	public int getMaxVoices(final UUID playListUUID) {
+		PlayList playList = getPlayList(playListUUID);
+		if (playList == null) {
+			//TODO: Exception
+			return 0;
+		}
+		return playList.getMaxVoices();
+	}
+
+	@Override
+	public void setMaxItemVoices(final UUID playListUUID, final int maxItemVoices) {
+		PlayList playList = getPlayList(playListUUID);
+		if (playList == null) {
+			//TODO: Exception
+			return;
+		}
+		playList.setMaxItemVoices(maxItemVoices);
+	}
+
+	@Override
+	public int getMaxItemVoices(final UUID playListUUID) {
+		PlayList playList = getPlayList(playListUUID);
+		if (playList == null) {
+			//TODO: Exception
+			return 0;
+		}
+		return playList.getMaxItemVoices();
+	}
+
+	@Override
+	public void setVoiceStealing(final UUID playListUUID, final VoiceStealing voiceStealing) {
+		PlayList playList = getPlayList(playListUUID);
+		if (playList == null) {
+			//TODO: Exception
+			return;
+		}
+		playList.setVoiceStealing(voiceStealing);
+	}
+
+	@Override
+	public VoiceStealing getVoiceStealing(final UUID playListUUID) {
+		PlayList playList = getPlayList(playListUUID);
+		if (playList == null) {
+			//TODO: Exception
+			return null;
+		}
+		return playList.getVoiceStealing();
+	}
+
+	@Override
+	public int getActiveVoiceCount(final UUID playListUUID) {
+		PlayList playList = getPlayList(playListUUID);
+		if (playList == null) {
+			//TODO: Exception
+			return 0;
+		}
+		return playList.getActiveVoiceCount();
+	}
+
 	@Override
 	public void setVolume(final UUID playListUUID, final float volume) {
 		PlayListSetElement element = getElement(playListUUID);
@@ -573,6 +744,8 @@ public class DefaultController extends AbstractController {
 			set.dispose();
 		}
 		rootPlayListSets.clear();
+		elements.clear();
+		parents.clear();
 
 
 		PropertyMap map = new PropertyMap(loadPath);
@@ -598,6 +771,16 @@ public class DefaultController extends AbstractController {
 		viewController.reloadView();
 	}
 
+	@Override
+	public void render(final UUID playListSetUUID, final String filePath, final int length) throws IOException {
+		PlayListSet set = getPlayListSet(playListSetUUID);
+		if (set == null) {
+			//TODO: Exception
+			return;
+		}
+		new SceneRenderer(set).render(new File(filePath), length);
+	}
+
 	@Override
 	public List<UUID> getPlayListUUIDs(final UUID parentSetUUID) {
 		List<UUID> result = new LinkedList<UUID>();
@@ -618,22 +801,7 @@ public class DefaultController extends AbstractController {
 		if (parentSetUUID == null) {
 			return new LinkedList<UUID>(rootPlayListSets.keySet());
 		}
-		PlayListSet set = rootPlayListSets.get(parentSetUUID);
-		List<PlayListSet> currentList = new LinkedList<PlayListSet>(rootPlayListSets.values());
-		List<PlayListSet> nextList = new LinkedList<PlayListSet>();
-		while (set == null) {
-			if (currentList.isEmpty()) {
-				break;
-			}
-			for (PlayListSet currentSet : currentList) {
-				if (currentSet.getUUID().equals(parentSetUUID)) {
-					set = currentSet;
-					break;
-				}
-				nextList.add(currentSet);
-			}
-			currentList = new LinkedList<PlayListSet>(nextList);
-		}
+		PlayListSet set = getPlayListSet(parentSetUUID);
 
 		if (set == null)
 			return null;
@@ -647,8 +815,7 @@ public class DefaultController extends AbstractController {
 
 	@Override
 	public String getTitle(final UUID uuid) {
-		PlayListSetElement elem = getPlayListSet(uuid);
-		elem = elem == null ? getPlayList(uuid) : elem;
+		PlayListSetElement elem = getElement(uuid);
 
 		return elem == null ? null : elem.getName();
 	}
@@ -665,35 +832,25 @@ public class DefaultController extends AbstractController {
 	private void addPlayListSet(final UUID parentSetUUID, final PlayListSet playListSet) {
 		if (parentSetUUID == null) {
 			rootPlayListSets.put(playListSet.getUUID(), playListSet);
+			index(null, playListSet);
 			update();
 		} else {
-			for (PlayListSet set : rootPlayListSets.values()) {
-				if (set.addPlayList(parentSetUUID, playListSet))
-					break;
+			PlayListSet set = getPlayListSet(parentSetUUID);
+			if (set != null) {
+				set.addPlayList(playListSet);
+				index(parentSetUUID, playListSet);
 			}
 		}
 	}
 
 	@Override
 	public UUID getParent(final UUID child) {
-		if (rootPlayListSets.containsKey(child))
-			return null;
-
-		UUID result = null;
-
-		for (PlayListSetElement element : rootPlayListSets.values()) {
-			result = element.getParent(child);
-			if (result != null)
-				return result;
-		}
-
-		return null;
+		return parents.get(child);
 	}
 
 	@Override
 	public void setTitle(final UUID uuid, final String newTitle) {
-		PlayListSetElement element = getPlayList(uuid);
-		element = (element != null) ? element : getPlayListSet(uuid);
+		PlayListSetElement element = getElement(uuid);
 		if (element == null)
 			return;
 
@@ -702,7 +859,12 @@ public class DefaultController extends AbstractController {
 
 	@Override
 	public void remove(final UUID uuid) {
+		PlayListSetElement element = getElement(uuid);
+		if (element == null)
+			return;
+
 		UUID parentUUID = getParent(uuid);
+		unindex(element);
 		if (parentUUID == null) {
 			rootPlayListSets.remove(uuid);
 			update();
@@ -27,14 +27,10 @@ import java.io.InputStreamReader;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
 import java.util.logging.Logger;
 
 import javax.swing.JFileChooser;
@@ -49,9 +45,11 @@ import smartsound.plugins.player.PluginLoader;
 import smartsound.settings.Global;
 
 /**
- * Launches the main application. The plugin for the sound engine is chosen
- * and the process is restarted if necessary (if the plugin needs certain
- * environment variables to be set).
+ * Launches the main application. The installed plugins are found while the
+ * look and feel is set up, then the plugin for the sound engine is chosen
+ * and its native libraries are loaded into this process. Only if that
+ * fails, the process is restarted with the environment variables the plugin
+ * needs.
  * @author Andr Becker
  *
  */
@@ -94,13 +92,15 @@ public class Launcher {
 	 * @throws IOException
 	 */
 	public static void main(final String[] args) throws IOException {
+		PluginRegistry registry = new PluginRegistry(new File("plugins"));
+		registry.discover();
 		setLookAndFeel();
 
 		String pluginName = null;
 		if (args.length > 0) {
 			pluginName = args[0];
 		}
-		PluginDescription plugin = getPlugin(pluginName);
+		PluginDescription plugin = getPlugin(pluginName, registry.getPlugins());
 
 		String workingDirectory = getMainDir();
 		String operatingSystem = System.getProperty("os.name");
@@ -155,6 +155,11 @@ public class Launcher {
 			LOGGER.info(tuple.first + " set to " + environmentVariableContent);
 		}
 
+		if (restartRequired && pluginLoader.loadLibraries()) {
+			LOGGER.info("Native libraries of " + plugin.getName() + " loaded without restart");
+			restartRequired = false;
+		}
+
 		if (restartRequired) {
 			restart(pluginLoader.neededEnvironment(), plugin.getName());
 		} else {
@@ -164,27 +169,7 @@ public class Launcher {
 		}
 	}
 
-	private static PluginDescription getPlugin(String pluginName) {
-		File pluginDir = new File("plugins");
-
-		Stack<File> dirStack = new Stack<File>();
-		dirStack.add(pluginDir);
-
-		File current;
-
-		List<PluginDescription> pluginList = new LinkedList<PluginDescription>();
-		while (!dirStack.isEmpty()) {
-			current = dirStack.pop();
-
-			if (current.isDirectory()) {
-				for (File f : current.listFiles()) {
-					dirStack.push(f);
-				}
-			} else if (current.getName().equals("plugin.cfg")) {
-				pluginList.add(new PluginDescription(current));
-			}
-		}
-
+	private static PluginDescription getPlugin(String pluginName, final List<PluginDescription> pluginList) {
 		try {
 			if (pluginName == null) {
 				pluginName = Global.getInstance().getProperty("plugin");
@@ -286,9 +271,7 @@ public class Launcher {
 
 	private static PluginLoader getPluginLoader(final PluginDescription desc) {
 		try {
-			ClassLoader loader = URLClassLoader.newInstance(new URL[] { desc.getPluginJar().toURI().toURL() },
-					Launcher.class.getClassLoader());
-			Class<?> ClassToLoad = Class.forName(desc.getClassName(), true, loader);
+			Class<?> ClassToLoad = Class.forName(desc.getClassName(), true, desc.getClassLoader());
 			Class<? extends PluginLoader> PluginLoaderClass = ClassToLoad.asSubclass(PluginLoader.class);
 			Constructor<? extends PluginLoader> ctr = PluginLoaderClass.getConstructor();
 			return ctr.newInstance();
@@ -18,49 +18,59 @@
 package smartsound.controller;
 
 import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.Properties;
 
+/**
+ * Describes a plugin by the content of its <c>plugin.cfg</c>. The text of
+ * the description and the class loader of the plugin are created when they
+ * are needed first, so describing all installed plugins is cheap.
+ * @author Andr Becker
+ *
+ */
 public class PluginDescription
 {
     private File pluginJar;
+    private File directory;
     private String name;
     private String version;
     private String className;
     private String description;
+    private ClassLoader classLoader;
 
 	public PluginDescription(File f) {
-		try {
-			description = "";
-			BufferedReader rdr;
-			Properties properties = new Properties();
-			BufferedInputStream stream = new BufferedInputStream(
-					new FileInputStream(f));
-			properties.load(stream);
-			stream.close();
-			name = properties.getProperty("name");
-			version = properties.getProperty("version");
-			className = properties.getProperty("class");
-			assert properties.getProperty("type").equals("soundengine");
-
-			File dir = f.getParentFile();
-			pluginJar = new File((new StringBuilder(String.valueOf(dir
-					.getAbsolutePath()))).append("/")
-					.append(properties.getProperty("filename")).toString());
-			stream = new BufferedInputStream(new FileInputStream(
-					(new StringBuilder()).append(dir).append("/desc-en.html")
-							.toString()));
-			rdr = new BufferedReader(new FileReader((new StringBuilder())
-					.append(dir).append("/desc-en.html").toString()));
-
-			String line;
-			while ((line = rdr.readLine()) != null) {
-				description += line;
-			}
+		this(f, load(f));
+	}
 
+	/**
+	 * @param f The <c>plugin.cfg</c>.
+	 * @param properties The content of the file, which has already been read.
+	 */
+	PluginDescription(File f, Properties properties) {
+		name = properties.getProperty("name");
+		version = properties.getProperty("version");
+		className = properties.getProperty("class");
+		assert "soundengine".equals(properties.getProperty("type"));
+
+		directory = f.getParentFile();
+		pluginJar = new File(directory.getAbsolutePath() + "/" + properties.getProperty("filename"));
+	}
+
+	/**
+	 * Reads a <c>plugin.cfg</c>.
+	 * @param f The file.
+	 * @return The content of the file, which is empty if it cannot be read.
+	 */
+	static Properties load(File f) {
+		Properties properties = new Properties();
+		try (InputStream stream = new BufferedInputStream(new FileInputStream(f))) {
+			properties.load(stream);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-
+		return properties;
 	}
 
     public File getPluginJar()
@@ -83,10 +93,34 @@ public class PluginDescription
         return className;
     }
 
-    public String getDescription()
-    {
-        return description;
-    }
+	public synchronized String getDescription() {
+		if (description == null) {
+			StringBuilder builder = new StringBuilder();
+			try (BufferedReader rdr = new BufferedReader(new FileReader(new File(directory, "desc-en.html")))) {
+				String line;
+				while ((line = rdr.readLine()) != null) {
+					builder.append(line);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			description = builder.toString();
+		}
+		return description;
+	}
+
+	/**
+	 * @return The class loader of the plugin's jar. It is created by the
+	 * 	first call.
+	 * @throws MalformedURLException If the path of the jar is invalid.
+	 */
+	public synchronized ClassLoader getClassLoader() throws MalformedURLException {
+		if (classLoader == null) {
+			classLoader = URLClassLoader.newInstance(new URL[] { pluginJar.toURI().toURL() },
+					PluginDescription.class.getClassLoader());
+		}
+		return classLoader;
+	}
 
     public String toString()
     {
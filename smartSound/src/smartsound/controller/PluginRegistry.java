@@ -0,0 +1,208 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds the installed plugins. The content of every <c>plugin.cfg</c> is
+ * kept in an index file together with the size and the modification time
+ * of the file, so a configuration is only read again if it has changed.
+ * @author Andr Becker
+ *
+ */
+public class PluginRegistry {
+
+	private static final Logger LOGGER = Logger.getLogger(PluginRegistry.class.getName());
+
+	private static final String CONFIG_FILE = "plugin.cfg";
+	private static final String INDEX_FILE = "plugins.idx";
+	private static final String SIZE = "#size";
+	private static final String MODIFIED = "#modified";
+
+	private final File pluginDir;
+	private final File indexFile;
+	private FutureTask<List<PluginDescription>> discovery;
+
+	/**
+	 * @param pluginDir The directory the plugins are installed in. The
+	 * 	index is stored there, too.
+	 */
+	public PluginRegistry(final File pluginDir) {
+		this.pluginDir = pluginDir;
+		indexFile = new File(pluginDir, INDEX_FILE);
+	}
+
+	/**
+	 * Starts to find the plugins in a thread of its own, so other work can
+	 * be done meanwhile. Calling it again has no effect.
+	 */
+	public synchronized void discover() {
+		if (discovery != null) {
+			return;
+		}
+		discovery = createDiscovery();
+		Thread thread = new Thread(discovery, "PluginDiscovery");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Waits for the plugins to be found. Starts to find them first if
+	 * <c>discover</c> has not been called.
+	 * @return The descriptions of the plugins.
+	 */
+	public List<PluginDescription> getPlugins() {
+		FutureTask<List<PluginDescription>> task;
+		synchronized (this) {
+			if (discovery == null) {
+				discovery = createDiscovery();
+				discovery.run();
+			}
+			task = discovery;
+		}
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			LOGGER.log(Level.WARNING, "The plugins cannot be found", e.getCause());
+			return new LinkedList<PluginDescription>();
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private FutureTask<List<PluginDescription>> createDiscovery() {
+		return new FutureTask<List<PluginDescription>>(new Callable<List<PluginDescription>>() {
+			@Override
+			public List<PluginDescription> call() {
+				return findPlugins();
+			}
+		});
+	}
+
+	private List<PluginDescription> findPlugins() {
+		Properties index = readIndex();
+		Properties newIndex = new Properties();
+		List<PluginDescription> pluginList = new LinkedList<PluginDescription>();
+
+		Stack<File> dirStack = new Stack<File>();
+		dirStack.add(pluginDir);
+		File current;
+		File[] files;
+		while (!dirStack.isEmpty()) {
+			current = dirStack.pop();
+
+			if (current.isDirectory()) {
+				files = current.listFiles();
+				if (files != null) {
+					for (File f : files) {
+						dirStack.push(f);
+					}
+				}
+			} else if (current.getName().equals(CONFIG_FILE)) {
+				String key = current.getPath();
+				Properties properties = getCached(index, current, key);
+				if (properties == null) {
+					properties = PluginDescription.load(current);
+				}
+				newIndex.setProperty(key + SIZE, String.valueOf(current.length()));
+				newIndex.setProperty(key + MODIFIED, String.valueOf(current.lastModified()));
+				for (String name : properties.stringPropertyNames()) {
+					newIndex.setProperty(key + "#" + name, properties.getProperty(name));
+				}
+				pluginList.add(new PluginDescription(current, properties));
+			}
+		}
+
+		if (!newIndex.equals(index)) {
+			writeIndex(newIndex);
+		}
+		return pluginList;
+	}
+
+	/**
+	 * @return The content of a configuration as stored in the index or
+	 * 	<c>null</c> if the file is not indexed or has changed.
+	 */
+	private static Properties getCached(final Properties index, final File file, final String key) {
+		if (!String.valueOf(file.length()).equals(index.getProperty(key + SIZE))
+				|| !String.valueOf(file.lastModified()).equals(index.getProperty(key + MODIFIED))) {
+			return null;
+		}
+		Properties properties = new Properties();
+		String prefix = key + "#";
+		for (Map.Entry<Object, Object> entry : index.entrySet()) {
+			String name = (String) entry.getKey();
+			if (name.startsWith(prefix) && !name.equals(key + SIZE) && !name.equals(key + MODIFIED)) {
+				properties.setProperty(name.substring(prefix.length()), (String) entry.getValue());
+			}
+		}
+		return properties;
+	}
+
+	private Properties readIndex() {
+		Properties index = new Properties();
+		if (indexFile.isFile()) {
+			try (InputStream stream = new BufferedInputStream(new FileInputStream(indexFile))) {
+				index.load(stream);
+			} catch (IOException | IllegalArgumentException e) {
+				LOGGER.log(Level.WARNING, "The plugin index cannot be read", e);
+				index.clear();
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Stores the index. Failing to do so, e.g. because the directory is
+	 * read-only, only costs reading the configurations on the next start.
+	 */
+	private void writeIndex(final Properties index) {
+		try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(indexFile))) {
+			index.store(stream, "Generated by smartSound, may be deleted");
+		} catch (IOException e) {
+			LOGGER.log(Level.INFO, "The plugin index cannot be written", e);
+		}
+	}
+}
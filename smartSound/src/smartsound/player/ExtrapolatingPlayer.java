@@ -0,0 +1,295 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player;
+
+import smartsound.player.events.TimeEventHandler;
+import smartsound.plugins.player.IPlayer;
+import smartsound.plugins.player.IPlayerListener;
+import smartsound.plugins.player.ISound;
+import smartsound.plugins.player.PlayerState;
+
+/**
+ * Decorates an <c>IPlayer</c> and answers most position queries without
+ * asking the sound engine. The length of a sound never changes and is
+ * cached; the position is extrapolated from the last known position, the
+ * playback speed and the time passed since then. The decorated player is
+ * asked again after a resync interval, after seeking, pausing, resuming or
+ * changing the speed and whenever the extrapolated position reaches the end
+ * of the sound. The resync interval shrinks if the extrapolation drifted
+ * and grows while it was accurate.
+ * @author Andr Becker
+ *
+ */
+class ExtrapolatingPlayer implements IPlayer {
+
+	/**
+	 * Bounds of the time in milliseconds between two resyncs while playing.
+	 */
+	private static final long MIN_RESYNC_INTERVAL = 100;
+	private static final long MAX_RESYNC_INTERVAL = 2000;
+
+	/**
+	 * Deviation in milliseconds between the extrapolated and the actual
+	 * position which counts as drift.
+	 */
+	private static final double DRIFT_TOLERANCE = 15;
+
+	private final IPlayer player;
+	private final TimeEventHandler timeEventHandler;
+	private int length = -1;
+	private float speed = 1.0f;
+	private boolean playing = false;
+	private boolean paused = false;
+	private boolean finished = false;
+	private boolean synced = false;
+	private double basePosition;
+	private long baseNanos;
+	private long resyncInterval = MIN_RESYNC_INTERVAL;
+
+	/**
+	 * @param player The decorated player.
+	 * @param timeEventHandler The handler whose clock measures the
+	 * 	playback time.
+	 */
+	ExtrapolatingPlayer(final IPlayer player, final TimeEventHandler timeEventHandler) {
+		this.player = player;
+		this.timeEventHandler = timeEventHandler;
+	}
+
+	/**
+	 * @return The decorated player.
+	 */
+	IPlayer getPlayer() {
+		return player;
+	}
+
+	private double extrapolate(final long now) {
+		if (!playing || paused || finished) {
+			return basePosition;
+		}
+		return basePosition + (now - baseNanos) / 1e6 * speed;
+	}
+
+	/**
+	 * @param now The current time in nanoseconds.
+	 * @return <c>true</c> if the decorated player has to be asked.
+	 */
+	private boolean needsResync(final long now) {
+		if (finished) {
+			return false;
+		}
+		if (!synced) {
+			return true;
+		}
+		if (!playing || paused) {
+			return false;
+		}
+		return now - baseNanos >= resyncInterval * 1000000L || extrapolate(now) >= getPlayLength();
+	}
+
+	/**
+	 * Takes over the actual position and finished state of the decorated
+	 * player and adjusts the resync interval.
+	 */
+	private void resync(final long now, final int position, final boolean isFinished) {
+		if (synced && playing && !paused) {
+			if (Math.abs(extrapolate(now) - position) > DRIFT_TOLERANCE) {
+				resyncInterval = Math.max(MIN_RESYNC_INTERVAL, resyncInterval / 2);
+			} else {
+				resyncInterval = Math.min(MAX_RESYNC_INTERVAL, resyncInterval * 2);
+			}
+		}
+		basePosition = position;
+		baseNanos = now;
+		finished = isFinished;
+		synced = true;
+	}
+
+	private void resync(final long now) {
+		resync(now, player.getPlayPosition(), player.isFinished());
+	}
+
+	/**
+	 * Fills in a snapshot from the extrapolation if the decorated player
+	 * does not need to be asked.
+	 * @param state The snapshot.
+	 * @return <c>false</c> if the decorated player has to be asked, in which
+	 * 	case the snapshot is left untouched.
+	 */
+	synchronized boolean getState(final PlayerState state) {
+		long now = timeEventHandler.nanoTime();
+		if (length < 0 || needsResync(now)) {
+			return false;
+		}
+		state.set((int) extrapolate(now), length, finished, paused);
+		return true;
+	}
+
+	/**
+	 * Takes over a snapshot of the decorated player which has been taken
+	 * by the sound engine.
+	 * @param state The snapshot.
+	 */
+	synchronized void setState(final PlayerState state) {
+		length = state.getLength();
+		resync(timeEventHandler.nanoTime(), state.getPosition(), state.isFinished());
+	}
+
+	@Override
+	public ISound getPlayListEntry() {
+		return player.getPlayListEntry();
+	}
+
+	@Override
+	public synchronized void play() {
+		player.play();
+		playing = true;
+		paused = false;
+		synced = false;
+	}
+
+	@Override
+	public synchronized void pause() {
+		player.pause();
+		paused = true;
+		synced = false;
+	}
+
+	@Override
+	public synchronized boolean getPaused() {
+		return paused;
+	}
+
+	@Override
+	public synchronized void stop() {
+		player.stop();
+		basePosition = extrapolate(timeEventHandler.nanoTime());
+		finished = true;
+	}
+
+	@Override
+	public synchronized void release() {
+		player.release();
+		basePosition = extrapolate(timeEventHandler.nanoTime());
+		finished = true;
+	}
+
+	@Override
+	public float getVolume() {
+		return player.getVolume();
+	}
+
+	@Override
+	public void setVolume(final float volume) {
+		player.setVolume(volume);
+	}
+
+	@Override
+	public boolean slideVolume(final float volume, final int duration) {
+		return player.slideVolume(volume, duration);
+	}
+
+	@Override
+	public float getPan() {
+		return player.getPan();
+	}
+
+	@Override
+	public void setPan(final float pan) {
+		player.setPan(pan);
+	}
+
+	@Override
+	public synchronized boolean isFinished() {
+		long now = timeEventHandler.nanoTime();
+		if (needsResync(now)) {
+			resync(now);
+		}
+		return finished;
+	}
+
+	@Override
+	public synchronized int getPlayPosition() {
+		long now = timeEventHandler.nanoTime();
+		if (needsResync(now)) {
+			resync(now);
+		}
+		return (int) extrapolate(now);
+	}
+
+	@Override
+	public synchronized void setPlayPosition(final int position) {
+		player.setPlayPosition(position);
+		synced = false;
+	}
+
+	@Override
+	public synchronized float getPlaybackSpeed() {
+		return speed;
+	}
+
+	@Override
+	public synchronized void setPlaybackSpeed(final float speed) {
+		long now = timeEventHandler.nanoTime();
+		basePosition = extrapolate(now);
+		baseNanos = now;
+		player.setPlaybackSpeed(speed);
+		this.speed = player.getPlaybackSpeed();
+		synced = false;
+	}
+
+	@Override
+	public synchronized int getPlayLength() {
+		if (length < 0) {
+			length = player.getPlayLength();
+		}
+		return length;
+	}
+
+	@Override
+	public boolean addPlayerListener(final IPlayerListener listener) {
+		return player.addPlayerListener(listener);
+	}
+
+	@Override
+	public void removePlayerListener(final IPlayerListener listener) {
+		player.removePlayerListener(listener);
+	}
+
+	@Override
+	public void addMarker(final int position) {
+		player.addMarker(position);
+	}
+
+	@Override
+	public void removeMarker(final int position) {
+		player.removeMarker(position);
+	}
+
+	/**
+	 * A successor started by the engine does not know that it is playing;
+	 * it is told so by <c>play()</c> when it is taken over.
+	 */
+	@Override
+	public boolean queueSuccessor(final IPlayer successor, final int position) {
+		if (successor instanceof ExtrapolatingPlayer) {
+			return player.queueSuccessor(((ExtrapolatingPlayer) successor).getPlayer(), position);
+		}
+		return player.queueSuccessor(successor, position);
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player;
+
+/**
+ * The shape of fade ins and fade outs. Each curve is evaluated from a
+ * lookup table which is computed once, so evaluating it neither allocates
+ * nor calls any math functions. A fade out is the mirrored fade in.
+ * @author Andr Becker
+ *
+ */
+public enum FadeCurve {
+
+	/**
+	 * The gain changes linearly. Crossfades dip in loudness at the middle.
+	 */
+	LINEAR("Linear") {
+		@Override
+		double compute(double x) {
+			return x;
+		}
+	},
+
+	/**
+	 * The power sum of a fade in and the mirrored fade out stays constant,
+	 * so crossfades keep their loudness.
+	 */
+	EQUAL_POWER("Equal power") {
+		@Override
+		double compute(double x) {
+			return Math.sin(x * Math.PI / 2);
+		}
+	},
+
+	/**
+	 * The gain changes linearly in decibels over a range of 60 dB, which
+	 * is perceived as an even change of loudness.
+	 */
+	LOGARITHMIC("Logarithmic") {
+		@Override
+		double compute(double x) {
+			return (Math.pow(10, 3 * (x - 1)) - 0.001) / 0.999;
+		}
+	},
+
+	/**
+	 * The gain changes slowly at the beginning and the end and fast in the
+	 * middle.
+	 */
+	S_CURVE("S-curve") {
+		@Override
+		double compute(double x) {
+			return (1 - Math.cos(x * Math.PI)) / 2;
+		}
+	};
+
+	/**
+	 * The number of table intervals between no progress and a complete fade.
+	 */
+	private static final int RESOLUTION = 256;
+
+	private final String name;
+	private final float[] table = new float[RESOLUTION + 1];
+
+	private FadeCurve(final String name) {
+		this.name = name;
+		for (int i = 0; i <= RESOLUTION; i++) {
+			table[i] = (float) compute((double) i / RESOLUTION);
+		}
+		table[0] = 0;
+		table[RESOLUTION] = 1;
+	}
+
+	/**
+	 * Computes the gain of a fade in. Used to fill the table.
+	 * @param x The progress of the fade from 0 to 1.
+	 * @return The gain from 0 to 1.
+	 */
+	abstract double compute(double x);
+
+	/**
+	 * @param progress The progress of the fade in from 0 to 1. Values
+	 * 	outside are clamped.
+	 * @return The gain as value between 0 and 1.0, interpolated linearly
+	 * 	between two table entries.
+	 */
+	public float fadeIn(final float progress) {
+		if (progress <= 0) {
+			return 0;
+		}
+		if (progress >= 1) {
+			return 1;
+		}
+		float index = progress * RESOLUTION;
+		int i = (int) index;
+		return table[i] + (table[i + 1] - table[i]) * (index - i);
+	}
+
+	/**
+	 * @param progress The progress of the fade out from 0 to 1. Values
+	 * 	outside are clamped.
+	 * @return The gain as value between 0 and 1.0.
+	 */
+	public float fadeOut(final float progress) {
+		return fadeIn(1 - progress);
+	}
+
+	/**
+	 * @return <c>true</c> if the gain changes linearly, so that a fade can
+	 * 	be handed over to the sound engine as a single volume slide.
+	 */
+	public boolean isLinear() {
+		return this == LINEAR;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * The items of a <c>PlayList</c> in their order. The items are kept in a
+ * treap ordered by position whose nodes know their parent and the size of
+ * their subtree, so both the item at an index and the index of an item are
+ * found in logarithmic time. A hash index finds the node of an item by its
+ * <c>UUID</c>. The methods are synchronized, since the threads dispatching
+ * the time events read the list while the view changes it. Iterators work on
+ * a snapshot of the list, which is kept until the list changes.
+ * @author Andr Becker
+ *
+ */
+class IndexedItemList extends AbstractList<PlayListItem> {
+
+	private static class Node {
+
+		private final PlayListItem item;
+		private final int priority;
+		private Node left;
+		private Node right;
+		private Node parent;
+		private int size = 1;
+
+		private Node(final PlayListItem item, final int priority) {
+			this.item = item;
+			this.priority = priority;
+		}
+	}
+
+	private final Map<UUID, Node> nodes = new HashMap<UUID, Node>();
+	private final Random random = new Random();
+	private final Node[] halves = new Node[2];
+	private Node root;
+	private PlayListItem[] snapshot;
+
+	@Override
+	public synchronized int size() {
+		return nodes.size();
+	}
+
+	@Override
+	public synchronized PlayListItem get(final int index) {
+		return nodeAt(index).item;
+	}
+
+	/**
+	 * @param uuid The <c>UUID</c> of an item.
+	 * @return The item or <c>null</c> if the list does not contain it.
+	 */
+	synchronized PlayListItem get(final UUID uuid) {
+		Node node = nodes.get(uuid);
+		return node == null ? null : node.item;
+	}
+
+	/**
+	 * Inserts an item.
+	 * @throws IllegalArgumentException If an item with the same <c>UUID</c>
+	 * 	is in the list already.
+	 */
+	@Override
+	public synchronized void add(final int index, final PlayListItem item) {
+		if (index < 0 || index > size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		if (nodes.containsKey(item.getUUID())) {
+			throw new IllegalArgumentException("The item is already in the list");
+		}
+		Node node = new Node(item, random.nextInt());
+		nodes.put(item.getUUID(), node);
+		split(root, index);
+		Node right = halves[1];
+		root = merge(merge(halves[0], node), right);
+		root.parent = null;
+		changed();
+	}
+
+	@Override
+	public synchronized PlayListItem remove(final int index) {
+		Node node = nodeAt(index);
+		remove(node, index);
+		return node.item;
+	}
+
+	@Override
+	public synchronized boolean remove(final Object o) {
+		Node node = getNode(o);
+		if (node == null) {
+			return false;
+		}
+		remove(node, indexOf(node));
+		return true;
+	}
+
+	@Override
+	public synchronized int indexOf(final Object o) {
+		Node node = getNode(o);
+		return node == null ? -1 : indexOf(node);
+	}
+
+	@Override
+	public int lastIndexOf(final Object o) {
+		return indexOf(o);
+	}
+
+	/**
+	 * @param uuid The <c>UUID</c> of an item.
+	 * @return The index of the item or -1 if the list does not contain it.
+	 */
+	synchronized int indexOf(final UUID uuid) {
+		Node node = nodes.get(uuid);
+		return node == null ? -1 : indexOf(node);
+	}
+
+	@Override
+	public synchronized boolean contains(final Object o) {
+		return getNode(o) != null;
+	}
+
+	@Override
+	public synchronized Iterator<PlayListItem> iterator() {
+		if (snapshot == null) {
+			snapshot = new PlayListItem[size()];
+			int i = 0;
+			Node node = first(root);
+			while (node != null) {
+				snapshot[i++] = node.item;
+				node = next(node);
+			}
+		}
+		return Arrays.asList(snapshot).iterator();
+	}
+
+	private Node getNode(final Object o) {
+		if (!(o instanceof PlayListItem)) {
+			return null;
+		}
+		Node node = nodes.get(((PlayListItem) o).getUUID());
+		return node != null && node.item == o ? node : null;
+	}
+
+	private void remove(final Node node, final int index) {
+		nodes.remove(node.item.getUUID());
+		split(root, index);
+		Node left = halves[0];
+		split(halves[1], 1);
+		root = merge(left, halves[1]);
+		if (root != null) {
+			root.parent = null;
+		}
+		node.left = node.right = node.parent = null;
+		changed();
+	}
+
+	private void changed() {
+		modCount++;
+		snapshot = null;
+	}
+
+	private Node nodeAt(final int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		Node node = root;
+		int i = index;
+		while (true) {
+			int leftSize = size(node.left);
+			if (i < leftSize) {
+				node = node.left;
+			} else if (i == leftSize) {
+				return node;
+			} else {
+				i -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	private static int indexOf(final Node node) {
+		int index = size(node.left);
+		Node current = node;
+		while (current.parent != null) {
+			if (current.parent.right == current) {
+				index += size(current.parent.left) + 1;
+			}
+			current = current.parent;
+		}
+		return index;
+	}
+
+	private static Node first(final Node node) {
+		Node current = node;
+		while (current != null && current.left != null) {
+			current = current.left;
+		}
+		return current;
+	}
+
+	private static Node next(final Node node) {
+		if (node.right != null) {
+			return first(node.right);
+		}
+		Node current = node;
+		while (current.parent != null && current.parent.right == current) {
+			current = current.parent;
+		}
+		return current.parent;
+	}
+
+	private static int size(final Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static void update(final Node node) {
+		node.size = size(node.left) + size(node.right) + 1;
+	}
+
+	/**
+	 * Splits a tree into its first <c>count</c> nodes and the remaining
+	 * ones, which are stored in <c>halves</c>. The roots' parents are not
+	 * cleared.
+	 */
+	private void split(final Node node, final int count) {
+		if (node == null) {
+			halves[0] = halves[1] = null;
+			return;
+		}
+		if (size(node.left) < count) {
+			split(node.right, count - size(node.left) - 1);
+			node.right = halves[0];
+			if (node.right != null) {
+				node.right.parent = node;
+			}
+			update(node);
+			halves[0] = node;
+		} else {
+			split(node.left, count);
+			node.left = halves[1];
+			if (node.left != null) {
+				node.left.parent = node;
+			}
+			update(node);
+			halves[1] = node;
+		}
+	}
+
+	/**
+	 * Joins two trees whose nodes all precede respectively follow the ones
+	 * of the other tree. The root's parent is not cleared.
+	 */
+	private static Node merge(final Node left, final Node right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+		if (left.priority > right.priority) {
+			left.right = merge(left.right, right);
+			left.right.parent = left;
+			update(left);
+			return left;
+		}
+		right.left = merge(left, right.left);
+		right.left.parent = right;
+		update(right);
+		return right;
+	}
+}
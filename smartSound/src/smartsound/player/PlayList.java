@@ -18,12 +18,18 @@
 package smartsound.player;
 
 import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
 
 import smartsound.common.PropertyMap;
 import smartsound.plugins.player.IPlayer;
+import smartsound.plugins.player.IPlayerCallback;
 import smartsound.plugins.player.ISound;
 
 /**
@@ -34,20 +40,30 @@ import smartsound.plugins.player.ISound;
  */
 public class PlayList extends PlayListSetElement {
 
+	private static final Logger LOGGER = Logger.getLogger(PlayList.class.getName());
+
 	protected boolean repeatList = false;
 	protected boolean stopAfterEachSound = false;
 	protected boolean randomizeList = false;
+	protected boolean gapless = false;
 	private static int nameCounter = 1;
 	private String name;
 	private final PlayerControllerSettings playerControllerSettings = new PlayerControllerSettings();
 	private float volume = 1.0f;
 	private float parentVolume;
 
-	private final List<PlayListItem> itemList = new ArrayList<PlayListItem>();
+	private final IndexedItemList itemList = new IndexedItemList();
+
+	/**
+	 * The items chained with an item, by the <c>UUID</c> of that item.
+	 */
+	private final Map<UUID, Set<PlayListItem>> chainedItems = new HashMap<UUID, Set<PlayListItem>>();
 	private boolean autoPlay = false;
+	private final PlaybackContext context;
 
 	public PlayList() {
 		super(UUID.randomUUID());
+		context = PlaybackContext.getLive();
 		setName("Playlist " + nameCounter++);
 	}
 
@@ -58,7 +74,20 @@ public class PlayList extends PlayListSetElement {
 	 * 	<c>PlayList</c> or of one of the embedded <c>PlayListItem</c>s.
 	 */
 	public PlayList(final PropertyMap map) throws LoadingException {
+		this(map, PlaybackContext.getLive());
+	}
+
+	/**
+	 * Creates a <c>PlayList</c> from a <c>PropertyMap</c> which is played in
+	 * a given context.
+	 * @param map The <c>PropertyMap</c>.
+	 * @param context The context.
+	 * @throws LoadingException If an error occurs during the creation of this
+	 * 	<c>PlayList</c> or of one of the embedded <c>PlayListItem</c>s.
+	 */
+	public PlayList(final PropertyMap map, final PlaybackContext context) throws LoadingException {
 		super(map.getMapUUID());
+		this.context = context;
 		if (!map.get("type").equals(getClass().getCanonicalName())) {
 			throw new LoadingException();
 		}
@@ -67,17 +96,38 @@ public class PlayList extends PlayListSetElement {
 		repeatList = Boolean.parseBoolean(map.get("repeat"));
 		stopAfterEachSound = Boolean.parseBoolean(map.get("stop_after_each_sound"));
 		randomizeList = Boolean.parseBoolean(map.get("randomize"));
+		gapless = Boolean.parseBoolean(map.get("gapless"));
 		autoPlay = Boolean.parseBoolean(map.get("autoplay"));
 
 		playerControllerSettings.setFadeInLength(Integer.parseInt(map.get("fade_in_length")));
 		playerControllerSettings.setFadeOutLength(Integer.parseInt(map.get("fade_out_length")));
 		playerControllerSettings.setOverlapTime(Integer.parseInt(map.get("overlap_length")));
+		if (map.get("fade_curve") != null) {
+			playerControllerSettings.setFadeCurve(FadeCurve.valueOf(map.get("fade_curve")));
+		}
+		if (map.get("max_voices") != null) {
+			playerControllerSettings.setMaxVoices(Integer.parseInt(map.get("max_voices")));
+		}
+		if (map.get("max_item_voices") != null) {
+			playerControllerSettings.setMaxItemVoices(Integer.parseInt(map.get("max_item_voices")));
+		}
+		if (map.get("voice_stealing") != null) {
+			playerControllerSettings.setVoiceStealing(VoiceStealing.valueOf(map.get("voice_stealing")));
+		}
 		setVolume(Float.parseFloat(map.get("max_volume")));
 		playerControllerSettings.setRandomizeVolumeFrom(Float.parseFloat(map.get("volume_from")));
 		playerControllerSettings.setRandomizeVolumeTo(Float.parseFloat(map.get("volume_to")));
 
+		PlayListItem item;
 		for (PropertyMap pMap : map.getNestedMaps()) {
-			this.add(new PlayListItem(pMap));
+			item = new PlayListItem(pMap);
+			if (itemList.get(item.getUUID()) != null) {
+				// Older versions accepted the same item twice; the copy gets
+				// a UUID of its own
+				LOGGER.warning("Item " + item.getUUID() + " appears twice in " + name + ", the second one is copied");
+				item = new PlayListItem(item, false);
+			}
+			this.add(item);
 		}
 	}
 
@@ -89,6 +139,13 @@ public class PlayList extends PlayListSetElement {
 		return super.getUUID();
 	}
 
+	/**
+	 * @return The context this <c>PlayList</c> is played in.
+	 */
+	PlaybackContext getContext() {
+		return context;
+	}
+
 	/**
 	 * @return The number of <c>PlayListItem</c>s in this <c>PlayList</c>.
 	 */
@@ -168,9 +225,19 @@ public class PlayList extends PlayListSetElement {
 
 	private void updateVolume() {
 		playerControllerSettings.setVolume(volume * parentVolume);
+		settingsChanged();
 		playListChanged();
 	}
 
+	/**
+	 * Informs all <c>PlayListItem</c>s that the shared settings have changed.
+	 */
+	private void settingsChanged() {
+		for (PlayListItem entry : itemList) {
+			entry.wakeUp();
+		}
+	}
+
 	/**
 	 * @return The <c>PlayList</c>'s volume.
 	 */
@@ -189,6 +256,46 @@ public class PlayList extends PlayListSetElement {
 		playListChanged();
 	}
 
+	/**
+	 * Updates the index of chained items after an item has been chained
+	 * with another one. Called by the item.
+	 * @param item The item.
+	 * @param previous The <c>UUID</c> of the item it was chained with
+	 * 	before or <c>null</c>.
+	 */
+	void chainChanged(final PlayListItem item, final UUID previous) {
+		if (itemList.contains(item)) {
+			unchain(previous, item);
+			chain(item.getChainWith(), item);
+		}
+		playListChanged();
+	}
+
+	private void chain(final UUID target, final PlayListItem item) {
+		if (target == null) {
+			return;
+		}
+		Set<PlayListItem> items = chainedItems.get(target);
+		if (items == null) {
+			items = new HashSet<PlayListItem>();
+			chainedItems.put(target, items);
+		}
+		items.add(item);
+	}
+
+	private void unchain(final UUID target, final PlayListItem item) {
+		if (target == null) {
+			return;
+		}
+		Set<PlayListItem> items = chainedItems.get(target);
+		if (items != null) {
+			items.remove(item);
+			if (items.isEmpty()) {
+				chainedItems.remove(target);
+			}
+		}
+	}
+
 	/**
 	 * Gets the time sounds are faded in.
 	 * @result The fade in time in milliseconds.
@@ -203,6 +310,7 @@ public class PlayList extends PlayListSetElement {
 	 */
 	public void setFadeInLength(final int fadeIn) {
 		playerControllerSettings.setFadeInLength(fadeIn);
+		settingsChanged();
 		playListChanged();
 	}
 
@@ -220,6 +328,7 @@ public class PlayList extends PlayListSetElement {
 	 */
 	public void setFadeOutLength(final int fadeOutLength) {
 		playerControllerSettings.setFadeOutLength(fadeOutLength);
+		settingsChanged();
 		playListChanged();
 	}
 
@@ -241,9 +350,93 @@ public class PlayList extends PlayListSetElement {
 	 */
 	public void setOverlapTime(final int overlapTime) {
 		playerControllerSettings.setOverlapTime(overlapTime);
+		settingsChanged();
+		playListChanged();
+	}
+
+	/**
+	 * Gets the shape of fade ins and fade outs.
+	 * @result The fade curve.
+	 */
+	public FadeCurve getFadeCurve() {
+		return playerControllerSettings.getFadeCurve();
+	}
+
+	/**
+	 * Sets the shape of fade ins and fade outs.
+	 * @param fadeCurve The fade curve.
+	 */
+	public void setFadeCurve(final FadeCurve fadeCurve) {
+		playerControllerSettings.setFadeCurve(fadeCurve);
+		settingsChanged();
+		playListChanged();
+	}
+
+	/**
+	 * Gets the maximum number of voices, i.e. sounds played at the same
+	 * time including those fading out.
+	 * @return The maximum number of voices or 0 if it is not limited.
+	 */
+	public int getMaxVoices() {
+		return playerControllerSettings.getMaxVoices();
+	}
+
+	/**
+	 * Sets the maximum number of voices, i.e. sounds played at the same
+	 * time including those fading out.
+	 * @param maxVoices The maximum number of voices or 0 if it is not
+	 * 	limited.
+	 */
+	public void setMaxVoices(final int maxVoices) {
+		playerControllerSettings.setMaxVoices(maxVoices);
+		playListChanged();
+	}
+
+	/**
+	 * Gets the maximum number of voices of each entry.
+	 * @return The maximum number of voices or 0 if it is not limited.
+	 */
+	public int getMaxItemVoices() {
+		return playerControllerSettings.getMaxItemVoices();
+	}
+
+	/**
+	 * Sets the maximum number of voices of each entry.
+	 * @param maxItemVoices The maximum number of voices or 0 if it is not
+	 * 	limited.
+	 */
+	public void setMaxItemVoices(final int maxItemVoices) {
+		playerControllerSettings.setMaxItemVoices(maxItemVoices);
 		playListChanged();
 	}
 
+	/**
+	 * Gets the policy choosing the voice which is stopped if a cap is
+	 * reached.
+	 * @return The policy.
+	 */
+	public VoiceStealing getVoiceStealing() {
+		return playerControllerSettings.getVoiceStealing();
+	}
+
+	/**
+	 * Sets the policy choosing the voice which is stopped if a cap is
+	 * reached.
+	 * @param voiceStealing The policy.
+	 */
+	public void setVoiceStealing(final VoiceStealing voiceStealing) {
+		playerControllerSettings.setVoiceStealing(voiceStealing);
+		playListChanged();
+	}
+
+	/**
+	 * @return The number of voices of this <c>PlayList</c> which are
+	 * 	playing, paused or fading out.
+	 */
+	public int getActiveVoiceCount() {
+		return context.getVoiceManager().getActiveVoiceCount(this);
+	}
+
 	/**
 	 * Returns if this <c>PlayList</c> is repeated.
 	 * @return <c>true</c> if the <c>PlayList</c> is repeated.
@@ -303,6 +496,27 @@ public class PlayList extends PlayListSetElement {
 		playListChanged();
 	}
 
+	/**
+	 * If this returns <c>true</c> the transitions between the entries are
+	 * gapless: the next entry is opened ahead of time and, if the sound
+	 * engine supports it, started by the engine itself at the exact
+	 * position where the current one ends (minus the overlap time).
+	 * @return <c>true</c> if the transitions are gapless.
+	 */
+	public boolean isGapless() {
+		return gapless;
+	}
+
+	/**
+	 * Sets if the transitions between the entries are gapless.
+	 * @param gapless If <c>true</c> the transitions are gapless.
+	 */
+	public void setGapless(final boolean gapless) {
+		this.gapless = gapless;
+		settingsChanged();
+		playListChanged();
+	}
+
 	void playListChanged() {
 		update();
 	}
@@ -350,13 +564,27 @@ public class PlayList extends PlayListSetElement {
 	}
 
 	/**
-	 * Retrieves a new <c>IPlayer</c> instance for a given instance of
-	 * <c>ISound</c> from the sound engine.
+	 * Requests a new <c>IPlayer</c> instance for a given instance of
+	 * <c>ISound</c> from the sound engine. The file is opened by a thread of
+	 * the sound engine, never by the caller. The player passed to the
+	 * callback has to be completed with <c>wrapPlayer</c>.
 	 * @param sound The <c>ISound</c>.
-	 * @return The new <c>IPlayer</c> instance
+	 * @param callback Is called with the new <c>IPlayer</c> instance.
+	 * @return The <c>Future</c> of the player.
 	 */
-	IPlayer getPlayer(final ISound sound) {
-		return SoundEngineSingleton.getInstance().getPlayer2D(sound);
+	Future<IPlayer> getPlayer(final ISound sound, final IPlayerCallback callback) {
+		return context.getSoundEngine().getPlayer2DAsync(sound, callback);
+	}
+
+	/**
+	 * Wraps a player created by the sound engine, so the time spent in the
+	 * player's methods is recorded by the <c>TimeEventStatistics</c> and its
+	 * position is extrapolated between occasional queries.
+	 * @param player The player of the sound engine.
+	 * @return The wrapped player.
+	 */
+	IPlayer wrapPlayer(final IPlayer player) {
+		return new ExtrapolatingPlayer(new TimedPlayer(player), context.getTimeEventHandler());
 	}
 
 	/**
@@ -365,14 +593,7 @@ public class PlayList extends PlayListSetElement {
 	 * @return
 	 */
 	public PlayListItem getEntry(final UUID uuid) {
-
-		for (PlayListItem entry : itemList) {
-			if (entry.getUUID().equals(uuid)) {
-				return entry;
-			}
-		}
-
-		return null;
+		return itemList.get(uuid);
 	}
 
 	/**
@@ -387,19 +608,22 @@ public class PlayList extends PlayListSetElement {
 	private void remove(final PlayListItem item, final boolean stop, final boolean removeChaining) {
 
 		if (removeChaining) {
-			for (PlayListItem pItem : itemList) {
-				if (pItem.getChainWith() != null && pItem.getChainWith().equals(item.getUUID())) {
+			Set<PlayListItem> chained = chainedItems.get(item.getUUID());
+			if (chained != null) {
+				for (PlayListItem pItem : new ArrayList<PlayListItem>(chained)) {
 					pItem.setChainWith(null);
 				}
 			}
 		}
 		itemList.remove(item);
+		unchain(item.getChainWith(), item);
 
 		if (stop) {
 			item.stop();
 		}
 
 		item.setParent(null);
+		context.getPlayerPool().disarm(item);
 		playListChanged();
 	}
 
@@ -444,6 +668,7 @@ public class PlayList extends PlayListSetElement {
 		item.setParent(this);
 		item.setSettings(playerControllerSettings);
 		itemList.add(index, item);
+		chain(item.getChainWith(), item);
 		playListChanged();
 	}
 
@@ -455,6 +680,7 @@ public class PlayList extends PlayListSetElement {
 		item.setParent(this);
 		item.setSettings(playerControllerSettings);
 		itemList.add(item);
+		chain(item.getChainWith(), item);
 		playListChanged();
 	}
 
@@ -465,14 +691,7 @@ public class PlayList extends PlayListSetElement {
 	 * @return The index.
 	 */
 	public int getEntryIndex(final UUID uuid) {
-		int i = 0;
-		for (PlayListItem entry : itemList) {
-			if (entry.getUUID().equals(uuid)) {
-				return i;
-			}
-			i++;
-		}
-		return -1;
+		return itemList.indexOf(uuid);
 	}
 
 	/**
@@ -516,12 +735,7 @@ public class PlayList extends PlayListSetElement {
 	 * 	this <c>UUID</c>.
 	 */
 	public PlayListItem getPlayListItem(final UUID itemUUID) {
-		for (PlayListItem item : itemList) {
-			if (item.getUUID().equals(itemUUID)) {
-				return item;
-			}
-		}
-		return null;
+		return itemList.get(itemUUID);
 	}
 
 	/**
@@ -667,9 +881,21 @@ public class PlayList extends PlayListSetElement {
 		map.put("repeat", String.valueOf(repeatList));
 		map.put("stop_after_each_sound", String.valueOf(stopAfterEachSound));
 		map.put("randomize", String.valueOf(randomizeList));
+		map.put("gapless", String.valueOf(gapless));
 		map.put("fade_in_length", String.valueOf(playerControllerSettings.getFadeInLength()));
 		map.put("fade_out_length", String.valueOf(playerControllerSettings.getFadeOutLength()));
 		map.put("overlap_length", String.valueOf(playerControllerSettings.getOverlapTime()));
+		map.put("fade_curve", playerControllerSettings.getFadeCurve().name());
+		// The caps are only stored if they have been set
+		if (playerControllerSettings.getMaxVoices() > 0) {
+			map.put("max_voices", String.valueOf(playerControllerSettings.getMaxVoices()));
+		}
+		if (playerControllerSettings.getMaxItemVoices() > 0) {
+			map.put("max_item_voices", String.valueOf(playerControllerSettings.getMaxItemVoices()));
+		}
+		if (playerControllerSettings.getVoiceStealing() != VoiceStealing.OLDEST) {
+			map.put("voice_stealing", playerControllerSettings.getVoiceStealing().name());
+		}
 		map.put("max_volume", String.valueOf(playerControllerSettings.getVolume()));
 		map.put("volume_from", String.valueOf(playerControllerSettings.getRandomizeVolumeFrom()));
 		map.put("volume_to", String.valueOf(playerControllerSettings.getRandomizeVolumeTo()));
@@ -17,16 +17,20 @@
 
 package smartsound.player;
 
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import smartsound.common.PropertyMap;
 import smartsound.player.events.ITimeEventListener;
 import smartsound.player.events.TimeEventHandler;
+import smartsound.player.events.TimeEventTuple;
+import smartsound.plugins.player.EngineCapability;
 import smartsound.plugins.player.IPlayer;
 import smartsound.plugins.player.ISound;
+import smartsound.plugins.player.PlayerState;
 
 /**
  * This class handles playing, fading and overlapping of sounds. It also starts
@@ -37,6 +41,51 @@ import smartsound.plugins.player.ISound;
  */
 public class PlayListItem implements ITimeEventListener {
 
+	/**
+	 * Time in milliseconds between two volume updates while fading.
+	 */
+	private static final int FADE_INTERVAL = 10;
+
+	/**
+	 * Maximum time in milliseconds between two checks of a playing sound.
+	 */
+	private static final int MAX_INTERVAL = 1000;
+
+	/**
+	 * Maximum time in milliseconds between two checks of a playing sound
+	 * whose player reports reaching its markers and its end by itself.
+	 */
+	private static final int SAFETY_INTERVAL = 5000;
+
+	/**
+	 * Number of volume slides a fade with a non-linear curve is approximated
+	 * with if the sound engine slides the volume.
+	 */
+	private static final int SLIDE_SEGMENTS = 16;
+
+	/**
+	 * Time in milliseconds before the transition to the next sound when the
+	 * next sound is predicted and opened in the background.
+	 */
+	private static final int PREPARE_TIME = 3000;
+
+	/**
+	 * Minimum time in milliseconds before the transition which is left to
+	 * the sound engine to start a queued next sound by itself.
+	 */
+	private static final int QUEUE_MARGIN = 50;
+
+	/**
+	 * Length in milliseconds of the fade out of a stolen voice.
+	 */
+	private static final int STEAL_FADE_LENGTH = 50;
+
+	/**
+	 * Time in milliseconds after a sound which cannot be played before the
+	 * next sound is started.
+	 */
+	private static final int FAILED_SOUND_DELAY = 10;
+
 	private PlayerControllerSettings settings;
 
 	private UUID uuid = UUID.randomUUID();
@@ -44,15 +93,33 @@ public class PlayListItem implements ITimeEventListener {
 	private UUID chainWith = null;
 
 	private volatile PlayList parent;
+
+	/**
+	 * The context of the <c>PlayList</c> which contains or last contained
+	 * this item.
+	 */
+	private volatile PlaybackContext context = PlaybackContext.getLive();
 	private final ISound sound;
 
-	private List<PlayerWrapper> wrappers = new LinkedList<PlayerWrapper>();
+	/**
+	 * The players of this item. They are only changed with the item's lock
+	 * held but may be read without it, e.g. by the user interface.
+	 */
+	private final List<PlayerWrapper> wrappers = new CopyOnWriteArrayList<PlayerWrapper>();
+
+	/**
+	 * The player which is started as soon as it is opened.
+	 */
+	private volatile PlayerPrefetch starting;
 
 	private boolean dispose = false;
 
 	public PlayListItem(final ISound sound, final PlayerControllerSettings settings, final PlayList parent) {
 		this.settings = settings;
 		this.parent = parent;
+		if (parent != null) {
+			this.context = parent.getContext();
+		}
 		this.sound = sound;
 	}
 
@@ -72,10 +139,19 @@ public class PlayListItem implements ITimeEventListener {
 		setParent(playListItem.parent);
 
 		if (move) {
-			wrappers = new LinkedList<PlayerWrapper>(playListItem.wrappers);
-			if (playListItem.isActive()) {
-				for (PlayerWrapper wrapper : wrappers) {
-					TimeEventHandler.add(this, wrapper);
+			synchronized (playListItem) {
+				// The players belong to this item from now on, so disposing
+				// the other item does not release them
+				wrappers.addAll(playListItem.wrappers);
+				playListItem.wrappers.clear();
+			}
+			TimeEventTuple timeEvent;
+			for (PlayerWrapper wrapper : wrappers) {
+				context.getVoiceManager().transfer(wrapper, this);
+				timeEvent = wrapper.getTimeEvent();
+				if (timeEvent != null && !timeEvent.isCancelled()) {
+					TimeEventHandler.remove(timeEvent);
+					wrapper.setTimeEvent(subscribe(wrapper));
 				}
 			}
 		}
@@ -152,8 +228,9 @@ public class PlayListItem implements ITimeEventListener {
 	 * <c>null</c> to disable chaining.
 	 */
 	public void setChainWith(final UUID chainWith) {
+		UUID previous = this.chainWith;
 		this.chainWith = chainWith;
-		parent.playListChanged();
+		parent.chainChanged(this, previous);
 	}
 
 	/**
@@ -195,10 +272,16 @@ public class PlayListItem implements ITimeEventListener {
 	 * Starts or resumes this item.
 	 */
 	public void play() {
-		if (!isActive()) {
-			startPlaying();
-		} else {
-			resume();
+		synchronized (this) {
+			if (starting != null) {
+				// The player is being opened and starts by itself
+				return;
+			}
+			if (!isActive()) {
+				startPlaying();
+			} else {
+				resume();
+			}
 		}
 		parent.playListChanged();
 	}
@@ -211,11 +294,16 @@ public class PlayListItem implements ITimeEventListener {
 		IPlayer player;
 
 		for (PlayerWrapper pWrapper : wrappers) {
+			if (pWrapper.getStatus() == PlayerControllerStatus.STOPPING) {
+				// Pausing would keep it from ever being stopped
+				continue;
+			}
 			player = pWrapper.getPlayer();
 			fadeOutEnd = Math.min(player.getPlayPosition() + settings.getFadeOutLength(), player.getPlayLength());
 			pWrapper.setFadeOutEnd(fadeOutEnd);
 
 			pWrapper.setStatus(PlayerControllerStatus.PAUSING);
+			TimeEventHandler.wakeUp(pWrapper.getTimeEvent());
 		}
 		parent.playListChanged();
 
@@ -224,20 +312,41 @@ public class PlayListItem implements ITimeEventListener {
 	/**
 	 * Stops this item.
 	 */
-	public void stop() {
+	public synchronized void stop() {
 		int fadeOutEnd;
 		IPlayer player;
 
+		PlayerPrefetch prefetch = starting;
+		if (prefetch != null) {
+			starting = null;
+			prefetch.cancel();
+		}
 		for (PlayerWrapper pWrapper : wrappers) {
 			player = pWrapper.getPlayer();
-			fadeOutEnd = Math.min(player.getPlayPosition() + settings.getFadeOutLength(), player.getPlayLength());
+			if (pWrapper.getStatus() == PlayerControllerStatus.PAUSED) {
+				// A paused player does not advance, so there is nothing to fade
+				fadeOutEnd = player.getPlayPosition();
+			} else {
+				fadeOutEnd = Math.min(player.getPlayPosition() + settings.getFadeOutLength(), player.getPlayLength());
+			}
 			pWrapper.setFadeOutEnd(fadeOutEnd);
 
 			pWrapper.setStatus(PlayerControllerStatus.STOPPING);
+			TimeEventHandler.wakeUp(pWrapper.getTimeEvent());
 		}
 		parent.playListChanged();
 	}
 
+	/**
+	 * Makes sure all players of this item are updated immediately, e.g.
+	 * because the settings of the <c>PlayList</c> have changed.
+	 */
+	synchronized void wakeUp() {
+		for (PlayerWrapper pWrapper : wrappers) {
+			TimeEventHandler.wakeUp(pWrapper.getTimeEvent());
+		}
+	}
+
 	/**
 	 * Sets the current playing position. Not implemented yet!
 	 * @param position The position in milliseconds
@@ -250,104 +359,534 @@ public class PlayListItem implements ITimeEventListener {
 		if (settings == null) {
 			return;
 		}
+		setCurrentVolume(pWrapper, pWrapper.getPlayer().getPlayPosition());
+	}
 
-		float volume = settings.getVolume();
+	private void setCurrentVolume(final PlayerWrapper pWrapper, final int currentPosition) {
+		if (settings == null) {
+			return;
+		}
+
+		float volume = getVolumeAt(pWrapper, currentPosition);
+		pWrapper.setVolume(volume);
 
 		IPlayer player = pWrapper.getPlayer();
-		int currentPosition = player.getPlayPosition();
+		float factor = pWrapper.getVolumeFactor();
+
+		// A single linear fade is handed over to the sound engine as a whole,
+		// other curves piece by piece
+		int fadeInEnd = pWrapper.getFadeInBegin() + settings.getFadeInLength();
+		int fadeOutBegin = pWrapper.getFadeOutEnd() - getFadeOutLength(pWrapper);
+		int fadeBegin = -1;
+		int slideEnd = -1;
+		if (currentPosition >= pWrapper.getFadeInBegin() && currentPosition < fadeInEnd
+				&& fadeInEnd <= fadeOutBegin) {
+			fadeBegin = pWrapper.getFadeInBegin();
+			slideEnd = fadeInEnd;
+		} else if (currentPosition > fadeOutBegin && currentPosition < pWrapper.getFadeOutEnd()
+				&& currentPosition >= fadeInEnd) {
+			fadeBegin = fadeOutBegin;
+			slideEnd = pWrapper.getFadeOutEnd();
+		}
+		if (slideEnd > currentPosition && !settings.getFadeCurve().isLinear()) {
+			int segment = Math.max(FADE_INTERVAL, (slideEnd - fadeBegin) / SLIDE_SEGMENTS);
+			slideEnd = Math.min(slideEnd, fadeBegin + ((currentPosition - fadeBegin) / segment + 1) * segment);
+		}
 
-		if (currentPosition < pWrapper.getFadeInBegin() + settings.getFadeInLength()) {
-			if (currentPosition <= pWrapper.getFadeInBegin()) {
-				volume = 0;
+		if (slideEnd > currentPosition && pWrapper.isSlideSupported()) {
+			float target = getVolumeAt(pWrapper, slideEnd) * factor;
+			if (pWrapper.getSlideEnd() == slideEnd && pWrapper.getSlideTarget() == target) {
+				// The engine is already sliding there
+				return;
 			}
-			if (settings.getFadeInLength() > 0) {
-				volume *= (Float.valueOf(currentPosition) - pWrapper.getFadeInBegin()) / settings.getFadeInLength();
+			float speed = pWrapper.isSpeedSupported() ? player.getPlaybackSpeed() : 1.0f;
+			int duration = (int) ((slideEnd - currentPosition) / (speed > 0 ? speed : 1.0f));
+			player.setVolume(volume * factor);
+			if (player.slideVolume(target, duration)) {
+				pWrapper.setSlide(slideEnd, target);
+				return;
 			}
+			pWrapper.setSlideSupported(false);
+		}
+
+		pWrapper.setSlide(-1, 0);
+		player.setVolume(volume * factor);
+	}
+
+	/**
+	 * @param pWrapper The player.
+	 * @return The length of the fade out of the player in milliseconds.
+	 */
+	private int getFadeOutLength(final PlayerWrapper pWrapper) {
+		int fadeOutLength = pWrapper.getFadeOutLength();
+		return fadeOutLength < 0 ? settings.getFadeOutLength() : fadeOutLength;
+	}
+
+	/**
+	 * Calculates the volume of a player at a given play position, taking
+	 * fade in and fade out and the <c>FadeCurve</c> into account. The
+	 * volume factor is not included.
+	 * @param pWrapper The player.
+	 * @param position The play position in milliseconds.
+	 * @return The volume as value between 0 and 1.0.
+	 */
+	private float getVolumeAt(final PlayerWrapper pWrapper, final int position) {
+		float volume = settings.getVolume();
+		FadeCurve curve = settings.getFadeCurve();
+		int fadeInLength = settings.getFadeInLength();
+		int fadeOutLength = getFadeOutLength(pWrapper);
+		int fadeOutBegin = pWrapper.getFadeOutEnd() - fadeOutLength;
 
+		if (position < pWrapper.getFadeInBegin() + fadeInLength) {
+			if (position <= pWrapper.getFadeInBegin()) {
+				volume = 0;
+			} else {
+				volume *= curve.fadeIn((float) (position - pWrapper.getFadeInBegin()) / fadeInLength);
+			}
 		}
 
-		if (currentPosition > pWrapper.getFadeOutEnd() - settings.getFadeOutLength()) {
-			if (currentPosition >= pWrapper.getFadeOutEnd()) {
+		if (position > fadeOutBegin) {
+			if (position >= pWrapper.getFadeOutEnd()) {
 				volume = 0;
+			} else {
+				volume *= curve.fadeOut((float) (position - fadeOutBegin) / fadeOutLength);
 			}
-			if (settings.getFadeOutLength() > 0) {
-				volume *= (Float.valueOf(pWrapper.getFadeOutEnd()) - currentPosition) / settings.getFadeOutLength();
+		}
+		return volume;
+	}
+
+	/**
+	 * Determines how long a player may be left alone until something
+	 * interesting happens: the next fading step or the end of a volume slide,
+	 * the beginning of the fade out, the point where the next sound has to
+	 * be started or the end of the sound.
+	 * @param pWrapper The player.
+	 * @param state The current state of the player.
+	 * @return The delay in milliseconds or <c>-1</c> if the player does not
+	 * 	need to be informed until it is woken up explicitly.
+	 */
+	private int getNextEventDelay(final PlayerWrapper pWrapper, final PlayerState state) {
+		if (pWrapper.getStatus() == PlayerControllerStatus.PAUSED) {
+			return -1;
+		}
+		if (settings == null) {
+			return MAX_INTERVAL;
+		}
+
+		int currentPosition = state.getPosition();
+		int fadeInEnd = pWrapper.getFadeInBegin() + settings.getFadeInLength();
+		int fadeOutBegin = pWrapper.getFadeOutEnd() - getFadeOutLength(pWrapper);
+
+		int next = fadeOutBegin;
+		boolean sliding = false;
+		if (currentPosition < fadeInEnd || currentPosition >= fadeOutBegin) {
+			if (pWrapper.getSlideEnd() <= currentPosition) {
+				// Fading in Java, step by step
+				return FADE_INTERVAL;
 			}
+			// The engine is sliding, nothing to do until the slide is over
+			next = pWrapper.getSlideEnd();
+			sliding = true;
 		}
 
-		pWrapper.setVolume(volume);
-		player.setVolume(volume * pWrapper.getVolumeFactor());
+		if (!pWrapper.isNextSoundStarted()) {
+			next = Math.min(next, state.getLength() - settings.getOverlapTime());
+		}
+
+		int delay;
+		if (!sliding && pWrapper.isEventsSupported() && next > currentPosition) {
+			// The markers wake the player up, the timer is just a safety net
+			delay = SAFETY_INTERVAL;
+		} else {
+			delay = Math.max(FADE_INTERVAL, Math.min(MAX_INTERVAL, next - currentPosition));
+		}
+
+		if (parent != null && !pWrapper.isNextSoundStarted()
+				&& !pWrapper.isSuccessorPrepared()
+				&& pWrapper.getStatus() == PlayerControllerStatus.PLAYING) {
+			// Wake up in time to prepare the next sound
+			int prepare = state.getLength() - settings.getOverlapTime() - PREPARE_TIME;
+			delay = Math.min(delay, Math.max(FADE_INTERVAL, prepare - currentPosition));
+		}
+		return delay;
+	}
+
+	/**
+	 * Places the markers of a player which sends player events at the
+	 * fade out begin and at the point where the next sound has to be
+	 * started.
+	 * @param pWrapper The player.
+	 * @param state The current state of the player.
+	 */
+	private void updateMarkers(final PlayerWrapper pWrapper, final PlayerState state) {
+		if (!pWrapper.isEventsSupported() || settings == null) {
+			return;
+		}
+		int overlapMarker = -1;
+		if (!pWrapper.isNextSoundStarted()) {
+			overlapMarker = Math.max(-1, state.getLength() - settings.getOverlapTime());
+		}
+		int fadeOutMarker = Math.max(-1, pWrapper.getFadeOutEnd() - getFadeOutLength(pWrapper));
+		pWrapper.setMarkers(overlapMarker, fadeOutMarker);
 	}
 
 	@Override
-	public synchronized boolean receiveTimeEvent(final long currentTime, final Object obj) {
-		if (!(obj instanceof PlayerWrapper) || dispose) {
-			return false;
+	public synchronized long receiveTimeEvent(final long currentTime, final Object obj) {
+		if (obj instanceof PlayerPrefetch) {
+			PlayerPrefetch prefetch = (PlayerPrefetch) obj;
+			PlayerWrapper pWrapper = prefetch.getTaken();
+			if (pWrapper == null && starting == prefetch && !dispose && parent != null) {
+				//Sound cannot be played
+				starting = null;
+				nextSound();
+			} else {
+				prefetchOpened(prefetch, pWrapper);
+			}
+			return TimeEventHandler.UNSUBSCRIBE;
+		}
+		if (!(obj instanceof PlayerWrapper)) {
+			return TimeEventHandler.UNSUBSCRIBE;
 		}
 
 		PlayerWrapper pWrapper = (PlayerWrapper) obj;
+		if (dispose) {
+			cancelSuccessor(pWrapper);
+			pWrapper.unlisten();
+			if (wrappers.remove(pWrapper)) {
+				pWrapper.getPlayer().release();
+				context.getVoiceManager().release(pWrapper);
+			}
+			return TimeEventHandler.UNSUBSCRIBE;
+		}
 
 		IPlayer player = pWrapper.getPlayer();
+		PlayerState state = pWrapper.takeState();
+
+		if (pWrapper.isStolen() && pWrapper.getFadeOutLength() < 0) {
+			fadeOutStolen(pWrapper, state);
+		}
+
+		updateSuccessor(pWrapper, state);
 
 		if (settings != null &&
 				!pWrapper.isNextSoundStarted()
-				&& (player.isFinished() || player.getPlayLength() - player.getPlayPosition() <= settings
-				.getOverlapTime())) {
+				&& pWrapper.getStatus() != PlayerControllerStatus.STOPPING
+				&& (state.isFinished() || state.getLength() - state.getPosition() <= settings
+				.getOverlapTime() || (pWrapper.getSuccessorPosition() >= 0
+				&& state.getPosition() >= pWrapper.getSuccessorPosition()))) {
 			pWrapper.setNextSoundStarted(true);
-			nextSound();
+			startSuccessor(pWrapper);
 		}
 
-		setCurrentVolume(pWrapper);
+		setCurrentVolume(pWrapper, state.getPosition());
 
 		if (pWrapper.getStatus() == PlayerControllerStatus.PAUSING
 				&& pWrapper.getVolume() == 0) {
 			player.pause();
+			pWrapper.setStatus(PlayerControllerStatus.PAUSED);
 			parent.playListChanged();
 		}
 
 		if ((pWrapper.getStatus() == PlayerControllerStatus.STOPPING
 				&& pWrapper.getVolume() == 0)
-				|| player.isFinished())  {
-			player.stop();
+				|| state.isFinished())  {
+			cancelSuccessor(pWrapper);
+			pWrapper.unlisten();
+			player.release();
 
 			wrappers.remove(pWrapper);
+			context.getVoiceManager().release(pWrapper);
 			if (parent != null) {
 				parent.playListChanged();
 			}
-			return false;
+			return TimeEventHandler.UNSUBSCRIBE;
 		}
-		return true;
+
+		updateMarkers(pWrapper, state);
+		int delay = getNextEventDelay(pWrapper, state);
+		return delay < 0 ? TimeEventHandler.NEVER : currentTime + delay;
 	}
 
-	private void nextSound() {
+	/**
+	 * Stops a voice which has been stolen by the <c>VoiceManager</c> with a
+	 * short fade out. A stolen voice does not start the next sound.
+	 * @param pWrapper The player.
+	 * @param state The current state of the player.
+	 */
+	private void fadeOutStolen(final PlayerWrapper pWrapper, final PlayerState state) {
+		cancelSuccessor(pWrapper);
+		pWrapper.setNextSoundStarted(true);
+		pWrapper.setFadeOutLength(STEAL_FADE_LENGTH);
+		if (pWrapper.getStatus() == PlayerControllerStatus.PAUSED) {
+			// A paused player does not advance, so there is nothing to fade
+			pWrapper.setFadeOutEnd(state.getPosition());
+		} else {
+			pWrapper.setFadeOutEnd(Math.min(state.getPosition() + STEAL_FADE_LENGTH, state.getLength()));
+		}
+		pWrapper.setStatus(PlayerControllerStatus.STOPPING);
+	}
 
-		if (repeatItem) {
-			startPlaying();
+	/**
+	 * Predicts the next sound shortly before the transition and opens it in
+	 * the background. In gapless mode the opened next sound is queued at the
+	 * sound engine. A prefetched next sound which is not wanted anymore
+	 * because the player has been paused or stopped is dropped; a queued
+	 * one is queued again if the <c>PlayList</c> is not gapless anymore or
+	 * the position of the transition has changed.
+	 * @param pWrapper The player.
+	 * @param state The current state of the player.
+	 */
+	private void updateSuccessor(final PlayerWrapper pWrapper, final PlayerState state) {
+		if (settings == null || pWrapper.isNextSoundStarted()) {
+			return;
+		}
+		int transition = Math.max(0, state.getLength() - settings.getOverlapTime());
+		boolean wanted = parent != null
+				&& pWrapper.getStatus() == PlayerControllerStatus.PLAYING;
+
+		if (pWrapper.isSuccessorPrepared()) {
+			if (!wanted) {
+				cancelSuccessor(pWrapper);
+				return;
+			}
+			boolean gapless = parent.isGapless();
+			if (pWrapper.getSuccessorPosition() >= 0
+					&& (!gapless || pWrapper.getSuccessorPosition() != transition)) {
+				pWrapper.getPlayer().queueSuccessor(null, -1);
+				pWrapper.setSuccessorPosition(-1);
+			}
+			if (gapless && pWrapper.getSuccessorPosition() < 0) {
+				queueSuccessor(pWrapper, state.getPosition(), transition);
+			}
 			return;
 		}
 
+		if (wanted && transition - state.getPosition() <= PREPARE_TIME) {
+			prepareSuccessor(pWrapper);
+		}
+	}
+
+	/**
+	 * Predicts the next sound and starts opening it in the background. A
+	 * random pick of a shuffled <c>PlayList</c> is rolled now and kept for
+	 * the transition. In gapless mode the player is woken up as soon as the
+	 * next sound is open, so it can be queued.
+	 * @param pWrapper The player.
+	 */
+	private void prepareSuccessor(final PlayerWrapper pWrapper) {
+		pWrapper.setSuccessorPrepared(true);
+		PlayListItem item = getNextItem();
+		if (item == null) {
+			return;
+		}
+		TimeEventTuple wakeUp = parent.isGapless() ? pWrapper.getTimeEvent() : null;
+		pWrapper.setSuccessor(PlayerPrefetch.start(item, wakeUp));
+	}
+
+	/**
+	 * Asks the sound engine to start the prefetched next sound at the
+	 * transition, unless it is not open yet, the transition is too close or
+	 * the sound engine cannot queue it.
+	 * @param pWrapper The player.
+	 * @param position The current play position in milliseconds.
+	 * @param transition The position in milliseconds where the next sound
+	 * 	has to be started.
+	 */
+	private void queueSuccessor(final PlayerWrapper pWrapper, final int position, final int transition) {
+		PlayerPrefetch prefetch = pWrapper.getSuccessor();
+		if (prefetch == null || !pWrapper.isSuccessorQueueable()
+				|| transition - position <= QUEUE_MARGIN) {
+			return;
+		}
+		PlayerWrapper successor = prefetch.poll();
+		if (successor == null) {
+			return;
+		}
+		if (pWrapper.getPlayer().queueSuccessor(successor.getPlayer(), transition)) {
+			pWrapper.setSuccessorPosition(transition);
+		} else {
+			pWrapper.setSuccessorQueueable(false);
+		}
+	}
+
+	/**
+	 * Drops the prefetched next sound of a player, if there is one.
+	 * @param pWrapper The player.
+	 */
+	private void cancelSuccessor(final PlayerWrapper pWrapper) {
+		PlayerPrefetch prefetch = pWrapper.getSuccessor();
+		if (prefetch != null) {
+			if (pWrapper.getSuccessorPosition() >= 0) {
+				pWrapper.getPlayer().queueSuccessor(null, -1);
+			}
+			prefetch.cancel();
+		}
+		pWrapper.setSuccessor(null);
+		pWrapper.setSuccessorPrepared(false);
+	}
+
+	/**
+	 * Takes over the prefetched next sound of a player. It has either been
+	 * started by the sound engine already or is started now, or as soon as
+	 * it is opened. Without a prefetched next sound or if the prediction
+	 * does not hold anymore, the next sound is determined and opened now.
+	 * @param pWrapper The player.
+	 */
+	private void startSuccessor(final PlayerWrapper pWrapper) {
+		PlayerPrefetch prefetch = pWrapper.getSuccessor();
+		if (prefetch != null && !isNextItem(prefetch.getItem())) {
+			cancelSuccessor(pWrapper);
+			prefetch = null;
+		}
+		pWrapper.setSuccessor(null);
+
+		if (prefetch == null) {
+			nextSound();
+			return;
+		}
+		prefetch.getItem().startPlaying(prefetch);
+	}
+
+	/**
+	 * Checks if a predicted next item is still the one to be played after
+	 * this one. The <c>PlayList</c> may have been changed in the meantime.
+	 * A random pick stays valid as long as the item is in the
+	 * <c>PlayList</c>.
+	 * @param item The predicted item.
+	 * @return <c>true</c> if the item is still the next one.
+	 */
+	private boolean isNextItem(final PlayListItem item) {
+		if (item.getParent() != parent) {
+			return false;
+		}
+		if (repeatItem) {
+			return item == this;
+		}
+		if (chainWith != null && parent.getEntry(chainWith) != null) {
+			return chainWith.equals(item.getUUID());
+		}
+		if (parent.isStopAfterEachSound()) {
+			return false;
+		}
+		return parent.isRandomizeList() || item == parent.getNextEntry(uuid);
+	}
+
+	/**
+	 * Determines the item which is played after this one: the item itself
+	 * if it is repeated, the item it is chained with or the one chosen by
+	 * the <c>PlayList</c>.
+	 * @return The next item or <c>null</c> if there is none.
+	 */
+	private PlayListItem getNextItem() {
+		if (repeatItem) {
+			return this;
+		}
+
 		PlayListItem entry;
 		if (chainWith != null) {
 			entry = parent.getEntry(chainWith);
 			if (entry != null) {
-				entry.startPlaying();
-				return;
+				return entry;
 			}
 		}
 
-		entry = parent.getNextEntry(uuid);
+		return parent.getNextEntry(uuid);
+	}
+
+	private void nextSound() {
+		PlayListItem entry = getNextItem();
 		if (entry != null) {
 			entry.startPlaying();
 		}
+	}
+
+	/**
+	 * Starts a new player. The file is opened in the background unless the
+	 * <c>PlayerPool</c> holds an opened player, so this returns at once.
+	 */
+	private synchronized void startPlaying() {
+		PlayerPrefetch prefetch = context.getPlayerPool().take(this);
+		if (prefetch == null) {
+			prefetch = PlayerPrefetch.start(this, null);
+		}
+		startPlaying(prefetch);
+	}
 
+	private void startPlaying(final PlayerPrefetch prefetch) {
+		starting = prefetch;
+		prefetch.play();
 	}
 
-	private void startPlaying() {
-		IPlayer player = parent.getPlayer(sound);
-		if (player == null) { //Sound cannot be played
-			nextSound();
+	/**
+	 * Is called by a <c>PlayerPrefetch</c> of this item which is started
+	 * and whose player is open. A player which has been stopped or disposed
+	 * in the meantime is released instead.
+	 * @param prefetch The prefetch.
+	 * @param pWrapper The opened player or <c>null</c> if the sound cannot
+	 * 	be played.
+	 */
+	synchronized void prefetchOpened(final PlayerPrefetch prefetch, final PlayerWrapper pWrapper) {
+		if (starting != prefetch || dispose || parent == null) {
+			if (pWrapper != null) {
+				pWrapper.getPlayer().release();
+			}
+			return;
+		}
+		if (pWrapper == null) { //Sound cannot be played
+			// The next sound is started by a later time event. If its player
+			// is opened synchronously, e.g. while rendering, and fails as
+			// well, a list of such sounds would otherwise recurse without
+			// time advancing.
+			subscribe(prefetch, FAILED_SOUND_DELAY);
 			return;
 		}
+		starting = null;
+		startPlaying(pWrapper);
+	}
+
+	/**
+	 * Is called by a <c>PlayerPrefetch</c> of this item on the thread which
+	 * has opened its player. The player is started by a time event on the
+	 * stripe of the <c>PlayList</c>, so the item is never changed by the
+	 * sound engine's thread.
+	 * @param prefetch The prefetch, which has been started.
+	 */
+	void prefetchOpenedLater(final PlayerPrefetch prefetch) {
+		subscribe(prefetch);
+	}
+
+	/**
+	 * Subscribes this item for a time event as soon as possible on the
+	 * stripe of its <c>PlayList</c>.
+	 * @param obj The object passed to the item.
+	 * @return The subscription.
+	 */
+	private TimeEventTuple subscribe(final Object obj) {
+		return subscribe(obj, 0);
+	}
+
+	/**
+	 * Subscribes this item for a time event after a given delay on the
+	 * stripe of its <c>PlayList</c>.
+	 * @param obj The object passed to the item.
+	 * @param delay The delay in milliseconds.
+	 * @return The subscription.
+	 */
+	private TimeEventTuple subscribe(final Object obj, final long delay) {
+		TimeEventHandler handler = context.getTimeEventHandler();
+		return handler.add(this, obj, handler.currentTimeMillis() + delay, parent);
+	}
+
+	/**
+	 * Prepares an opened player for the sound of this item without starting
+	 * it. Its volume is set to the volume at the beginning of the sound. May
+	 * be called from any thread.
+	 * @param player The player opened by <c>PlayList.getPlayer</c>.
+	 * @param capabilities The capabilities of the engine which has opened
+	 * 	the player.
+	 * @return The player.
+	 */
+	PlayerWrapper createPlayerWrapper(final IPlayer player, final Set<EngineCapability> capabilities) {
 		Random rnd = new Random();
 
 		int range = (int) ((settings.getRandomizeVolumeTo() - settings
@@ -362,15 +901,31 @@ public class PlayListItem implements ITimeEventListener {
 		float randomFactor = ((settings.getRandomizeVolumeFrom() * 100) + randomized)  / 100.0f;
 
 		PlayerWrapper pWrapper = new PlayerWrapper(player, settings.getVolume(), randomFactor);
+		pWrapper.setCapabilities(capabilities);
+		float volume = getVolumeAt(pWrapper, 0);
+		pWrapper.setVolume(volume);
+		player.setVolume(volume * randomFactor);
+		return pWrapper;
+	}
+
+	/**
+	 * Starts an opened player of this item, unless the sound engine has
+	 * started it already, and drives it from now on.
+	 * @param pWrapper The player.
+	 */
+	private synchronized void startPlaying(final PlayerWrapper pWrapper) {
+		context.getVoiceManager().admit(this, pWrapper);
+		pWrapper.setStatus(PlayerControllerStatus.PLAYING);
 		setCurrentVolume(pWrapper);
 		wrappers.add(pWrapper);
-		player.play();
+		pWrapper.getPlayer().play();
 
-		TimeEventHandler.add(this, pWrapper);
+		pWrapper.setTimeEvent(subscribe(pWrapper));
+		pWrapper.listen();
 		parent.playListChanged();
 	}
 
-	private void resume() {
+	private synchronized void resume() {
 		IPlayer player;
 
 		for (PlayerWrapper pWrapper : wrappers) {
@@ -380,17 +935,34 @@ public class PlayListItem implements ITimeEventListener {
 			player = pWrapper.getPlayer();
 			pWrapper.setFadeInBegin(player.getPlayPosition());
 			pWrapper.setFadeOutEnd(player.getPlayLength());
+			pWrapper.setStatus(PlayerControllerStatus.PLAYING);
 			setCurrentVolume(pWrapper);
 			player.play();
+			TimeEventHandler.wakeUp(pWrapper.getTimeEvent());
 		}
 	}
 
 	/**
-	 * Sets the <c>PlayList</c> containing this item.
+	 * Sets the <c>PlayList</c> containing this item. The time events of
+	 * playing players are moved to the stripe of the new <c>PlayList</c>, so
+	 * they are dispatched in order with its other items.
 	 * @param parent The parent <c>PlayList</c>.
 	 */
-	public void setParent(final PlayList parent) {
+	public synchronized void setParent(final PlayList parent) {
+		PlayList previous = this.parent;
 		this.parent = parent;
+		if (parent == null || parent == previous) {
+			return;
+		}
+		context = parent.getContext();
+		TimeEventTuple timeEvent;
+		for (PlayerWrapper pWrapper : wrappers) {
+			timeEvent = pWrapper.getTimeEvent();
+			if (timeEvent != null && !timeEvent.isCancelled()) {
+				TimeEventHandler.remove(timeEvent);
+				pWrapper.setTimeEvent(subscribe(pWrapper));
+			}
+		}
 	}
 
 	@Override
@@ -415,7 +987,22 @@ public class PlayListItem implements ITimeEventListener {
 		return map;
 	}
 
+	/**
+	 * Disposes this item. Its players are released with their next time
+	 * event, which is due immediately.
+	 */
 	public void dispose() {
-		dispose  = true;
+		context.getPlayerPool().disarm(this);
+		synchronized (this) {
+			dispose = true;
+			PlayerPrefetch prefetch = starting;
+			if (prefetch != null) {
+				starting = null;
+				prefetch.cancel();
+			}
+			for (PlayerWrapper pWrapper : wrappers) {
+				TimeEventHandler.wakeUp(pWrapper.getTimeEvent());
+			}
+		}
 	}
 }
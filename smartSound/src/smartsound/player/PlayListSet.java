@@ -43,6 +43,17 @@ public class PlayListSet extends PlayListSetElement {
 	}
 
 	public PlayListSet(final PropertyMap pMap) throws LoadingException {
+		this(pMap, PlaybackContext.getLive());
+	}
+
+	/**
+	 * Creates a <c>PlayListSet</c> from a <c>PropertyMap</c> whose
+	 * <c>PlayList</c>s are played in a given context.
+	 * @param pMap The <c>PropertyMap</c>.
+	 * @param context The context.
+	 * @throws LoadingException If an error occurs during loading.
+	 */
+	public PlayListSet(final PropertyMap pMap, final PlaybackContext context) throws LoadingException {
 		super(pMap.getMapUUID());
 		if (!pMap.get("type").equals(getClass().getCanonicalName()))
 			throw new LoadingException();
@@ -55,10 +66,10 @@ public class PlayListSet extends PlayListSetElement {
 		PlayList list;
 		for (PropertyMap map : pMap.getNestedMaps()) {
 			if (map.get("type").equals(getClass().getCanonicalName())) {
-				set = new PlayListSet(map);
+				set = new PlayListSet(map, context);
 				addPlayList(set);
 			} else if (map.get("type").equals(PlayList.class.getCanonicalName())) {
-				list = new PlayList(map);
+				list = new PlayList(map, context);
 				addPlayList(list);
 			}
 		}
@@ -0,0 +1,111 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player;
+
+import smartsound.player.events.TimeEventHandler;
+import smartsound.plugins.player.SoundEngine;
+
+/**
+ * The environment <c>PlayList</c>s are played in: the
+ * <c>TimeEventHandler</c> which drives their items, the sound engine which
+ * opens their players, the <c>VoiceManager</c> which enforces the voice caps
+ * and the <c>PlayerPool</c> which keeps the players of armed items opened.
+ * <p>
+ * The live context consists of the singletons. An offline context, e.g. of
+ * a <c>SceneRenderer</c>, has a handler, an engine, voices and a pool of
+ * its own, so it never touches the live playback.
+ * @author Andr Becker
+ *
+ */
+public class PlaybackContext {
+
+	private static final PlaybackContext live = new PlaybackContext(TimeEventHandler.getInstance(), null,
+			VoiceManager.getInstance(), PlayerPool.getInstance());
+
+	private final TimeEventHandler timeEventHandler;
+	private final SoundEngine soundEngine;
+	private final VoiceManager voiceManager;
+	private final PlayerPool playerPool;
+
+	/**
+	 * @param timeEventHandler The handler.
+	 * @param soundEngine The sound engine or <c>null</c> for the one of the
+	 * 	<c>SoundEngineSingleton</c>.
+	 * @param voiceManager The voice manager.
+	 * @param playerPool The player pool.
+	 */
+	private PlaybackContext(final TimeEventHandler timeEventHandler, final SoundEngine soundEngine,
+			final VoiceManager voiceManager, final PlayerPool playerPool) {
+		this.timeEventHandler = timeEventHandler;
+		this.soundEngine = soundEngine;
+		this.voiceManager = voiceManager;
+		this.playerPool = playerPool;
+		// Takes a snapshot of all due players before they are informed
+		timeEventHandler.addDispatchListener(new PlayerStateSampler(this));
+	}
+
+	/**
+	 * @return The context of the live playback.
+	 */
+	public static PlaybackContext getLive() {
+		return live;
+	}
+
+	/**
+	 * Creates a context of its own. Its voices are capped like the live
+	 * ones; no items are armed in its pool.
+	 * @param timeEventHandler The handler, usually created by
+	 * 	<c>TimeEventHandler.createVirtual</c>.
+	 * @param soundEngine The sound engine.
+	 * @return The context.
+	 */
+	public static PlaybackContext createOffline(final TimeEventHandler timeEventHandler,
+			final SoundEngine soundEngine) {
+		VoiceManager voiceManager = new VoiceManager();
+		voiceManager.setMaxVoices(VoiceManager.getInstance().getMaxVoices());
+		return new PlaybackContext(timeEventHandler, soundEngine, voiceManager, new PlayerPool());
+	}
+
+	/**
+	 * @return The handler which drives the items.
+	 */
+	public TimeEventHandler getTimeEventHandler() {
+		return timeEventHandler;
+	}
+
+	/**
+	 * @return The sound engine which opens the players.
+	 */
+	public SoundEngine getSoundEngine() {
+		return soundEngine != null ? soundEngine : SoundEngineSingleton.getInstance();
+	}
+
+	/**
+	 * @return The voice manager.
+	 */
+	VoiceManager getVoiceManager() {
+		return voiceManager;
+	}
+
+	/**
+	 * @return The player pool.
+	 */
+	PlayerPool getPlayerPool() {
+		return playerPool;
+	}
+}
@@ -23,12 +23,25 @@ package smartsound.player;
  *
  */
 public class PlayerControllerSettings {
+
+	/**
+	 * The default maximum numbers of voices of a <c>PlayList</c> and of
+	 * each of its entries. The caps are opt-in, so by default the number of
+	 * voices is not limited.
+	 */
+	public static final int DEFAULT_MAX_VOICES = 0;
+	public static final int DEFAULT_MAX_ITEM_VOICES = 0;
+
 	private int fadeInLength;
 	private int fadeOutLength;
 	private int overlapTime;
 	private float maxVolume = 0.5f;
 	private float randomizeVolumeFrom = 1;
 	private float randomizeVolumeTo = 1;
+	private FadeCurve fadeCurve = FadeCurve.LINEAR;
+	private int maxVoices = DEFAULT_MAX_VOICES;
+	private int maxItemVoices = DEFAULT_MAX_ITEM_VOICES;
+	private VoiceStealing voiceStealing = VoiceStealing.OLDEST;
 	
 	public PlayerControllerSettings(int fadeInLength, int fadeOutLength, int overlapTime) {
 		this.fadeInLength = fadeInLength;
@@ -155,5 +168,69 @@ public class PlayerControllerSettings {
 	public void setVolume(float maxVolume) {
 		this.maxVolume = maxVolume;
 	}
+
+	/**
+	 * Gets the shape of fade ins and fade outs.
+	 * @result The fade curve.
+	 */
+	public FadeCurve getFadeCurve() {
+		return fadeCurve;
+	}
+
+	/**
+	 * Sets the shape of fade ins and fade outs.
+	 * @param fadeCurve The fade curve.
+	 */
+	public void setFadeCurve(FadeCurve fadeCurve) {
+		this.fadeCurve = fadeCurve;
+	}
+
+	/**
+	 * @return The maximum number of voices of the <c>PlayList</c> or 0 if
+	 * 	the number is not limited.
+	 */
+	public int getMaxVoices() {
+		return maxVoices;
+	}
+
+	/**
+	 * @param maxVoices The maximum number of voices of the <c>PlayList</c>
+	 * 	or 0 if the number is not limited.
+	 */
+	public void setMaxVoices(int maxVoices) {
+		this.maxVoices = Math.max(0, maxVoices);
+	}
+
+	/**
+	 * @return The maximum number of voices of each entry or 0 if the number
+	 * 	is not limited.
+	 */
+	public int getMaxItemVoices() {
+		return maxItemVoices;
+	}
+
+	/**
+	 * @param maxItemVoices The maximum number of voices of each entry or 0
+	 * 	if the number is not limited.
+	 */
+	public void setMaxItemVoices(int maxItemVoices) {
+		this.maxItemVoices = Math.max(0, maxItemVoices);
+	}
+
+	/**
+	 * @return The policy choosing the voice which is stopped if a cap is
+	 * 	reached.
+	 */
+	public VoiceStealing getVoiceStealing() {
+		return voiceStealing;
+	}
+
+	/**
+	 * @param voiceStealing The policy choosing the voice which is stopped if
+	 * 	a cap is reached.
+	 */
+	public void setVoiceStealing(VoiceStealing voiceStealing) {
+		this.voiceStealing = voiceStealing;
+	}
 	
 }
@@ -0,0 +1,144 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Keeps opened, paused players of armed items, e.g. the items bound to
+ * hotkeys, so triggering such an item only has to start a player. The pool
+ * is refilled in the background after each trigger. It holds at most one
+ * player per item and no more players than its handle budget; the items
+ * triggered least recently are evicted first.
+ * @author Andr Becker
+ *
+ */
+public class PlayerPool {
+
+	/**
+	 * The default maximum number of players kept opened.
+	 */
+	public static final int DEFAULT_HANDLE_BUDGET = 16;
+
+	private static final PlayerPool instance = new PlayerPool();
+
+	private final Set<PlayListItem> armedItems = new HashSet<PlayListItem>();
+	private final LinkedHashMap<PlayListItem, PlayerPrefetch> players = new LinkedHashMap<PlayListItem, PlayerPrefetch>(16, 0.75f, true);
+	private int handleBudget = DEFAULT_HANDLE_BUDGET;
+
+	PlayerPool() {
+	}
+
+	/**
+	 * @return The <c>PlayerPool</c> of the live playback.
+	 */
+	public static PlayerPool getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Sets the items whose players are kept opened. Players of items which
+	 * are not armed anymore are dropped, newly armed items are opened in
+	 * the background as far as the handle budget allows.
+	 * @param items The armed items.
+	 */
+	public synchronized void setArmedItems(final Collection<PlayListItem> items) {
+		armedItems.clear();
+		armedItems.addAll(items);
+
+		Iterator<Entry<PlayListItem, PlayerPrefetch>> it = players.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry<PlayListItem, PlayerPrefetch> entry = it.next();
+			if (!armedItems.contains(entry.getKey())) {
+				entry.getValue().cancel();
+				it.remove();
+			}
+		}
+
+		for (PlayListItem item : armedItems) {
+			if (players.size() >= handleBudget) {
+				break;
+			}
+			if (!players.containsKey(item)) {
+				players.put(item, PlayerPrefetch.start(item, null));
+			}
+		}
+	}
+
+	/**
+	 * @return The maximum number of players kept opened.
+	 */
+	public synchronized int getHandleBudget() {
+		return handleBudget;
+	}
+
+	/**
+	 * Sets the maximum number of players kept opened and evicts the players
+	 * of the items triggered least recently if necessary.
+	 * @param handleBudget The maximum number of players.
+	 */
+	public synchronized void setHandleBudget(final int handleBudget) {
+		this.handleBudget = Math.max(0, handleBudget);
+		evict();
+	}
+
+	/**
+	 * Drops the player of an item which is not used anymore.
+	 * @param item The item.
+	 */
+	public synchronized void disarm(final PlayListItem item) {
+		armedItems.remove(item);
+		PlayerPrefetch prefetch = players.remove(item);
+		if (prefetch != null) {
+			prefetch.cancel();
+		}
+	}
+
+	/**
+	 * Takes over the player of an armed item, which may still be being
+	 * opened, and opens a new one in the background.
+	 * @param item The item.
+	 * @return The player or <c>null</c> if the item is not armed.
+	 */
+	PlayerPrefetch take(final PlayListItem item) {
+		PlayerPrefetch prefetch;
+		synchronized (this) {
+			if (!armedItems.contains(item)) {
+				return null;
+			}
+			prefetch = players.remove(item);
+			players.put(item, PlayerPrefetch.start(item, null));
+			evict();
+		}
+		return prefetch;
+	}
+
+	private void evict() {
+		Iterator<Entry<PlayListItem, PlayerPrefetch>> it = players.entrySet().iterator();
+		while (players.size() > handleBudget && it.hasNext()) {
+			it.next().getValue().cancel();
+			it.remove();
+		}
+	}
+}
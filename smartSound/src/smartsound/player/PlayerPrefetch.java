@@ -0,0 +1,183 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player;
+
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import smartsound.player.events.TimeEventHandler;
+import smartsound.player.events.TimeEventTuple;
+import smartsound.plugins.player.EngineCapability;
+import smartsound.plugins.player.IPlayer;
+import smartsound.plugins.player.IPlayerCallback;
+
+/**
+ * Opens the player of a <c>PlayListItem</c> ahead of time on a thread of
+ * the sound engine, so opening the file and parsing its headers neither
+ * delays the time events nor blocks the user interface. The player is
+ * opened paused and started with <c>play</c> when the transition fires or
+ * the item is triggered. If it has not been opened by then, it is started
+ * as soon as it is.
+ * @author Andr Becker
+ *
+ */
+class PlayerPrefetch {
+
+	private static final int PENDING = 0;
+	private static final int PLAY_WHEN_OPENED = 1;
+	private static final int OPENED = 2;
+	private static final int TAKEN = 3;
+	private static final int CANCELLED = 4;
+
+	private final PlayListItem item;
+	private final TimeEventTuple wakeUp;
+	private int state = PENDING;
+	private PlayerWrapper pWrapper;
+	private Future<IPlayer> future;
+
+	private PlayerPrefetch(final PlayListItem item, final TimeEventTuple wakeUp) {
+		this.item = item;
+		this.wakeUp = wakeUp;
+	}
+
+	/**
+	 * Starts opening the player of an item in the background.
+	 * @param item The item.
+	 * @param wakeUp A subscription which is woken up as soon as the player
+	 * 	is opened or <c>null</c>.
+	 * @return The prefetch.
+	 */
+	static PlayerPrefetch start(final PlayListItem item, final TimeEventTuple wakeUp) {
+		final PlayerPrefetch prefetch = new PlayerPrefetch(item, wakeUp);
+		PlayList parent = item.getParent();
+		if (parent == null) {
+			prefetch.opened(null, null);
+			return prefetch;
+		}
+		final Set<EngineCapability> capabilities = parent.getContext().getSoundEngine().getCapabilities();
+		Future<IPlayer> future = parent.getPlayer(item.getSound(), new IPlayerCallback() {
+			@Override
+			public void playerCreated(final IPlayer player) {
+				prefetch.opened(player, capabilities);
+			}
+		});
+		synchronized (prefetch) {
+			prefetch.future = future;
+		}
+		return prefetch;
+	}
+
+	/**
+	 * @return The item whose player is opened.
+	 */
+	PlayListItem getItem() {
+		return item;
+	}
+
+	/**
+	 * Returns the opened player without waiting for it.
+	 * @return The player or <c>null</c> if it has not been opened yet or
+	 * 	the sound cannot be played.
+	 */
+	synchronized PlayerWrapper poll() {
+		return state == OPENED ? pWrapper : null;
+	}
+
+	/**
+	 * @return The player which has been handed over to the item or
+	 * 	<c>null</c> if the sound cannot be played.
+	 */
+	synchronized PlayerWrapper getTaken() {
+		return state == TAKEN ? pWrapper : null;
+	}
+
+	/**
+	 * Hands the player over to the item, which starts it. If it is still
+	 * being opened, this happens as soon as it is, by a time event of the
+	 * item; the caller never waits.
+	 */
+	void play() {
+		PlayerWrapper opened;
+		synchronized (this) {
+			if (state == PENDING) {
+				state = PLAY_WHEN_OPENED;
+				return;
+			}
+			if (state != OPENED) {
+				return;
+			}
+			opened = pWrapper;
+			state = TAKEN;
+		}
+		item.prefetchOpened(this, opened);
+	}
+
+	/**
+	 * Drops the player. A player which is still being opened is released as
+	 * soon as it is open.
+	 */
+	void cancel() {
+		PlayerWrapper opened;
+		Future<IPlayer> pending;
+		synchronized (this) {
+			if (state == TAKEN || state == CANCELLED) {
+				return;
+			}
+			opened = state == OPENED ? pWrapper : null;
+			pending = future;
+			state = CANCELLED;
+			pWrapper = null;
+		}
+		if (pending != null) {
+			pending.cancel(false);
+		}
+		if (opened != null) {
+			opened.getPlayer().release();
+		}
+	}
+
+	private void opened(final IPlayer player, final Set<EngineCapability> capabilities) {
+		PlayerWrapper opened = null;
+		if (player != null) {
+			PlayList parent = item.getParent();
+			if (parent == null) {
+				// The item has been removed in the meantime
+				player.release();
+			} else {
+				opened = item.createPlayerWrapper(parent.wrapPlayer(player), capabilities);
+			}
+		}
+		boolean play;
+		synchronized (this) {
+			if (state == CANCELLED) {
+				if (opened != null) {
+					opened.getPlayer().release();
+				}
+				return;
+			}
+			play = state == PLAY_WHEN_OPENED;
+			pWrapper = opened;
+			state = play ? TAKEN : OPENED;
+		}
+		if (play) {
+			item.prefetchOpenedLater(this);
+		} else if (opened != null && wakeUp != null) {
+			TimeEventHandler.wakeUp(wakeUp);
+		}
+	}
+}
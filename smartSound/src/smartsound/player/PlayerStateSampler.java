@@ -0,0 +1,130 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player;
+
+import java.util.Arrays;
+import java.util.List;
+
+import smartsound.player.events.IDispatchListener;
+import smartsound.player.events.TimeEventStatistics;
+import smartsound.player.events.TimeEventTuple;
+import smartsound.plugins.player.EngineCapability;
+import smartsound.plugins.player.IPlayer;
+import smartsound.plugins.player.PlayerState;
+import smartsound.plugins.player.SoundEngine;
+
+/**
+ * Takes a snapshot of all players which are due in a tick with a single call
+ * to <c>SoundEngine.getPlayerStates</c> before the <c>PlayListItem</c>s are
+ * informed. The items read position, length and finished state from the
+ * snapshot instead of asking their players one value after another.
+ * Players whose position can still be extrapolated by their
+ * <c>ExtrapolatingPlayer</c> are left out of the engine call. If the
+ * engine cannot take the states in bulk, the others are asked directly
+ * without collecting them first.
+ * @author Andr Becker
+ *
+ */
+class PlayerStateSampler implements IDispatchListener {
+
+	private static final int GET_PLAYER_STATES = TimeEventStatistics.registerCall("SoundEngine.getPlayerStates");
+
+	private final PlaybackContext context;
+	private IPlayer[] players = new IPlayer[64];
+	private PlayerState[] states = new PlayerState[64];
+	private PlayerWrapper[] wrappers = new PlayerWrapper[64];
+	private ExtrapolatingPlayer[] extrapolators = new ExtrapolatingPlayer[64];
+
+	/**
+	 * @param context The context whose players are sampled.
+	 */
+	PlayerStateSampler(final PlaybackContext context) {
+		this.context = context;
+	}
+
+	@Override
+	public void beforeDispatch(List<TimeEventTuple> dueTuples) {
+		SoundEngine engine = context.getSoundEngine();
+		boolean bulk = engine.getCapabilities().contains(EngineCapability.BULK_STATE);
+		int count = 0;
+		Object obj;
+		PlayerWrapper pWrapper;
+		IPlayer player;
+		ExtrapolatingPlayer extrapolator;
+		TimeEventTuple tuple;
+		for (int i = 0; i < dueTuples.size(); i++) {
+			tuple = dueTuples.get(i);
+			obj = tuple.getObj();
+			if (tuple.isCancelled() || !(obj instanceof PlayerWrapper)) {
+				continue;
+			}
+			pWrapper = (PlayerWrapper) obj;
+			player = pWrapper.getPlayer();
+			extrapolator = null;
+			if (player instanceof ExtrapolatingPlayer) {
+				extrapolator = (ExtrapolatingPlayer) player;
+				if (extrapolator.getState(pWrapper.getState())) {
+					pWrapper.setStateSampled();
+					continue;
+				}
+				player = extrapolator.getPlayer();
+			}
+			if (!bulk) {
+				pWrapper.getState().set(player.getPlayPosition(), player.getPlayLength(),
+						player.isFinished(), player.getPaused());
+				if (extrapolator != null) {
+					extrapolator.setState(pWrapper.getState());
+				}
+				pWrapper.setStateSampled();
+				continue;
+			}
+			if (player instanceof TimedPlayer) {
+				player = ((TimedPlayer) player).getPlayer();
+			}
+			if (count == players.length) {
+				players = Arrays.copyOf(players, count * 2);
+				states = Arrays.copyOf(states, count * 2);
+				wrappers = Arrays.copyOf(wrappers, count * 2);
+				extrapolators = Arrays.copyOf(extrapolators, count * 2);
+			}
+			players[count] = player;
+			states[count] = pWrapper.getState();
+			wrappers[count] = pWrapper;
+			extrapolators[count] = extrapolator;
+			count++;
+		}
+		if (count == 0) {
+			return;
+		}
+
+		long start = System.nanoTime();
+		engine.getPlayerStates(players, states, count);
+		TimeEventStatistics.recordCall(GET_PLAYER_STATES, System.nanoTime() - start);
+
+		for (int i = 0; i < count; i++) {
+			if (extrapolators[i] != null) {
+				extrapolators[i].setState(states[i]);
+			}
+			wrappers[i].setStateSampled();
+			players[i] = null;
+			states[i] = null;
+			wrappers[i] = null;
+			extrapolators[i] = null;
+		}
+	}
+}
@@ -17,23 +17,48 @@
 
 package smartsound.player;
 
+import java.util.Set;
+
+import smartsound.player.events.TimeEventHandler;
+import smartsound.player.events.TimeEventTuple;
+import smartsound.plugins.player.EngineCapability;
 import smartsound.plugins.player.IPlayer;
+import smartsound.plugins.player.IPlayerListener;
+import smartsound.plugins.player.PlayerState;
 
 /**
  * This class wraps an instance of <c>IPlayer</c>. It encapsules data needed
- * for fading.
+ * for fading. If the player sends player events, the wrapper listens to
+ * them and wakes up its subscription at the <c>TimeEventHandler</c>.
  * @author Andr Becker
  *
  */
-public class PlayerWrapper {
+public class PlayerWrapper implements IPlayerListener {
 	
 	private IPlayer player;
 	private float volume;
 	private float volumeFactor;
 	private int fadeInBegin;
 	private int fadeOutEnd;
+	private int fadeOutLength = -1;
+	private volatile boolean stolen = false;
 	private boolean nextSoundStarted = false;
 	private PlayerControllerStatus status = PlayerControllerStatus.STOPPED;
+	private int slideEnd = -1;
+	private float slideTarget;
+	private boolean slideSupported = true;
+	private boolean eventsSupported = false;
+	private boolean eventsCapable = true;
+	private boolean speedSupported = true;
+	private int overlapMarker = -1;
+	private int fadeOutMarker = -1;
+	private boolean successorPrepared = false;
+	private PlayerPrefetch successor;
+	private int successorPosition = -1;
+	private boolean successorQueueable = true;
+	private volatile TimeEventTuple timeEvent;
+	private final PlayerState state = new PlayerState();
+	private volatile boolean stateSampled = false;
 	
 	/**
 	 * @return The status of this particular player.
@@ -69,6 +94,28 @@ public class PlayerWrapper {
 		this.fadeOutEnd = player.getPlayLength();
 	}
 
+	/**
+	 * Chooses how the player is driven: features the sound engine does not
+	 * support natively are emulated in Java from the start instead of being
+	 * tried first.
+	 * @param capabilities The capabilities of the engine which has created
+	 * 	the player.
+	 */
+	void setCapabilities(Set<EngineCapability> capabilities) {
+		slideSupported = capabilities.contains(EngineCapability.VOLUME_SLIDES);
+		eventsCapable = capabilities.contains(EngineCapability.PLAYER_EVENTS);
+		successorQueueable = capabilities.contains(EngineCapability.SUCCESSOR_QUEUE);
+		speedSupported = capabilities.contains(EngineCapability.PLAYBACK_SPEED);
+	}
+
+	/**
+	 * @return <c>false</c> if the speed of the player is always 1, so it
+	 * 	does not need to be asked.
+	 */
+	boolean isSpeedSupported() {
+		return speedSupported;
+	}
+
 
 	/**
 	 * @return The player's current volume.
@@ -116,6 +163,7 @@ public class PlayerWrapper {
 	 */
 	public void setFadeInBegin(int fadeInBegin) {
 		this.fadeInBegin = fadeInBegin;
+		this.slideEnd = -1;
 	}
 
 	/**
@@ -132,6 +180,83 @@ public class PlayerWrapper {
 	 */
 	public void setFadeOutEnd(int fadeOutEnd) {
 		this.fadeOutEnd = fadeOutEnd;
+		this.slideEnd = -1;
+	}
+
+	/**
+	 * @return The length of the fade out in milliseconds or -1 if the fade
+	 * 	out length of the <c>PlayList</c> applies.
+	 */
+	public int getFadeOutLength() {
+		return fadeOutLength;
+	}
+
+	/**
+	 * @param fadeOutLength The length of the fade out in milliseconds,
+	 * 	overriding the one of the <c>PlayList</c>, or -1.
+	 */
+	public void setFadeOutLength(int fadeOutLength) {
+		this.fadeOutLength = fadeOutLength;
+		this.slideEnd = -1;
+	}
+
+	/**
+	 * @return <c>true</c> if this voice has been stolen to make room for
+	 * 	another one and has to be stopped.
+	 */
+	public boolean isStolen() {
+		return stolen;
+	}
+
+	/**
+	 * @param stolen Set to <c>true</c> to have this voice stopped.
+	 */
+	public void setStolen(boolean stolen) {
+		this.stolen = stolen;
+	}
+
+	/**
+	 * @return The play position (in milliseconds) where the volume slide
+	 * 	running in the sound engine ends or -1 if there is none.
+	 */
+	public int getSlideEnd() {
+		return slideEnd;
+	}
+
+	/**
+	 * @return The target volume of the running volume slide, including the
+	 * 	volume factor.
+	 */
+	public float getSlideTarget() {
+		return slideTarget;
+	}
+
+	/**
+	 * Remembers a volume slide running in the sound engine. Changing the
+	 * fade in begin or fade out end forgets it.
+	 * @param slideEnd The play position in milliseconds where the slide
+	 * 	ends or -1 if no slide is running.
+	 * @param slideTarget The target volume, including the volume factor.
+	 */
+	public void setSlide(int slideEnd, float slideTarget) {
+		this.slideEnd = slideEnd;
+		this.slideTarget = slideTarget;
+	}
+
+	/**
+	 * @return <c>false</c> if the player refused a volume slide before, so
+	 * 	that fades are done in Java.
+	 */
+	public boolean isSlideSupported() {
+		return slideSupported;
+	}
+
+	/**
+	 * @param slideSupported Set to <c>false</c> if the player does not
+	 * 	support volume slides.
+	 */
+	public void setSlideSupported(boolean slideSupported) {
+		this.slideSupported = slideSupported;
 	}
 
 
@@ -150,10 +275,187 @@ public class PlayerWrapper {
 		this.nextSoundStarted = nextSoundStarted;
 	}
 
+	/**
+	 * @return <c>true</c> if it has already been tried to prepare the
+	 * 	next sound.
+	 */
+	public boolean isSuccessorPrepared() {
+		return successorPrepared;
+	}
+
+	/**
+	 * @param successorPrepared Set to <c>true</c> if it has been tried to
+	 * 	prepare the next sound.
+	 */
+	public void setSuccessorPrepared(boolean successorPrepared) {
+		this.successorPrepared = successorPrepared;
+	}
+
+	/**
+	 * @return The prefetched, not yet taken over next sound or <c>null</c>.
+	 */
+	PlayerPrefetch getSuccessor() {
+		return successor;
+	}
+
+	/**
+	 * @return The position in milliseconds where the sound engine starts
+	 * 	the prepared next sound or -1 if it has to be started in Java.
+	 */
+	public int getSuccessorPosition() {
+		return successorPosition;
+	}
+
+	/**
+	 * Remembers the prefetched next sound.
+	 * @param successor The next sound or <c>null</c> to forget it.
+	 */
+	void setSuccessor(PlayerPrefetch successor) {
+		this.successor = successor;
+		this.successorPosition = -1;
+	}
+
+	/**
+	 * @param successorPosition The position in milliseconds where the sound
+	 * 	engine starts the next sound or -1 if it is not queued at the engine.
+	 */
+	public void setSuccessorPosition(int successorPosition) {
+		this.successorPosition = successorPosition;
+	}
+
+	/**
+	 * @return <c>false</c> if the sound engine refused to queue the next
+	 * 	sound before.
+	 */
+	public boolean isSuccessorQueueable() {
+		return successorQueueable;
+	}
+
+	/**
+	 * @param successorQueueable Set to <c>false</c> if the sound engine
+	 * 	cannot queue the next sound.
+	 */
+	public void setSuccessorQueueable(boolean successorQueueable) {
+		this.successorQueueable = successorQueueable;
+	}
+
 	/**
 	 * @return The wrapped instance of <c>IPlayer</c>.
 	 */
 	public IPlayer getPlayer() {
 		return player;
 	}
+
+	/**
+	 * @return The subscription at the <c>TimeEventHandler</c> which drives
+	 * 	this player or <c>null</c> if there is none.
+	 */
+	public TimeEventTuple getTimeEvent() {
+		return timeEvent;
+	}
+
+	/**
+	 * Sets the subscription at the <c>TimeEventHandler</c> which drives
+	 * this player.
+	 * @param timeEvent The subscription.
+	 */
+	public void setTimeEvent(TimeEventTuple timeEvent) {
+		this.timeEvent = timeEvent;
+	}
+
+	/**
+	 * Starts listening to the events of the player.
+	 * @return <c>false</c> if the player does not send events and has to
+	 * 	be polled.
+	 */
+	public boolean listen() {
+		eventsSupported = eventsCapable && player.addPlayerListener(this);
+		return eventsSupported;
+	}
+
+	/**
+	 * Stops listening to the events of the player and removes its markers.
+	 */
+	public void unlisten() {
+		if (eventsSupported) {
+			setMarkers(-1, -1);
+			player.removePlayerListener(this);
+			eventsSupported = false;
+		}
+	}
+
+	/**
+	 * @return <c>true</c> if the player sends events when it reaches a
+	 * 	marker or its end.
+	 */
+	public boolean isEventsSupported() {
+		return eventsSupported;
+	}
+
+	/**
+	 * Places the markers of the player, replacing the previous ones.
+	 * @param overlapMarker The position in milliseconds where the next
+	 * 	sound has to be started or -1.
+	 * @param fadeOutMarker The position in milliseconds where the fade out
+	 * 	begins or -1.
+	 */
+	public void setMarkers(int overlapMarker, int fadeOutMarker) {
+		if (fadeOutMarker == overlapMarker) {
+			fadeOutMarker = -1;
+		}
+		if (this.overlapMarker != overlapMarker && this.overlapMarker >= 0) {
+			player.removeMarker(this.overlapMarker);
+		}
+		if (this.fadeOutMarker != fadeOutMarker && this.fadeOutMarker >= 0) {
+			player.removeMarker(this.fadeOutMarker);
+		}
+		if (this.overlapMarker != overlapMarker && overlapMarker >= 0) {
+			player.addMarker(overlapMarker);
+		}
+		if (this.fadeOutMarker != fadeOutMarker && fadeOutMarker >= 0) {
+			player.addMarker(fadeOutMarker);
+		}
+		this.overlapMarker = overlapMarker;
+		this.fadeOutMarker = fadeOutMarker;
+	}
+
+	@Override
+	public void playerFinished(IPlayer player) {
+		TimeEventHandler.wakeUp(timeEvent);
+	}
+
+	@Override
+	public void markerReached(IPlayer player, int position) {
+		TimeEventHandler.wakeUp(timeEvent);
+	}
+
+	/**
+	 * @return The snapshot of the player's state which is filled in by the
+	 * 	<c>PlayerStateSampler</c>.
+	 */
+	PlayerState getState() {
+		return state;
+	}
+
+	/**
+	 * Marks the snapshot as freshly filled in.
+	 */
+	void setStateSampled() {
+		stateSampled = true;
+	}
+
+	/**
+	 * Returns the snapshot of the player's state. If it has not been filled
+	 * in since the last call, the player is asked directly.
+	 * @return The snapshot.
+	 */
+	PlayerState takeState() {
+		if (stateSampled) {
+			stateSampled = false;
+		} else {
+			state.set(player.getPlayPosition(), player.getPlayLength(),
+					player.isFinished(), player.getPaused());
+		}
+		return state;
+	}
 }
@@ -0,0 +1,157 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import smartsound.player.events.TimeEventHandler;
+import smartsound.player.events.VirtualClock;
+import smartsound.plugins.player.IOfflineRenderer;
+import smartsound.plugins.player.SoundEngine;
+
+/**
+ * Renders a <c>PlayListSet</c> to a WAV file faster than real time. A copy
+ * of the set plays its autoplay lists with the offline engine of the
+ * installed sound engine while a <c>VirtualClock</c> is advanced block by
+ * block, so fades, overlaps, chains and the randomization behave exactly
+ * as they do live. The copy is played in a <c>PlaybackContext</c> of its
+ * own with its own <c>TimeEventHandler</c>, clock and engine, so the live
+ * playback goes on undisturbed meanwhile.
+ * @author Andr Becker
+ *
+ */
+public class SceneRenderer {
+
+	/**
+	 * The number of frames rendered per tick of the virtual clock.
+	 */
+	private static final int BLOCK_FRAMES = 1024;
+
+	/**
+	 * The time the stopped copy gets to release its players.
+	 */
+	private static final int STOP_TIME = 10000;
+
+	/**
+	 * The size of the buffer collecting blocks before they are written.
+	 */
+	private static final int BUFFER_SIZE = 256 * 1024;
+
+	private static final int HEADER_SIZE = 44;
+
+	private final PlayListSet scene;
+
+	/**
+	 * @param scene The set to render. It is not changed.
+	 */
+	public SceneRenderer(final PlayListSet scene) {
+		this.scene = scene;
+	}
+
+	/**
+	 * Renders the set to a file.
+	 * @param file The WAV file. An existing file is overwritten.
+	 * @param length The length to render in milliseconds.
+	 * @throws IOException If the file cannot be written or if the sound
+	 * 	engine does not support offline rendering.
+	 */
+	public void render(final File file, final int length) throws IOException {
+		SoundEngine engine = SoundEngineSingleton.getInstance().createOfflineEngine();
+		if (!(engine instanceof IOfflineRenderer)) {
+			throw new IOException("The sound engine cannot render offline");
+		}
+		IOfflineRenderer renderer = (IOfflineRenderer) engine;
+		VirtualClock clock = new VirtualClock(System.currentTimeMillis());
+		TimeEventHandler handler = TimeEventHandler.createVirtual(clock);
+		PlayListSet copy;
+		try {
+			copy = new PlayListSet(scene.getPropertyMap(), PlaybackContext.createOffline(handler, engine));
+		} catch (LoadingException e) {
+			renderer.release();
+			throw new IOException("The scene cannot be copied", e);
+		}
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long start = clock.currentTimeMillis();
+			float sampleRate = renderer.getSampleRate();
+			long frames = (long) ((double) length * sampleRate / 1000);
+			if (frames * 4 > 0xffffffffL - HEADER_SIZE) {
+				throw new IOException("The length is too long for a WAV file");
+			}
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			channel.position(HEADER_SIZE);
+			copy.play();
+			long rendered = 0;
+			int count;
+			while (rendered < frames) {
+				handler.advanceTo(start + (long) (rendered * 1000 / sampleRate));
+				count = (int) Math.min(BLOCK_FRAMES, frames - rendered);
+				if (buffer.remaining() < 4 * count) {
+					write(channel, buffer);
+				}
+				renderer.render(buffer, count);
+				rendered += count;
+			}
+			write(channel, buffer);
+			channel.write(createHeader(sampleRate, rendered * 4), 0);
+
+			copy.stop();
+			engine.stopAllPlayers();
+			handler.advanceTo(clock.currentTimeMillis() + STOP_TIME);
+		} finally {
+			// The players of the disposed items are released by their
+			// next time events, which are due at once
+			copy.dispose();
+			handler.advanceTo(clock.currentTimeMillis());
+			renderer.release();
+		}
+	}
+
+	private static void write(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private static ByteBuffer createHeader(final float sampleRate, final long dataSize) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.put("RIFF".getBytes("US-ASCII"));
+		header.putInt((int) (dataSize + HEADER_SIZE - 8));
+		header.put("WAVE".getBytes("US-ASCII"));
+		header.put("fmt ".getBytes("US-ASCII"));
+		header.putInt(16);
+		header.putShort((short) 1);
+		header.putShort((short) 2);
+		header.putInt((int) sampleRate);
+		header.putInt((int) sampleRate * 4);
+		header.putShort((short) 4);
+		header.putShort((short) 16);
+		header.put("data".getBytes("US-ASCII"));
+		header.putInt((int) dataSize);
+		header.flip();
+		return header;
+	}
+}
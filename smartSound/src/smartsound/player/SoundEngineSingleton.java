@@ -64,4 +64,14 @@ public class SoundEngineSingleton {
 	public static void setSoundEngineClass(Class<? extends SoundEngine> SoundEngineClass) {
 		SoundEngineSingleton.SoundEngineClass = SoundEngineClass;
 	}
+	
+	/**
+	 * Installs an already created sound engine, e.g. a
+	 * <c>SimulatedSoundEngine</c>.
+	 * @param engine The sound engine.
+	 */
+	public static void setInstance(SoundEngine engine) {
+		instance = engine;
+		SoundEngineClass = engine.getClass();
+	}
 }
@@ -0,0 +1,227 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player;
+
+import smartsound.player.events.TimeEventStatistics;
+import smartsound.plugins.player.IPlayer;
+import smartsound.plugins.player.IPlayerListener;
+import smartsound.plugins.player.ISound;
+
+/**
+ * Decorates an <c>IPlayer</c> and records the time spent in each of its
+ * methods in the <c>TimeEventStatistics</c>. Most of these methods end up
+ * in native code of the sound engine.
+ * @author Andr Becker
+ *
+ */
+class TimedPlayer implements IPlayer {
+
+	private static final int PLAY = TimeEventStatistics.registerCall("IPlayer.play");
+	private static final int PAUSE = TimeEventStatistics.registerCall("IPlayer.pause");
+	private static final int GET_PAUSED = TimeEventStatistics.registerCall("IPlayer.getPaused");
+	private static final int STOP = TimeEventStatistics.registerCall("IPlayer.stop");
+	private static final int RELEASE = TimeEventStatistics.registerCall("IPlayer.release");
+	private static final int GET_VOLUME = TimeEventStatistics.registerCall("IPlayer.getVolume");
+	private static final int SET_VOLUME = TimeEventStatistics.registerCall("IPlayer.setVolume");
+	private static final int SLIDE_VOLUME = TimeEventStatistics.registerCall("IPlayer.slideVolume");
+	private static final int GET_PAN = TimeEventStatistics.registerCall("IPlayer.getPan");
+	private static final int SET_PAN = TimeEventStatistics.registerCall("IPlayer.setPan");
+	private static final int IS_FINISHED = TimeEventStatistics.registerCall("IPlayer.isFinished");
+	private static final int GET_PLAY_POSITION = TimeEventStatistics.registerCall("IPlayer.getPlayPosition");
+	private static final int SET_PLAY_POSITION = TimeEventStatistics.registerCall("IPlayer.setPlayPosition");
+	private static final int GET_PLAYBACK_SPEED = TimeEventStatistics.registerCall("IPlayer.getPlaybackSpeed");
+	private static final int SET_PLAYBACK_SPEED = TimeEventStatistics.registerCall("IPlayer.setPlaybackSpeed");
+	private static final int GET_PLAY_LENGTH = TimeEventStatistics.registerCall("IPlayer.getPlayLength");
+	private static final int QUEUE_SUCCESSOR = TimeEventStatistics.registerCall("IPlayer.queueSuccessor");
+
+	private final IPlayer player;
+
+	/**
+	 * @param player The decorated player.
+	 */
+	TimedPlayer(final IPlayer player) {
+		this.player = player;
+	}
+
+	/**
+	 * @return The decorated player.
+	 */
+	IPlayer getPlayer() {
+		return player;
+	}
+
+	@Override
+	public ISound getPlayListEntry() {
+		return player.getPlayListEntry();
+	}
+
+	@Override
+	public void play() {
+		long start = System.nanoTime();
+		player.play();
+		TimeEventStatistics.recordCall(PLAY, System.nanoTime() - start);
+	}
+
+	@Override
+	public void pause() {
+		long start = System.nanoTime();
+		player.pause();
+		TimeEventStatistics.recordCall(PAUSE, System.nanoTime() - start);
+	}
+
+	@Override
+	public boolean getPaused() {
+		long start = System.nanoTime();
+		boolean result = player.getPaused();
+		TimeEventStatistics.recordCall(GET_PAUSED, System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public void stop() {
+		long start = System.nanoTime();
+		player.stop();
+		TimeEventStatistics.recordCall(STOP, System.nanoTime() - start);
+	}
+
+	@Override
+	public void release() {
+		long start = System.nanoTime();
+		player.release();
+		TimeEventStatistics.recordCall(RELEASE, System.nanoTime() - start);
+	}
+
+	@Override
+	public float getVolume() {
+		long start = System.nanoTime();
+		float result = player.getVolume();
+		TimeEventStatistics.recordCall(GET_VOLUME, System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public void setVolume(float volume) {
+		long start = System.nanoTime();
+		player.setVolume(volume);
+		TimeEventStatistics.recordCall(SET_VOLUME, System.nanoTime() - start);
+	}
+
+	@Override
+	public boolean slideVolume(float volume, int duration) {
+		long start = System.nanoTime();
+		boolean result = player.slideVolume(volume, duration);
+		TimeEventStatistics.recordCall(SLIDE_VOLUME, System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public float getPan() {
+		long start = System.nanoTime();
+		float result = player.getPan();
+		TimeEventStatistics.recordCall(GET_PAN, System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public void setPan(float pan) {
+		long start = System.nanoTime();
+		player.setPan(pan);
+		TimeEventStatistics.recordCall(SET_PAN, System.nanoTime() - start);
+	}
+
+	@Override
+	public boolean isFinished() {
+		long start = System.nanoTime();
+		boolean result = player.isFinished();
+		TimeEventStatistics.recordCall(IS_FINISHED, System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public int getPlayPosition() {
+		long start = System.nanoTime();
+		int result = player.getPlayPosition();
+		TimeEventStatistics.recordCall(GET_PLAY_POSITION, System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public void setPlayPosition(int position) {
+		long start = System.nanoTime();
+		player.setPlayPosition(position);
+		TimeEventStatistics.recordCall(SET_PLAY_POSITION, System.nanoTime() - start);
+	}
+
+	@Override
+	public float getPlaybackSpeed() {
+		long start = System.nanoTime();
+		float result = player.getPlaybackSpeed();
+		TimeEventStatistics.recordCall(GET_PLAYBACK_SPEED, System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public void setPlaybackSpeed(float speed) {
+		long start = System.nanoTime();
+		player.setPlaybackSpeed(speed);
+		TimeEventStatistics.recordCall(SET_PLAYBACK_SPEED, System.nanoTime() - start);
+	}
+
+	@Override
+	public int getPlayLength() {
+		long start = System.nanoTime();
+		int result = player.getPlayLength();
+		TimeEventStatistics.recordCall(GET_PLAY_LENGTH, System.nanoTime() - start);
+		return result;
+	}
+
+	@Override
+	public boolean addPlayerListener(IPlayerListener listener) {
+		return player.addPlayerListener(listener);
+	}
+
+	@Override
+	public void removePlayerListener(IPlayerListener listener) {
+		player.removePlayerListener(listener);
+	}
+
+	@Override
+	public void addMarker(int position) {
+		player.addMarker(position);
+	}
+
+	@Override
+	public void removeMarker(int position) {
+		player.removeMarker(position);
+	}
+
+	/**
+	 * The engine only knows its own players, so a decorated successor is
+	 * handed over undecorated.
+	 */
+	@Override
+	public boolean queueSuccessor(IPlayer successor, int position) {
+		if (successor instanceof TimedPlayer) {
+			successor = ((TimedPlayer) successor).getPlayer();
+		}
+		long start = System.nanoTime();
+		boolean result = player.queueSuccessor(successor, position);
+		TimeEventStatistics.recordCall(QUEUE_SUCCESSOR, System.nanoTime() - start);
+		return result;
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import smartsound.player.events.TimeEventHandler;
+
+/**
+ * Keeps track of all voices, i.e. the players of all <c>PlayListItem</c>s
+ * which have been started and not yet stopped, and enforces the voice caps
+ * per item, per <c>PlayList</c> and for all <c>PlayList</c>s together.
+ * <p>
+ * If a new voice would exceed a cap, a voice within the same scope is
+ * stolen as chosen by the <c>VoiceStealing</c> policy of the new voice's
+ * <c>PlayList</c>. A stolen voice is only marked here and woken up; it
+ * fades out quickly the next time its item is informed. This way no lock
+ * of another item is taken.
+ * @author Andr Becker
+ *
+ */
+public class VoiceManager implements VoiceManagerMBean {
+
+	/**
+	 * The default maximum number of voices of all <c>PlayList</c>s. The cap
+	 * is opt-in, so by default the number of voices is not limited.
+	 */
+	public static final int DEFAULT_MAX_VOICES = 0;
+
+	private static final Logger LOGGER = Logger.getLogger(VoiceManager.class.getName());
+
+	private static final VoiceManager instance = new VoiceManager();
+
+	static {
+		// Starting the MBean server takes a while
+		Thread thread = new Thread("VoiceManager") {
+			@Override
+			public void run() {
+				try {
+					ManagementFactory.getPlatformMBeanServer().registerMBean(instance,
+							new ObjectName("smartsound:type=VoiceManager"));
+				} catch (JMException e) {
+					LOGGER.log(Level.WARNING, "Could not register the voice manager", e);
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * The voices in the order they have been started.
+	 */
+	private final LinkedHashMap<PlayerWrapper, PlayListItem> voices = new LinkedHashMap<PlayerWrapper, PlayListItem>();
+	private int maxVoices = DEFAULT_MAX_VOICES;
+	private long stolenCount = 0;
+
+	VoiceManager() {
+	}
+
+	/**
+	 * @return The <c>VoiceManager</c> of the live playback.
+	 */
+	public static VoiceManager getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Registers a voice which is about to be started. Voices are stolen
+	 * first if a cap would be exceeded.
+	 * @param item The item the voice belongs to.
+	 * @param pWrapper The voice.
+	 */
+	synchronized void admit(final PlayListItem item, final PlayerWrapper pWrapper) {
+		PlayerControllerSettings settings = item.getSettings();
+		VoiceStealing policy = VoiceStealing.OLDEST;
+		if (settings != null) {
+			policy = settings.getVoiceStealing();
+			makeRoom(item, null, settings.getMaxItemVoices(), policy);
+			if (item.getParent() != null) {
+				makeRoom(null, item.getParent(), settings.getMaxVoices(), policy);
+			}
+		}
+		makeRoom(null, null, maxVoices, policy);
+		voices.put(pWrapper, item);
+	}
+
+	/**
+	 * Forgets a voice which has been stopped.
+	 * @param pWrapper The voice.
+	 */
+	synchronized void release(final PlayerWrapper pWrapper) {
+		voices.remove(pWrapper);
+	}
+
+	/**
+	 * Assigns a voice to another item, e.g. because the item has been
+	 * moved to another <c>PlayList</c>.
+	 * @param pWrapper The voice.
+	 * @param item The item the voice belongs to from now on.
+	 */
+	synchronized void transfer(final PlayerWrapper pWrapper, final PlayListItem item) {
+		if (voices.containsKey(pWrapper)) {
+			voices.put(pWrapper, item);
+		}
+	}
+
+	@Override
+	public synchronized int getActiveVoiceCount() {
+		return count(null, null);
+	}
+
+	/**
+	 * @param playList The <c>PlayList</c>.
+	 * @return The number of voices of the <c>PlayList</c> which have not
+	 * 	been stolen.
+	 */
+	public synchronized int getActiveVoiceCount(final PlayList playList) {
+		return count(null, playList);
+	}
+
+	@Override
+	public synchronized int getMaxVoices() {
+		return maxVoices;
+	}
+
+	@Override
+	public synchronized void setMaxVoices(final int maxVoices) {
+		this.maxVoices = Math.max(0, maxVoices);
+	}
+
+	@Override
+	public synchronized long getStolenVoiceCount() {
+		return stolenCount;
+	}
+
+	/**
+	 * Steals voices within a scope until a new voice fits in.
+	 * @param item The item or <c>null</c> for any item.
+	 * @param playList The <c>PlayList</c> or <c>null</c> for any
+	 * 	<c>PlayList</c>.
+	 * @param max The cap of the scope or 0 if it is not limited.
+	 * @param policy The policy choosing the voice to steal.
+	 */
+	private void makeRoom(final PlayListItem item, final PlayList playList, final int max, final VoiceStealing policy) {
+		if (max <= 0) {
+			return;
+		}
+		for (int count = count(item, playList); count >= max; count--) {
+			PlayerWrapper victim = null;
+			for (Entry<PlayerWrapper, PlayListItem> entry : voices.entrySet()) {
+				PlayerWrapper pWrapper = entry.getKey();
+				if (pWrapper.isStolen() || !inScope(entry.getValue(), item, playList)) {
+					continue;
+				}
+				if (victim == null) {
+					victim = pWrapper;
+					if (policy == VoiceStealing.OLDEST) {
+						break;
+					}
+				} else if (getLoudness(pWrapper) < getLoudness(victim)) {
+					victim = pWrapper;
+				}
+			}
+			if (victim == null) {
+				return;
+			}
+			victim.setStolen(true);
+			stolenCount++;
+			TimeEventHandler.wakeUp(victim.getTimeEvent());
+		}
+	}
+
+	private int count(final PlayListItem item, final PlayList playList) {
+		int count = 0;
+		for (Entry<PlayerWrapper, PlayListItem> entry : voices.entrySet()) {
+			if (!entry.getKey().isStolen() && inScope(entry.getValue(), item, playList)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static boolean inScope(final PlayListItem owner, final PlayListItem item, final PlayList playList) {
+		return (item == null || owner == item) && (playList == null || owner.getParent() == playList);
+	}
+
+	private static float getLoudness(final PlayerWrapper pWrapper) {
+		return pWrapper.getVolume() * pWrapper.getVolumeFactor();
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player;
+
+/**
+ * Management interface of the <c>VoiceManager</c>. It is published through
+ * the platform MBean server under the name
+ * <c>smartsound:type=VoiceManager</c>.
+ * @author Andr Becker
+ *
+ */
+public interface VoiceManagerMBean {
+
+	/**
+	 * @return The number of voices which are playing, paused or fading out
+	 * 	and have not been stolen.
+	 */
+	public int getActiveVoiceCount();
+
+	/**
+	 * @return The maximum number of voices of all <c>PlayList</c>s or 0 if
+	 * 	the number is not limited.
+	 */
+	public int getMaxVoices();
+
+	/**
+	 * @param maxVoices The maximum number of voices of all <c>PlayList</c>s
+	 * 	or 0 if the number is not limited.
+	 */
+	public void setMaxVoices(int maxVoices);
+
+	/**
+	 * @return The number of voices which have been stolen so far.
+	 */
+	public long getStolenVoiceCount();
+}
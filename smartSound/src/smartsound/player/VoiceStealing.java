@@ -0,0 +1,49 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player;
+
+/**
+ * Decides which voice is stopped to make room for a new one if a voice cap
+ * is reached.
+ * @author Andr Becker
+ *
+ */
+public enum VoiceStealing {
+
+	/**
+	 * The voice which has been started first is stopped.
+	 */
+	OLDEST("Oldest"),
+
+	/**
+	 * The voice which is currently the quietest is stopped, e.g. one which
+	 * is fading out.
+	 */
+	QUIETEST("Quietest");
+
+	private final String name;
+
+	private VoiceStealing(final String name) {
+		this.name = name;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,39 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player.events;
+
+/**
+ * A source of the current time. The <c>TimeEventHandler</c> and the players
+ * read the time from an <c>IClock</c> so that the system time can be
+ * replaced by a <c>VirtualClock</c> in simulations.
+ * @author Andr Becker
+ *
+ */
+public interface IClock {
+
+	/**
+	 * @return The current time in milliseconds.
+	 */
+	public long currentTimeMillis();
+
+	/**
+	 * @return A monotonic time in nanoseconds which is only meaningful
+	 * 	relative to other values returned by this method.
+	 */
+	public long nanoTime();
+}
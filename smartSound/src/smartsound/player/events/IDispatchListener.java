@@ -0,0 +1,37 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player.events;
+
+import java.util.List;
+
+/**
+ * Is informed by the <c>TimeEventHandler</c> before the listeners of a tick
+ * are informed. This allows to prepare data for all due listeners at once,
+ * e.g. to query the state of all due players with a single call.
+ * @author Andr Becker
+ *
+ */
+public interface IDispatchListener {
+
+	/**
+	 * Is called by the handler's thread before the due listeners are
+	 * informed. Must not block and must not keep the list.
+	 * @param dueTuples The subscriptions which are informed next.
+	 */
+	public void beforeDispatch(List<TimeEventTuple> dueTuples);
+}
@@ -30,8 +30,11 @@ public interface ITimeEventListener {
 	 * @param currentTime The current system time in milliseconds.
 	 * @param obj An optional object that has been passed when the
 	 * 	<c>ITimeEventListener</c> subscribed.
-	 * @return <c>false</c> if the <c>ITImeEventListener</c> wishes
-	 * 	unsubscribe from the <c>TimeEventHandler</c>.
+	 * @return The system time in milliseconds when the listener wishes to
+	 * 	be informed next, <c>TimeEventHandler.NEXT_PERIOD</c> to keep the
+	 * 	rate it subscribed with, <c>TimeEventHandler.NEVER</c> if it waits
+	 * 	for an explicit wake up or <c>TimeEventHandler.UNSUBSCRIBE</c> if it
+	 * 	wishes to unsubscribe from the <c>TimeEventHandler</c>.
 	 */
-	public boolean receiveTimeEvent(long currentTime, Object obj);
+	public long receiveTimeEvent(long currentTime, Object obj);
 }
@@ -0,0 +1,49 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player.events;
+
+/**
+ * The <c>IClock</c> reading the system time. This is the default clock of
+ * the <c>TimeEventHandler</c>.
+ * @author Andr Becker
+ *
+ */
+public class SystemClock implements IClock {
+
+	private static final SystemClock instance = new SystemClock();
+
+	private SystemClock() {
+	}
+
+	/**
+	 * @return The system clock.
+	 */
+	public static SystemClock getInstance() {
+		return instance;
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	@Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+}
@@ -17,85 +17,617 @@
 
 package smartsound.player.events;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
+ * Informs <c>ITimeEventListener</c>s at the points in time they asked for.
+ * Each subscription carries a deadline; the handler sleeps until the
+ * earliest deadline is reached and does not wake up at all while there is
+ * nothing to do.
+ * <p>
+ * Each subscription chooses its own rate: periodic subscriptions declare
+ * their period, one-shot subscriptions a delay or deadline, and every
+ * listener may ask for an arbitrary next deadline. Deadlines are kept in a
+ * hierarchical <c>TimerWheel</c> with a resolution of a few milliseconds, so
+ * fast fades and slow housekeeping do not have to share one rate.
+ * <p>
+ * Other threads never block the handler: subscriptions, wake up requests
+ * and removals are handed over through lock-free queues and applied by the
+ * handler's own thread between two listener calls. Subscriptions are linked
+ * into the timer wheel, and each tuple knows its position there, so a
+ * removal never has to search for it.
+ * <p>
+ * Listeners which are due at the same time are informed in parallel by a
+ * small pool of worker threads. Subscriptions are striped by an optional
+ * stripe object (usually the owning <c>PlayList</c>): all listeners of one
+ * stripe are informed by the same worker in deadline order, so they never
+ * run concurrently, while different stripes are spread across the workers.
+ * Subscriptions without a stripe are informed by the handler's own thread.
+ * The timer wheel itself is only touched by the handler's thread.
+ * <p>
+ * The duration of each tick and its slowest listener are recorded in the
+ * <c>TimeEventStatistics</c>. Once the lists have grown large enough, a
+ * tick does not allocate any objects.
+ * <p>
+ * All times are read from an exchangeable <c>IClock</c>. While a
+ * <c>VirtualClock</c> is installed, the handler's thread stays idle and time
+ * events are dispatched by <c>advanceTo</c> on the caller's thread instead,
+ * which moves the virtual clock from one deadline to the next.
+ * <p>
+ * The live handler is returned by <c>getInstance</c>. Handlers of their
+ * own, e.g. for rendering a scene offline, are created by
+ * <c>createVirtual</c>; they have no threads and are only driven by
+ * <c>advanceTo</c>.
  * @author Andr Becker
  *
  */
 public class TimeEventHandler extends Thread {
 
-	private static TimeEventHandler instance;
+	/**
+	 * Return value of <c>ITimeEventListener.receiveTimeEvent</c> for
+	 * listeners which wish to unsubscribe.
+	 */
+	public static final long UNSUBSCRIBE = -1;
+
+	/**
+	 * Deadline for listeners which do not need to be informed until they
+	 * are woken up explicitly.
+	 */
+	public static final long NEVER = Long.MAX_VALUE;
+
+	/**
+	 * Return value of <c>ITimeEventListener.receiveTimeEvent</c> for
+	 * listeners which wish to be informed again after the period they
+	 * subscribed with. One-shot subscriptions are removed.
+	 */
+	public static final long NEXT_PERIOD = 0;
+
+	/**
+	 * Due listeners are informed by the handler's own thread if there are
+	 * fewer of them, since handing them to the workers would cost more than
+	 * it saves.
+	 */
+	private static final int PARALLEL_THRESHOLD = 8;
+
+	private static final int WORKER_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	private static final Logger LOGGER = Logger.getLogger(TimeEventHandler.class.getName());
+
+	private static final TimeEventHandler instance = new TimeEventHandler(SystemClock.getInstance(), WORKER_COUNT,
+			TimeEventStatistics.getInstance());
+
+	static {
+		instance.start();
+	}
+
+	private final Queue<TimeEventTuple> addQueue = new ConcurrentLinkedQueue<TimeEventTuple>();
+	private final Queue<TimeEventTuple> wakeUpQueue = new ConcurrentLinkedQueue<TimeEventTuple>();
+	private final Queue<TimeEventTuple> removeQueue = new ConcurrentLinkedQueue<TimeEventTuple>();
+
+	private volatile IClock clock;
+	private final ReentrantLock tickLock = new ReentrantLock();
+	private final List<TimeEventTuple> dueList = new ArrayList<TimeEventTuple>();
+	private final TimeEventStatistics statistics;
+	private volatile IDispatchListener[] dispatchListeners = new IDispatchListener[0];
+
+	private final TimerWheel wheel;
+	private volatile int listenerCount = 0;
+
+	private final StripeWorker[] workers;
+	private final List<TimeEventTuple> unstriped = new ArrayList<TimeEventTuple>();
+	private final AtomicInteger pendingWorkers = new AtomicInteger();
+	private volatile Thread dispatcher;
 
-	private Set<TimeEventTuple> listenerSet = Collections
-			.synchronizedSet(new HashSet<TimeEventTuple>());
-	private List<TimeEventTuple> addList = new LinkedList<TimeEventTuple>();
 	private volatile boolean abort = false;
 
-	private TimeEventHandler() {
+	/**
+	 * @param clock The clock.
+	 * @param workerCount The number of workers. There are none if it is 1.
+	 * @param statistics The statistics the ticks are recorded in or
+	 * 	<c>null</c>.
+	 */
+	private TimeEventHandler(IClock clock, int workerCount, TimeEventStatistics statistics) {
+		super("TimeEventHandler");
+		setDaemon(true);
+		this.clock = clock;
+		this.statistics = statistics;
+		wheel = new TimerWheel(clock.currentTimeMillis());
+		if (workerCount > 1) {
+			workers = new StripeWorker[workerCount];
+			for (int i = 0; i < workers.length; i++) {
+				workers[i] = new StripeWorker(i + 1);
+				workers[i].start();
+			}
+		} else {
+			workers = null;
+		}
 	}
 
-	public static void add(ITimeEventListener listener, Object obj) {
-		if (instance == null) {
-			instance = new TimeEventHandler();
-			instance.start();
+	/**
+	 * @return The handler of the live playback.
+	 */
+	public static TimeEventHandler getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Creates a handler of its own which is driven by a virtual clock, e.g.
+	 * to render a scene offline. It has no threads: its time events are
+	 * only dispatched by <c>advanceTo</c> on the caller's thread. Its ticks
+	 * are not recorded in the <c>TimeEventStatistics</c>.
+	 * @param clock The clock.
+	 * @return The handler.
+	 */
+	public static TimeEventHandler createVirtual(VirtualClock clock) {
+		return new TimeEventHandler(clock, 1, null);
+	}
+
+	/**
+	 * Subscribes a listener which is informed once as soon as possible.
+	 * @param listener The listener.
+	 * @param obj An optional object which is passed to the listener.
+	 * @return The subscription.
+	 */
+	public TimeEventTuple add(ITimeEventListener listener, Object obj) {
+		return add(listener, obj, currentTimeMillis());
+	}
+
+	/**
+	 * Subscribes a listener which is informed once at a given time.
+	 * @param listener The listener.
+	 * @param obj An optional object which is passed to the listener.
+	 * @param deadline The system time in milliseconds when the listener is
+	 * 	informed.
+	 * @return The subscription.
+	 */
+	public TimeEventTuple add(ITimeEventListener listener, Object obj, long deadline) {
+		return add(new TimeEventTuple(listener, obj), deadline);
+	}
+
+	/**
+	 * Subscribes a listener which is informed once at a given time.
+	 * Listeners sharing the same stripe are never informed concurrently.
+	 * @param listener The listener.
+	 * @param obj An optional object which is passed to the listener.
+	 * @param deadline The system time in milliseconds when the listener is
+	 * 	informed.
+	 * @param stripe The stripe, e.g. the owning <c>PlayList</c>, or
+	 * 	<c>null</c>.
+	 * @return The subscription.
+	 */
+	public TimeEventTuple add(ITimeEventListener listener, Object obj, long deadline, Object stripe) {
+		return add(new TimeEventTuple(listener, obj, 0, stripe), deadline);
+	}
+
+	/**
+	 * Subscribes a listener which is informed once after a given delay.
+	 * @param listener The listener.
+	 * @param obj An optional object which is passed to the listener.
+	 * @param delay The delay in milliseconds.
+	 * @return The subscription.
+	 */
+	public TimeEventTuple addDelayed(ITimeEventListener listener, Object obj, long delay) {
+		return add(new TimeEventTuple(listener, obj), currentTimeMillis() + delay);
+	}
+
+	/**
+	 * Subscribes a listener which is informed periodically, starting one
+	 * period from now.
+	 * @param listener The listener.
+	 * @param obj An optional object which is passed to the listener.
+	 * @param period The period in milliseconds.
+	 * @return The subscription.
+	 */
+	public TimeEventTuple addPeriodic(ITimeEventListener listener, Object obj, long period) {
+		return add(new TimeEventTuple(listener, obj, period), currentTimeMillis() + period);
+	}
+
+	private TimeEventTuple add(TimeEventTuple tuple, long deadline) {
+		tuple.handler = this;
+		tuple.setDeadline(deadline);
+		addQueue.add(tuple);
+		LockSupport.unpark(this);
+		return tuple;
+	}
+
+	/**
+	 * Makes sure a subscribed listener is informed no later than a given
+	 * time. Deadlines which are already earlier are kept.
+	 * @param tuple The subscription.
+	 * @param deadline The time in milliseconds according to the clock of
+	 * 	the subscription's handler.
+	 */
+	public static void wakeUp(TimeEventTuple tuple, long deadline) {
+		TimeEventHandler handler = tuple == null ? null : tuple.handler;
+		if (handler == null || tuple.isCancelled()) {
+			return;
 		}
-		synchronized (instance) {
-			instance.addList.add(new TimeEventTuple(listener, obj));
+		tuple.requestDeadline(deadline);
+		handler.wakeUpQueue.add(tuple);
+		LockSupport.unpark(handler);
+	}
+
+	/**
+	 * Makes sure a subscribed listener is informed as soon as possible.
+	 * @param tuple The subscription.
+	 */
+	public static void wakeUp(TimeEventTuple tuple) {
+		TimeEventHandler handler = tuple == null ? null : tuple.handler;
+		if (handler != null) {
+			wakeUp(tuple, handler.currentTimeMillis());
 		}
 	}
 
-	private static void remove(ITimeEventListener listener, Object obj) {
-		if (instance != null) {
-			synchronized (instance) {
-				for (TimeEventTuple tuple : instance.listenerSet) {
-					if (listener == tuple.getListener() && obj == tuple.getObj()) {
-						instance.listenerSet.remove(tuple);
-						break;
-					}
+	/**
+	 * Removes a subscription. The listener will not be informed anymore.
+	 * @param tuple The subscription.
+	 */
+	public static void remove(TimeEventTuple tuple) {
+		TimeEventHandler handler = tuple == null ? null : tuple.handler;
+		if (handler == null || tuple.isCancelled()) {
+			return;
+		}
+		tuple.cancel();
+		handler.removeQueue.add(tuple);
+		LockSupport.unpark(handler);
+	}
+
+	/**
+	 * @return The number of current subscriptions.
+	 */
+	public int getListenerCount() {
+		return listenerCount;
+	}
+
+	/**
+	 * Adds a listener which is informed before the due listeners of each
+	 * tick are informed.
+	 * @param listener The listener.
+	 */
+	public synchronized void addDispatchListener(IDispatchListener listener) {
+		IDispatchListener[] listeners = Arrays.copyOf(dispatchListeners, dispatchListeners.length + 1);
+		listeners[listeners.length - 1] = listener;
+		dispatchListeners = listeners;
+	}
+
+	/**
+	 * Removes a listener added by <c>addDispatchListener</c>.
+	 * @param listener The listener.
+	 */
+	public synchronized void removeDispatchListener(IDispatchListener listener) {
+		IDispatchListener[] listeners = dispatchListeners;
+		for (int i = 0; i < listeners.length; i++) {
+			if (listeners[i] == listener) {
+				IDispatchListener[] remaining = new IDispatchListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, remaining, 0, i);
+				System.arraycopy(listeners, i + 1, remaining, i, remaining.length - i);
+				dispatchListeners = remaining;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return The current time in milliseconds according to the installed
+	 * 	clock. Everything scheduling time events should use this instead of
+	 * 	<c>System.currentTimeMillis</c>.
+	 */
+	public long currentTimeMillis() {
+		return clock.currentTimeMillis();
+	}
+
+	/**
+	 * @return The monotonic time in nanoseconds according to the installed
+	 * 	clock. Use this instead of <c>System.nanoTime</c> to measure
+	 * 	playback time.
+	 */
+	public long nanoTime() {
+		return clock.nanoTime();
+	}
+
+	/**
+	 * @return The installed clock.
+	 */
+	public IClock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Installs a clock. Existing subscriptions keep their deadlines. If the
+	 * clock is a <c>VirtualClock</c>, time events are only dispatched by
+	 * <c>advanceTo</c> from now on.
+	 * @param clock The clock.
+	 */
+	public void setClock(IClock clock) {
+		tickLock.lock();
+		try {
+			this.clock = clock;
+			wheel.rebase(clock.currentTimeMillis());
+		} finally {
+			tickLock.unlock();
+		}
+		LockSupport.unpark(this);
+	}
+
+	/**
+	 * Moves the installed <c>VirtualClock</c> to a given time, dispatching
+	 * all time events which become due on the way on the caller's thread.
+	 * The clock stops at each deadline, so listeners see the same times as
+	 * they would in real time.
+	 * @param time The time in milliseconds.
+	 * @throws IllegalStateException If no <c>VirtualClock</c> is installed.
+	 */
+	public void advanceTo(long time) {
+		tickLock.lock();
+		try {
+			if (!(clock instanceof VirtualClock)) {
+				throw new IllegalStateException("No virtual clock installed");
+			}
+			VirtualClock virtualClock = (VirtualClock) clock;
+			long deadline;
+			while (true) {
+				processRequests();
+				deadline = wheel.nextDeadline();
+				if (deadline > time) {
+					break;
 				}
-				
-				/*if (instance.listenerSet.isEmpty()) {
-					instance.abort = true;
-					instance.interrupt();
-					instance = null;
-				}*/
+				virtualClock.setTime(deadline);
+				tick(virtualClock.currentTimeMillis(), deadline);
 			}
+			virtualClock.setTime(time);
+		} finally {
+			tickLock.unlock();
+		}
+	}
+
+	private void processRequests() {
+		TimeEventTuple tuple;
+		while ((tuple = addQueue.poll()) != null) {
+			if (!tuple.isCancelled()) {
+				tuple.registered = true;
+				listenerCount++;
+				tuple.setDeadline(Math.min(tuple.getDeadline(), tuple.takeRequestedDeadline()));
+				wheel.add(tuple);
+			}
+		}
+		while ((tuple = removeQueue.poll()) != null) {
+			release(tuple);
+		}
+		while ((tuple = wakeUpQueue.poll()) != null) {
+			if (tuple.registered) {
+				wheel.update(tuple, Math.min(tuple.getDeadline(), tuple.takeRequestedDeadline()));
+			}
+		}
+	}
+
+	private void release(TimeEventTuple tuple) {
+		tuple.cancel();
+		wheel.remove(tuple);
+		if (tuple.registered) {
+			tuple.registered = false;
+			listenerCount--;
+		}
+	}
+
+	/**
+	 * Informs the listener of a due subscription and stores its answer in
+	 * the tuple. Called by the handler's thread or by a worker.
+	 */
+	private void inform(TimeEventTuple tuple) {
+		if (tuple.isCancelled()) {
+			tuple.result = UNSUBSCRIBE;
+			tuple.elapsed = 0;
+			return;
+		}
+		long now = clock.currentTimeMillis();
+		long start = System.nanoTime();
+		long next;
+		try {
+			next = tuple.getListener().receiveTimeEvent(now, tuple.getObj());
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.SEVERE, "Time event listener failed and has been removed", e);
+			next = UNSUBSCRIBE;
+		}
+		tuple.elapsed = System.nanoTime() - start;
+		if (next == NEXT_PERIOD && tuple.getPeriod() > 0) {
+			next = tuple.getDeadline() + tuple.getPeriod();
+			if (next <= now) {
+				// Skip the periods which have been missed
+				next = now + tuple.getPeriod();
+			}
+		} else if (next == NEXT_PERIOD) {
+			next = UNSUBSCRIBE;
+		}
+		tuple.result = next;
+	}
+
+	/**
+	 * Informs all due listeners, spreading the stripes across the workers.
+	 * Returns after every listener has been informed.
+	 */
+	private void dispatch(List<TimeEventTuple> dueList) {
+		int size = dueList.size();
+		if (workers == null || size < PARALLEL_THRESHOLD) {
+			for (int i = 0; i < size; i++) {
+				inform(dueList.get(i));
+			}
+			return;
+		}
+
+		TimeEventTuple tuple;
+		Object stripe;
+		int hash;
+		for (int i = 0; i < size; i++) {
+			tuple = dueList.get(i);
+			stripe = tuple.getStripe();
+			if (stripe == null) {
+				unstriped.add(tuple);
+			} else {
+				hash = stripe.hashCode();
+				hash ^= hash >>> 16;
+				workers[(hash & 0x7fffffff) % workers.length].tuples.add(tuple);
+			}
+		}
+
+		int workerCount = 0;
+		for (StripeWorker worker : workers) {
+			if (!worker.tuples.isEmpty()) {
+				workerCount++;
+			}
+		}
+		dispatcher = Thread.currentThread();
+		pendingWorkers.set(workerCount);
+		for (StripeWorker worker : workers) {
+			if (!worker.tuples.isEmpty()) {
+				worker.assign();
+			}
+		}
+
+		for (int i = 0; i < unstriped.size(); i++) {
+			inform(unstriped.get(i));
+		}
+		unstriped.clear();
+
+		boolean interrupted = false;
+		while (pendingWorkers.get() > 0) {
+			LockSupport.park(this);
+			if (Thread.interrupted()) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
 		}
 	}
 
 	@Override
 	public void run() {
-		long startTime;
-		long sleepTime;
-		List<TimeEventTuple> removeList = new LinkedList<TimeEventTuple>();
+		if (statistics != null) {
+			statistics.start();
+		}
+		long now;
+		long deadline;
 		while (!abort) {
+			tickLock.lock();
 			try {
-				startTime = System.currentTimeMillis();
-				synchronized (instance) {
-					for (TimeEventTuple tuple : listenerSet) {
-						if (!tuple.getListener().receiveTimeEvent(System.currentTimeMillis(), tuple.getObj())) {
-							removeList.add(tuple);
-						}
+				now = clock.currentTimeMillis();
+				if (clock instanceof VirtualClock) {
+					deadline = NEVER;
+				} else {
+					processRequests();
+					deadline = wheel.nextDeadline();
+					if (deadline <= now) {
+						tick(now, deadline);
+						continue;
 					}
-					while (!addList.isEmpty()) {
-						listenerSet.add(addList.remove(0));
-					}
-					for (TimeEventTuple tuple : removeList) {
-						remove(tuple.getListener(), tuple.getObj());
+				}
+			} finally {
+				tickLock.unlock();
+			}
+
+			if (deadline == NEVER) {
+				LockSupport.park(this);
+			} else {
+				LockSupport.parkNanos(this, (deadline - now) * 1000000L);
+			}
+		}
+	}
+
+	/**
+	 * Informs all listeners which are due and puts them back into the wheel.
+	 * Called with the tick lock held.
+	 * @param now The current time in milliseconds.
+	 * @param deadline The deadline of the tick.
+	 */
+	private void tick(long now, long deadline) {
+		long tickStart = System.nanoTime();
+		long next;
+		TimeEventTuple slowest = null;
+		wheel.advance(now, dueList);
+		for (IDispatchListener listener : dispatchListeners) {
+			try {
+				listener.beforeDispatch(dueList);
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.SEVERE, "Dispatch listener failed", e);
+			}
+		}
+		dispatch(dueList);
+
+		TimeEventTuple tuple;
+		for (int i = 0; i < dueList.size(); i++) {
+			tuple = dueList.get(i);
+			if (slowest == null || tuple.elapsed > slowest.elapsed) {
+				slowest = tuple;
+			}
+			next = tuple.result;
+			if (next == UNSUBSCRIBE || tuple.isCancelled()) {
+				release(tuple);
+			} else {
+				tuple.setDeadline(Math.min(next, tuple.takeRequestedDeadline()));
+				wheel.add(tuple);
+			}
+		}
+		if (slowest != null && statistics != null) {
+			statistics.recordTick(now, System.nanoTime() - tickStart, now - deadline,
+					slowest.getListener(), slowest.elapsed);
+		}
+		dueList.clear();
+	}
+
+	/**
+	 * A worker which informs the listeners of the stripes assigned to it,
+	 * one after another. It parks between two ticks and is handed its work
+	 * directly, so no task objects or queue nodes are created.
+	 */
+	private class StripeWorker extends Thread {
+		private final List<TimeEventTuple> tuples = new ArrayList<TimeEventTuple>();
+		private volatile boolean assigned = false;
+
+		private StripeWorker(int number) {
+			super("TimeEventWorker-" + number);
+			setDaemon(true);
+		}
+
+		/**
+		 * Wakes the worker up after its tuples have been added.
+		 */
+		private void assign() {
+			assigned = true;
+			LockSupport.unpark(this);
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				while (!assigned) {
+					LockSupport.park(this);
+				}
+				TimeEventTuple tuple;
+				for (int i = 0; i < tuples.size(); i++) {
+					tuple = tuples.get(i);
+					try {
+						inform(tuple);
+					} catch (Throwable t) {
+						// The other tuples of the batch are still informed
+						LOGGER.log(Level.SEVERE, "Time event listener failed and has been removed", t);
+						tuple.result = UNSUBSCRIBE;
+						tuple.elapsed = 0;
 					}
-					removeList.clear();
 				}
-				// TODO comment
-				sleepTime = 100 - System.currentTimeMillis() + startTime;
-				if (sleepTime > 0) {
-					sleep(sleepTime);
+				tuples.clear();
+				assigned = false;
+				if (pendingWorkers.decrementAndGet() == 0) {
+					LockSupport.unpark(dispatcher);
 				}
-			} catch (InterruptedException e) {
 			}
 		}
 	}
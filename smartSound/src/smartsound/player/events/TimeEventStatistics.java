@@ -0,0 +1,311 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player.events;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects metrics of the <c>TimeEventHandler</c>: tick durations, overruns,
+ * the slowest listener of each tick and the time spent in measured calls
+ * such as the native methods of the players. The metrics are published as
+ * MBean. A summary is logged by the first tick after each interval, so the
+ * statistics never wake up an idle handler.
+ * <p>
+ * Ticks are recorded by the handler's thread only; measured calls may be
+ * recorded from any thread.
+ * @author Andr Becker
+ *
+ */
+public class TimeEventStatistics implements TimeEventStatisticsMBean {
+
+	/**
+	 * The interval in milliseconds between two summaries in the log.
+	 */
+	public static final long SUMMARY_INTERVAL = 60000;
+
+	private static final long[] BUCKET_LIMITS = {1, 2, 5, 10, 20, 50, 100, 200, 500};
+
+	private static final int MAX_CALLS = 64;
+
+	private static final Logger LOGGER = Logger.getLogger(TimeEventStatistics.class.getName());
+
+	private static final TimeEventStatistics instance = new TimeEventStatistics();
+
+	private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_LIMITS.length + 1);
+	private volatile long tickCount = 0;
+	private volatile long totalTickNanos = 0;
+	private volatile long maxTickNanos = 0;
+	private volatile long maxLatenessMillis = 0;
+	private volatile long overrunCount = 0;
+	private volatile long overrunThresholdNanos = 20000000L;
+	private volatile Object slowestListener;
+	private volatile long slowestListenerNanos = 0;
+
+	private long intervalStart = -1;
+	private long intervalTicks = 0;
+	private long intervalOverruns = 0;
+	private long intervalMaxTickNanos = 0;
+	private Object intervalSlowestListener;
+	private long intervalSlowestNanos = 0;
+
+	private final String[] callNames = new String[MAX_CALLS];
+	private int callNameCount = 0;
+	private final AtomicLongArray callCounts = new AtomicLongArray(MAX_CALLS);
+	private final AtomicLongArray callNanos = new AtomicLongArray(MAX_CALLS);
+
+	private boolean started = false;
+
+	private TimeEventStatistics() {
+	}
+
+	/**
+	 * @return The statistics of the <c>TimeEventHandler</c>.
+	 */
+	public static TimeEventStatistics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Registers a call whose duration is measured.
+	 * @param name The name of the call, e.g. <c>IPlayer.getPlayPosition</c>.
+	 * @return The id to pass to <c>recordCall</c> or -1 if no more calls
+	 * 	can be registered.
+	 */
+	public static int registerCall(String name) {
+		synchronized (instance) {
+			for (int i = 0; i < instance.callNameCount; i++) {
+				if (instance.callNames[i].equals(name)) {
+					return i;
+				}
+			}
+			if (instance.callNameCount == MAX_CALLS) {
+				return -1;
+			}
+			instance.callNames[instance.callNameCount] = name;
+			return instance.callNameCount++;
+		}
+	}
+
+	/**
+	 * Records the duration of a measured call. May be called from any thread.
+	 * @param id The id returned by <c>registerCall</c>.
+	 * @param nanos The duration in nanoseconds.
+	 */
+	public static void recordCall(int id, long nanos) {
+		if (id >= 0) {
+			instance.callCounts.incrementAndGet(id);
+			instance.callNanos.addAndGet(id, nanos);
+		}
+	}
+
+	/**
+	 * Publishes the MBean. Called once by the <c>TimeEventHandler</c>.
+	 * Starting the MBean server takes a while, so the MBean is published by
+	 * a thread of its own.
+	 */
+	void start() {
+		if (started) {
+			return;
+		}
+		started = true;
+		Thread thread = new Thread("TimeEventStatistics") {
+			@Override
+			public void run() {
+				try {
+					ManagementFactory.getPlatformMBeanServer().registerMBean(TimeEventStatistics.this,
+							new ObjectName("smartsound:type=TimeEventStatistics"));
+				} catch (JMException e) {
+					LOGGER.log(Level.WARNING, "Could not register the time event statistics", e);
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Records a tick and logs the summary if the interval has passed.
+	 * Called by the handler's thread only.
+	 * @param now The time of the tick in milliseconds.
+	 * @param nanos The duration of the tick in nanoseconds.
+	 * @param latenessMillis The time in milliseconds the tick started after
+	 * 	its deadline.
+	 * @param slowest The slowest listener of the tick.
+	 * @param slowestNanos The time in nanoseconds the slowest listener took.
+	 */
+	void recordTick(long now, long nanos, long latenessMillis, Object slowest, long slowestNanos) {
+		long millis = nanos / 1000000L;
+		int bucket = 0;
+		while (bucket < BUCKET_LIMITS.length && millis >= BUCKET_LIMITS[bucket]) {
+			bucket++;
+		}
+		histogram.incrementAndGet(bucket);
+
+		tickCount++;
+		totalTickNanos += nanos;
+		if (nanos > maxTickNanos) {
+			maxTickNanos = nanos;
+		}
+		if (latenessMillis > maxLatenessMillis) {
+			maxLatenessMillis = latenessMillis;
+		}
+		if (nanos > overrunThresholdNanos) {
+			overrunCount++;
+			intervalOverruns++;
+		}
+		slowestListener = slowest;
+		slowestListenerNanos = slowestNanos;
+
+		intervalTicks++;
+		if (nanos > intervalMaxTickNanos) {
+			intervalMaxTickNanos = nanos;
+		}
+		if (slowestNanos > intervalSlowestNanos) {
+			intervalSlowestNanos = slowestNanos;
+			intervalSlowestListener = slowest;
+		}
+
+		if (intervalStart < 0 || now < intervalStart) {
+			intervalStart = now;
+		} else if (now - intervalStart >= SUMMARY_INTERVAL) {
+			logSummary();
+			intervalStart = now;
+		}
+	}
+
+	private void logSummary() {
+		// Simulations would flood the log with summaries of virtual minutes
+		boolean simulated = TimeEventHandler.getInstance().getClock() instanceof VirtualClock;
+		if (!simulated && LOGGER.isLoggable(Level.INFO)) {
+			LOGGER.info(String.format("%d ticks, max %.2f ms, %d overruns, %d listeners, slowest listener %s (%.2f ms)",
+					intervalTicks, intervalMaxTickNanos / 1e6, intervalOverruns, getListenerCount(),
+					intervalSlowestListener, intervalSlowestNanos / 1e6));
+			if (LOGGER.isLoggable(Level.FINE)) {
+				for (String line : getCallTimes()) {
+					LOGGER.fine(line);
+				}
+			}
+		}
+		intervalTicks = 0;
+		intervalOverruns = 0;
+		intervalMaxTickNanos = 0;
+		intervalSlowestListener = null;
+		intervalSlowestNanos = 0;
+	}
+
+	@Override
+	public long getTickCount() {
+		return tickCount;
+	}
+
+	@Override
+	public long[] getTickDurationHistogram() {
+		long[] result = new long[histogram.length()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = histogram.get(i);
+		}
+		return result;
+	}
+
+	@Override
+	public long[] getTickDurationBucketLimits() {
+		return BUCKET_LIMITS.clone();
+	}
+
+	@Override
+	public double getAverageTickMillis() {
+		long ticks = tickCount;
+		return ticks == 0 ? 0 : totalTickNanos / 1e6 / ticks;
+	}
+
+	@Override
+	public double getMaxTickMillis() {
+		return maxTickNanos / 1e6;
+	}
+
+	@Override
+	public long getMaxLatenessMillis() {
+		return maxLatenessMillis;
+	}
+
+	@Override
+	public int getListenerCount() {
+		return TimeEventHandler.getInstance().getListenerCount();
+	}
+
+	@Override
+	public long getOverrunCount() {
+		return overrunCount;
+	}
+
+	@Override
+	public long getOverrunThresholdMillis() {
+		return overrunThresholdNanos / 1000000L;
+	}
+
+	@Override
+	public void setOverrunThresholdMillis(long threshold) {
+		overrunThresholdNanos = threshold * 1000000L;
+	}
+
+	@Override
+	public String getSlowestListener() {
+		return String.valueOf(slowestListener);
+	}
+
+	@Override
+	public double getSlowestListenerMillis() {
+		return slowestListenerNanos / 1e6;
+	}
+
+	@Override
+	public synchronized String[] getCallTimes() {
+		String[] result = new String[callNameCount];
+		for (int i = 0; i < callNameCount; i++) {
+			long count = callCounts.get(i);
+			long nanos = callNanos.get(i);
+			result[i] = String.format("%s: %d calls, %.1f ms total, %.3f ms average",
+					callNames[i], count, nanos / 1e6, count == 0 ? 0 : nanos / 1e6 / count);
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized void reset() {
+		for (int i = 0; i < histogram.length(); i++) {
+			histogram.set(i, 0);
+		}
+		for (int i = 0; i < MAX_CALLS; i++) {
+			callCounts.set(i, 0);
+			callNanos.set(i, 0);
+		}
+		tickCount = 0;
+		totalTickNanos = 0;
+		maxTickNanos = 0;
+		maxLatenessMillis = 0;
+		overrunCount = 0;
+		slowestListener = null;
+		slowestListenerNanos = 0;
+	}
+}
@@ -0,0 +1,108 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player.events;
+
+/**
+ * Management interface of the <c>TimeEventStatistics</c>. The statistics are
+ * published through the platform MBean server under the name
+ * <c>smartsound:type=TimeEventStatistics</c>.
+ * @author Andr Becker
+ *
+ */
+public interface TimeEventStatisticsMBean {
+
+	/**
+	 * @return The number of ticks since the last reset. A tick informs all
+	 * 	listeners which are due at the same time.
+	 */
+	public long getTickCount();
+
+	/**
+	 * @return The number of ticks per bucket of
+	 * 	<c>getTickDurationBucketLimits</c>. The last bucket counts all
+	 * 	ticks exceeding the highest limit.
+	 */
+	public long[] getTickDurationHistogram();
+
+	/**
+	 * @return The exclusive upper limits of the histogram buckets in
+	 * 	milliseconds.
+	 */
+	public long[] getTickDurationBucketLimits();
+
+	/**
+	 * @return The average duration of a tick in milliseconds.
+	 */
+	public double getAverageTickMillis();
+
+	/**
+	 * @return The longest duration of a tick in milliseconds.
+	 */
+	public double getMaxTickMillis();
+
+	/**
+	 * @return The longest time in milliseconds a tick started after its
+	 * 	deadline.
+	 */
+	public long getMaxLatenessMillis();
+
+	/**
+	 * @return The number of current subscriptions.
+	 */
+	public int getListenerCount();
+
+	/**
+	 * @return The number of ticks which took longer than the overrun
+	 * 	threshold.
+	 */
+	public long getOverrunCount();
+
+	/**
+	 * @return The duration in milliseconds after which a tick counts as
+	 * 	overrun.
+	 */
+	public long getOverrunThresholdMillis();
+
+	/**
+	 * @param threshold The duration in milliseconds after which a tick
+	 * 	counts as overrun.
+	 */
+	public void setOverrunThresholdMillis(long threshold);
+
+	/**
+	 * @return The listener which took the longest time during the last tick.
+	 */
+	public String getSlowestListener();
+
+	/**
+	 * @return The time in milliseconds the slowest listener of the last tick
+	 * 	took.
+	 */
+	public double getSlowestListenerMillis();
+
+	/**
+	 * @return One line per measured call (e.g. each <c>IPlayer</c> method)
+	 * 	with the number of calls and the time spent in them.
+	 */
+	public String[] getCallTimes();
+
+	/**
+	 * Resets all counters.
+	 */
+	public void reset();
+}
@@ -17,13 +17,81 @@
 
 package smartsound.player.events;
 
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A subscription to the <c>TimeEventHandler</c>. Instances are returned by
+ * <c>TimeEventHandler.add</c> and serve as handles to wake up or to remove
+ * the subscription later on.
+ */
 public class TimeEventTuple {
 	private ITimeEventListener listener;
 	private Object obj;
+	private final long period;
+	private final Object stripe;
+	private long deadline;
+	private final AtomicLong requestedDeadline = new AtomicLong(TimeEventHandler.NEVER);
+	private volatile boolean cancelled = false;
+
+	/**
+	 * The handler the tuple has been added to.
+	 */
+	volatile TimeEventHandler handler;
+
+	/**
+	 * <c>true</c> while the <c>TimeEventHandler</c> counts the tuple as a
+	 * subscription.
+	 */
+	boolean registered = false;
+
+	/**
+	 * Position in the <c>TimerWheel</c>. The level is -1 if the tuple is
+	 * not stored in the wheel.
+	 */
+	int wheelLevel = -1;
+	int wheelSlot;
+	TimeEventTuple wheelPrev;
+	TimeEventTuple wheelNext;
+
+	/**
+	 * The value returned by the listener during the current dispatch.
+	 */
+	long result;
+
+	/**
+	 * The time in nanoseconds the listener took during the current dispatch.
+	 */
+	long elapsed;
 	
 	public TimeEventTuple(ITimeEventListener listener, Object obj) {
+		this(listener, obj, 0);
+	}
+
+	/**
+	 * @param listener The listener.
+	 * @param obj An optional object which is passed to the listener.
+	 * @param period The time in milliseconds between two events or 0 for a
+	 * 	one-shot subscription.
+	 */
+	public TimeEventTuple(ITimeEventListener listener, Object obj, long period) {
+		this(listener, obj, period, null);
+	}
+
+	/**
+	 * @param listener The listener.
+	 * @param obj An optional object which is passed to the listener.
+	 * @param period The time in milliseconds between two events or 0 for a
+	 * 	one-shot subscription.
+	 * @param stripe An optional object grouping subscriptions which must be
+	 * 	informed one after another, e.g. all players of one
+	 * 	<c>PlayList</c>. Subscriptions of different stripes may be informed
+	 * 	in parallel.
+	 */
+	public TimeEventTuple(ITimeEventListener listener, Object obj, long period, Object stripe) {
 		this.listener = listener;
 		this.obj = obj;
+		this.period = period;
+		this.stripe = stripe;
 	}
 
 	public ITimeEventListener getListener() {
@@ -33,4 +101,60 @@ public class TimeEventTuple {
 	public Object getObj() {
 		return obj;
 	}
+
+	/**
+	 * @return The time in milliseconds between two events or 0 if this is
+	 * 	a one-shot subscription.
+	 */
+	public long getPeriod() {
+		return period;
+	}
+
+	/**
+	 * @return The stripe of this subscription or <c>null</c>.
+	 */
+	public Object getStripe() {
+		return stripe;
+	}
+
+	/**
+	 * @return The time (in milliseconds) when the listener is informed next.
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+
+	void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Remembers a wake up request. Only the earliest request is kept.
+	 * May be called from any thread.
+	 */
+	void requestDeadline(long deadline) {
+		long current;
+		do {
+			current = requestedDeadline.get();
+		} while (deadline < current && !requestedDeadline.compareAndSet(current, deadline));
+	}
+
+	/**
+	 * @return The earliest requested deadline since the last call or
+	 * 	<c>TimeEventHandler.NEVER</c>.
+	 */
+	long takeRequestedDeadline() {
+		return requestedDeadline.getAndSet(TimeEventHandler.NEVER);
+	}
+
+	/**
+	 * @return <c>true</c> if this subscription has been removed.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	void cancel() {
+		cancelled = true;
+	}
 }
@@ -0,0 +1,272 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player.events;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hierarchical timer wheel for <c>TimeEventTuple</c>s. The lowest level
+ * has slots of <c>TICK</c> milliseconds, each higher level covers a whole
+ * rotation of the level below with each of its slots. Tuples are moved down
+ * (cascaded) when their slot on a higher level is reached. Adding and
+ * removing a tuple takes constant time, no matter how many tuples are
+ * stored and how far away their deadlines are. This class is not thread
+ * safe and is only used by the thread of the <c>TimeEventHandler</c>.
+ * @author Andr Becker
+ *
+ */
+class TimerWheel {
+
+	/**
+	 * The resolution of the wheel in milliseconds.
+	 */
+	static final int TICK = 5;
+
+	private static final int BITS = 6;
+	private static final int SIZE = 1 << BITS;
+	private static final int MASK = SIZE - 1;
+	private static final int LEVELS = 4;
+
+	/**
+	 * Doubly linked lists of tuples per level and slot. The additional last
+	 * level holds a single list of tuples beyond the range of the wheel.
+	 */
+	private final TimeEventTuple[][] slots = new TimeEventTuple[LEVELS + 1][SIZE];
+	private final int[] levelCounts = new int[LEVELS + 1];
+	private int size = 0;
+
+	/**
+	 * The next tick to be processed.
+	 */
+	private long currentTick;
+
+	/**
+	 * Creates an empty timer wheel.
+	 * @param now The current time in milliseconds.
+	 */
+	TimerWheel(long now) {
+		currentTick = now / TICK;
+	}
+
+	/**
+	 * @return The number of tuples in the wheel.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Adds a tuple, using its current deadline. Tuples with the deadline
+	 * <c>TimeEventHandler.NEVER</c> are not stored at all.
+	 * @param tuple The tuple.
+	 */
+	void add(TimeEventTuple tuple) {
+		long deadline = tuple.getDeadline();
+		if (deadline >= TimeEventHandler.NEVER - TICK) {
+			return;
+		}
+		long tick = (deadline + TICK - 1) / TICK;
+		long delta = tick - currentTick;
+		if (delta < 0) {
+			tick = currentTick;
+			delta = 0;
+		}
+
+		int level = 0;
+		while (level < LEVELS && delta >= 1L << (BITS * (level + 1))) {
+			level++;
+		}
+		if (level == LEVELS) {
+			link(tuple, LEVELS, 0);
+		} else {
+			link(tuple, level, (int) ((tick >>> (BITS * level)) & MASK));
+		}
+	}
+
+	/**
+	 * Removes a tuple. Nothing happens if the tuple is not in the wheel.
+	 * @param tuple The tuple.
+	 */
+	void remove(TimeEventTuple tuple) {
+		if (tuple.wheelLevel < 0) {
+			return;
+		}
+		if (tuple.wheelPrev != null) {
+			tuple.wheelPrev.wheelNext = tuple.wheelNext;
+		} else {
+			slots[tuple.wheelLevel][tuple.wheelSlot] = tuple.wheelNext;
+		}
+		if (tuple.wheelNext != null) {
+			tuple.wheelNext.wheelPrev = tuple.wheelPrev;
+		}
+		levelCounts[tuple.wheelLevel]--;
+		size--;
+		tuple.wheelLevel = -1;
+		tuple.wheelPrev = null;
+		tuple.wheelNext = null;
+	}
+
+	/**
+	 * Changes the deadline of a tuple.
+	 * @param tuple The tuple.
+	 * @param deadline The new deadline.
+	 */
+	void update(TimeEventTuple tuple, long deadline) {
+		remove(tuple);
+		tuple.setDeadline(deadline);
+		add(tuple);
+	}
+
+	/**
+	 * Moves the wheel to a new current time, e.g. after the clock has been
+	 * exchanged. All tuples are sorted in again, keeping their deadlines.
+	 * Takes time linear in the number of tuples.
+	 * @param now The current time in milliseconds.
+	 */
+	void rebase(long now) {
+		List<TimeEventTuple> tuples = new ArrayList<TimeEventTuple>(size);
+		TimeEventTuple tuple;
+		for (int level = 0; level <= LEVELS; level++) {
+			for (int slot = 0; slot < SIZE; slot++) {
+				while ((tuple = slots[level][slot]) != null) {
+					remove(tuple);
+					tuples.add(tuple);
+				}
+			}
+		}
+		currentTick = now / TICK;
+		for (TimeEventTuple t : tuples) {
+			add(t);
+		}
+	}
+
+	/**
+	 * Removes all tuples which are due at a given time.
+	 * @param now The current time in milliseconds.
+	 * @param expired The list the due tuples are added to.
+	 */
+	void advance(long now, List<TimeEventTuple> expired) {
+		long target = now / TICK;
+		int index;
+		while (currentTick <= target) {
+			if (size == 0) {
+				currentTick = target + 1;
+				break;
+			}
+			index = (int) (currentTick & MASK);
+			if (index == 0) {
+				cascade(1);
+			} else if (levelCounts[0] == 0) {
+				// Nothing to do until the next rotation begins
+				currentTick = Math.min((currentTick | MASK) + 1, target + 1);
+				continue;
+			}
+
+			TimeEventTuple tuple = slots[0][index];
+			TimeEventTuple next;
+			while (tuple != null) {
+				next = tuple.wheelNext;
+				remove(tuple);
+				expired.add(tuple);
+				tuple = next;
+			}
+			currentTick++;
+		}
+	}
+
+	private void cascade(int level) {
+		int index = 0;
+		if (level < LEVELS) {
+			index = (int) ((currentTick >>> (BITS * level)) & MASK);
+			if (index == 0) {
+				cascade(level + 1);
+			}
+		}
+		if (levelCounts[level] == 0) {
+			return;
+		}
+
+		TimeEventTuple tuple = slots[level][index];
+		TimeEventTuple next;
+		while (tuple != null) {
+			next = tuple.wheelNext;
+			remove(tuple);
+			add(tuple);
+			tuple = next;
+		}
+	}
+
+	/**
+	 * @return The time in milliseconds when <c>advance</c> has to be called
+	 * 	next, either because tuples are due or because tuples have to be
+	 * 	moved to a lower level. <c>TimeEventHandler.NEVER</c> if the wheel
+	 * 	is empty.
+	 */
+	long nextDeadline() {
+		if (size == 0) {
+			return TimeEventHandler.NEVER;
+		}
+
+		long best = Long.MAX_VALUE;
+		if (levelCounts[0] > 0) {
+			for (long tick = currentTick; tick < currentTick + SIZE; tick++) {
+				if (slots[0][(int) (tick & MASK)] != null) {
+					best = tick;
+					break;
+				}
+			}
+		}
+
+		for (int level = 1; level <= LEVELS; level++) {
+			if (levelCounts[level] == 0) {
+				continue;
+			}
+			int shift = BITS * level;
+			long block = currentTick >>> shift;
+			if ((currentTick & ((1L << shift) - 1)) != 0) {
+				block++;
+			}
+			if (level == LEVELS) {
+				best = Math.min(best, block << shift);
+				continue;
+			}
+			for (long b = block; b < block + SIZE; b++) {
+				if (slots[level][(int) (b & MASK)] != null) {
+					best = Math.min(best, b << shift);
+					break;
+				}
+			}
+		}
+		return best * TICK;
+	}
+
+	private void link(TimeEventTuple tuple, int level, int slot) {
+		TimeEventTuple head = slots[level][slot];
+		tuple.wheelLevel = level;
+		tuple.wheelSlot = slot;
+		tuple.wheelPrev = null;
+		tuple.wheelNext = head;
+		if (head != null) {
+			head.wheelPrev = tuple;
+		}
+		slots[level][slot] = tuple;
+		levelCounts[level]++;
+		size++;
+	}
+}
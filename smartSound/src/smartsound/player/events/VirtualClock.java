@@ -0,0 +1,70 @@
+/* 
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player.events;
+
+/**
+ * An <c>IClock</c> which only moves when it is told to. While a virtual
+ * clock is installed in the <c>TimeEventHandler</c>, time events are no
+ * longer dispatched in real time but by calls to
+ * <c>TimeEventHandler.advanceTo</c>, which lets simulations run much faster
+ * than real time.
+ * @author Andr Becker
+ *
+ */
+public class VirtualClock implements IClock {
+
+	private volatile long time;
+
+	/**
+	 * Creates a virtual clock starting at the current system time, so that
+	 * deadlines of existing subscriptions keep their meaning.
+	 */
+	public VirtualClock() {
+		this(System.currentTimeMillis());
+	}
+
+	/**
+	 * @param time The start time in milliseconds. Must be positive.
+	 */
+	public VirtualClock(long time) {
+		if (time <= 0) {
+			throw new IllegalArgumentException("The start time must be positive");
+		}
+		this.time = time;
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return time;
+	}
+
+	@Override
+	public long nanoTime() {
+		return time * 1000000L;
+	}
+
+	/**
+	 * Moves the clock forward. The clock never moves backwards.
+	 * @param time The new time in milliseconds.
+	 */
+	void setTime(long time) {
+		if (time > this.time) {
+			this.time = time;
+		}
+	}
+}
@@ -0,0 +1,370 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player.simulation;
+
+import smartsound.player.events.ITimeEventListener;
+import smartsound.player.events.TimeEventHandler;
+import smartsound.player.events.TimeEventTuple;
+import smartsound.plugins.player.IPlayer;
+import smartsound.plugins.player.IPlayerListener;
+import smartsound.plugins.player.ISound;
+import smartsound.plugins.player.NativeResource;
+import smartsound.plugins.player.NativeResourceTracker;
+import smartsound.plugins.player.PlayerEventSupport;
+
+/**
+ * An <c>IPlayer</c> of the <c>SimulatedSoundEngine</c>. Its play position
+ * advances with the engine's clock while it is playing. Player events are
+ * sent and a queued successor is started by time events at the points in
+ * (virtual) time when the end, a marker or the successor's position is
+ * reached.
+ * @author Andr Becker
+ *
+ */
+public class SimulatedPlayer implements IPlayer, ITimeEventListener {
+
+	private final SimulatedSoundEngine engine;
+	private final ISound sound;
+	private final int length;
+	private float volume = 1.0f;
+	private float slideFrom;
+	private float slideTo;
+	private long slideStart;
+	private int slideDuration = 0;
+	private float pan = 0;
+	private float speed = 1.0f;
+	private boolean started = false;
+	private boolean paused = false;
+	private boolean stopped = false;
+	private double position = 0;
+	private long lastUpdate;
+	private final PlayerEventSupport events = new PlayerEventSupport(this);
+	private TimeEventTuple timeEvent;
+	private double eventPosition = 0;
+	private SimulatedPlayer successor;
+	private int successorPosition;
+	private volatile SimulatedPlayer predecessor;
+	private final NativeResource handle;
+
+	SimulatedPlayer(final SimulatedSoundEngine engine, final ISound sound, final int length) {
+		this.engine = engine;
+		this.sound = sound;
+		this.length = length;
+		handle = new SimulatedHandle(this, engine.getResourceTracker(), sound.getFilePath());
+	}
+
+	/**
+	 * Advances the play position up to the current time of the clock. If
+	 * the position of the queued successor is passed, the successor is
+	 * started as if it had been started exactly then.
+	 */
+	private void update() {
+		long now = engine.getClock().currentTimeMillis();
+		if (started && !paused && !stopped) {
+			long successorTime = getTimeAt(successorPosition);
+			position = Math.min(length, position + (now - lastUpdate) * (double) speed);
+			if (successor != null && position >= successorPosition) {
+				SimulatedPlayer next = successor;
+				successor = null;
+				next.startAt(successorTime);
+			}
+		}
+		lastUpdate = now;
+	}
+
+	/**
+	 * @return <c>true</c> if <c>play</c> has been called at least once.
+	 */
+	public synchronized boolean isStarted() {
+		return started;
+	}
+
+	@Override
+	public ISound getPlayListEntry() {
+		return sound;
+	}
+
+	@Override
+	public void play() {
+		SimulatedPlayer queuedBy = predecessor;
+		if (queuedBy != null) {
+			// The predecessor starts this player first if it is due
+			queuedBy.getPlayPosition();
+		}
+		synchronized (this) {
+			predecessor = null;
+			update();
+			started = true;
+			paused = false;
+			scheduleEvent();
+		}
+	}
+
+	/**
+	 * Starts the player as if it had been started at a given time.
+	 * @param time The start time, not after the current time.
+	 */
+	private synchronized void startAt(final long time) {
+		predecessor = null;
+		update();
+		started = true;
+		paused = false;
+		lastUpdate = time;
+		update();
+		scheduleEvent();
+	}
+
+	@Override
+	public synchronized void pause() {
+		update();
+		paused = true;
+		scheduleEvent();
+	}
+
+	@Override
+	public synchronized boolean getPaused() {
+		return paused;
+	}
+
+	@Override
+	public synchronized void stop() {
+		update();
+		stopped = true;
+		scheduleEvent();
+	}
+
+	@Override
+	public void release() {
+		stop();
+		handle.release();
+	}
+
+	/**
+	 * @return <c>true</c> if the player has been released.
+	 */
+	public boolean isReleased() {
+		return handle.isReleased();
+	}
+
+	@Override
+	public synchronized float getVolume() {
+		if (slideDuration > 0) {
+			long elapsed = engine.getClock().currentTimeMillis() - slideStart;
+			if (elapsed >= slideDuration) {
+				volume = slideTo;
+				slideDuration = 0;
+			} else {
+				volume = slideFrom + (slideTo - slideFrom) * elapsed / slideDuration;
+			}
+		}
+		return volume;
+	}
+
+	@Override
+	public synchronized void setVolume(final float volume) {
+		this.volume = volume;
+		slideDuration = 0;
+	}
+
+	@Override
+	public synchronized boolean slideVolume(final float volume, final int duration) {
+		if (!engine.isVolumeSlideSupported()) {
+			return false;
+		}
+		slideFrom = getVolume();
+		slideTo = volume;
+		slideStart = engine.getClock().currentTimeMillis();
+		slideDuration = duration;
+		if (duration <= 0) {
+			this.volume = volume;
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized float getPan() {
+		return pan;
+	}
+
+	@Override
+	public synchronized void setPan(final float pan) {
+		this.pan = pan;
+	}
+
+	@Override
+	public synchronized boolean isFinished() {
+		update();
+		return stopped || position >= length;
+	}
+
+	@Override
+	public synchronized int getPlayPosition() {
+		update();
+		return (int) position;
+	}
+
+	@Override
+	public synchronized void setPlayPosition(final int position) {
+		update();
+		this.position = Math.max(0, Math.min(length, position));
+		eventPosition = this.position;
+		scheduleEvent();
+	}
+
+	@Override
+	public synchronized float getPlaybackSpeed() {
+		return speed;
+	}
+
+	@Override
+	public synchronized void setPlaybackSpeed(final float speed) {
+		update();
+		this.speed = speed;
+		scheduleEvent();
+	}
+
+	@Override
+	public int getPlayLength() {
+		return length;
+	}
+
+	@Override
+	public synchronized boolean addPlayerListener(final IPlayerListener listener) {
+		if (!engine.isPlayerEventsSupported()) {
+			return false;
+		}
+		events.addListener(listener);
+		scheduleEvent();
+		return true;
+	}
+
+	@Override
+	public void removePlayerListener(final IPlayerListener listener) {
+		events.removeListener(listener);
+	}
+
+	@Override
+	public synchronized void addMarker(final int position) {
+		events.addMarker(position);
+		scheduleEvent();
+	}
+
+	@Override
+	public void removeMarker(final int position) {
+		events.removeMarker(position);
+	}
+
+	@Override
+	public synchronized boolean queueSuccessor(final IPlayer successor, final int position) {
+		if (this.successor != null) {
+			this.successor.predecessor = null;
+			this.successor = null;
+		}
+		if (successor == null) {
+			scheduleEvent();
+			return true;
+		}
+		if (!engine.isSuccessorQueueingSupported() || !(successor instanceof SimulatedPlayer)) {
+			return false;
+		}
+		this.successor = (SimulatedPlayer) successor;
+		this.successor.predecessor = this;
+		successorPosition = Math.max(0, Math.min(length, position));
+		scheduleEvent();
+		return true;
+	}
+
+	/**
+	 * Subscribes a time event for the point in time when the next marker,
+	 * the end or the position of the queued successor is reached.
+	 */
+	private void scheduleEvent() {
+		TimeEventHandler.remove(timeEvent);
+		timeEvent = null;
+		long next = getNextEventTime();
+		if (next != TimeEventHandler.NEVER) {
+			timeEvent = TimeEventHandler.getInstance().add(this, null, next);
+		}
+	}
+
+	private long getNextEventTime() {
+		if (!started || paused || stopped || speed <= 0) {
+			return TimeEventHandler.NEVER;
+		}
+		int target = -1;
+		if (events.hasListeners()) {
+			target = events.getNextMarker((int) eventPosition);
+			if (target < 0 || target > length) {
+				target = length;
+			}
+		}
+		if (successor != null && (target < 0 || successorPosition < target)) {
+			target = successorPosition;
+		}
+		if (target < 0) {
+			return TimeEventHandler.NEVER;
+		}
+		return getTimeAt(target);
+	}
+
+	/**
+	 * @param target A play position in milliseconds.
+	 * @return The point in time when the position is reached, as of the
+	 * 	last update.
+	 */
+	private long getTimeAt(final int target) {
+		return lastUpdate + (long) Math.ceil(Math.max(0, target - position) / speed);
+	}
+
+	@Override
+	public synchronized long receiveTimeEvent(final long currentTime, final Object obj) {
+		update();
+		int marker = events.getNextMarker((int) eventPosition);
+		while (marker >= 0 && marker <= position) {
+			events.fireMarkerReached(marker);
+			marker = events.getNextMarker(marker);
+		}
+		eventPosition = position;
+		if (!stopped && position >= length) {
+			events.fireFinished();
+			timeEvent = null;
+			return TimeEventHandler.UNSUBSCRIBE;
+		}
+		long next = getNextEventTime();
+		if (next == TimeEventHandler.NEVER) {
+			timeEvent = null;
+			return TimeEventHandler.UNSUBSCRIBE;
+		}
+		return next;
+	}
+
+	/**
+	 * Stands in for the stream handle a real engine would hold, so that
+	 * the handle lifecycle can be checked in simulations.
+	 */
+	private static class SimulatedHandle extends NativeResource {
+
+		SimulatedHandle(final Object owner, final NativeResourceTracker tracker, final String filePath) {
+			super(owner, tracker, "simulated stream of " + filePath);
+		}
+
+		@Override
+		protected void free() {
+		}
+	}
+}
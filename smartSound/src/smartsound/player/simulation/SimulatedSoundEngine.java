@@ -0,0 +1,251 @@
+/*
+ *	Copyright (C) 2012 Andr Becker
+ *	
+ *	This program is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	any later version.
+ *	
+ *	This program is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *	
+ *	You should have received a copy of the GNU General Public License
+ *	along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package smartsound.player.simulation;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import smartsound.player.events.IClock;
+import smartsound.plugins.player.EngineCapability;
+import smartsound.plugins.player.IPlayer;
+import smartsound.plugins.player.ISound;
+import smartsound.plugins.player.NativeResourceTracker;
+import smartsound.plugins.player.SoundEngine;
+
+/**
+ * A <c>SoundEngine</c> which does not play anything but simulates players
+ * advancing with an <c>IClock</c>. Together with a <c>VirtualClock</c> this
+ * allows to run playlists much faster than real time without audio
+ * hardware, e.g. to check the fade, overlap, chain and repeat logic.
+ * Install it with <c>SoundEngineSingleton.setInstance</c>.
+ * @author Andr Becker
+ *
+ */
+public class SimulatedSoundEngine extends SoundEngine {
+
+	private final IClock clock;
+	private final int defaultLength;
+	private final Map<String, Integer> lengths = new HashMap<String, Integer>();
+	private final List<SimulatedPlayer> players = new LinkedList<SimulatedPlayer>();
+	private float masterVolume = 1.0f;
+	private int createdPlayers = 0;
+	private final NativeResourceTracker tracker = new NativeResourceTracker("Simulation");
+	private volatile boolean volumeSlideSupported = true;
+	private volatile boolean playerEventsSupported = true;
+	private volatile boolean successorQueueingSupported = true;
+
+	/**
+	 * @param clock The clock the players advance with.
+	 * @param defaultLength The length in milliseconds of sounds without an
+	 * 	explicitly set length.
+	 */
+	public SimulatedSoundEngine(final IClock clock, final int defaultLength) {
+		this.clock = clock;
+		this.defaultLength = defaultLength;
+	}
+
+	/**
+	 * Sets the simulated length of a sound file.
+	 * @param filePath The path of the sound file.
+	 * @param length The length in milliseconds.
+	 */
+	public synchronized void setSoundLength(final String filePath, final int length) {
+		lengths.put(filePath, length);
+	}
+
+	/**
+	 * @param sound The sound.
+	 * @return The simulated length of the sound in milliseconds.
+	 */
+	public synchronized int getSoundLength(final ISound sound) {
+		Integer length = lengths.get(sound.getFilePath());
+		return length == null ? defaultLength : length;
+	}
+
+	IClock getClock() {
+		return clock;
+	}
+
+	NativeResourceTracker getResourceTracker() {
+		return tracker;
+	}
+
+	@Override
+	public int getLiveHandleCount() {
+		return tracker.getLiveCount();
+	}
+
+	/**
+	 * Decides whether the players support <c>IPlayer.slideVolume</c>, so
+	 * that both the engine-side and the Java fades can be simulated.
+	 * @param supported <c>true</c> if volume slides are supported.
+	 */
+	public void setVolumeSlideSupported(final boolean supported) {
+		volumeSlideSupported = supported;
+	}
+
+	/**
+	 * @return <c>true</c> if the players support volume slides.
+	 */
+	public boolean isVolumeSlideSupported() {
+		return volumeSlideSupported;
+	}
+
+	/**
+	 * Decides whether the players send player events or have to be polled.
+	 * @param supported <c>true</c> if player events are supported.
+	 */
+	public void setPlayerEventsSupported(final boolean supported) {
+		playerEventsSupported = supported;
+	}
+
+	/**
+	 * @return <c>true</c> if the players send player events.
+	 */
+	public boolean isPlayerEventsSupported() {
+		return playerEventsSupported;
+	}
+
+	/**
+	 * Decides whether the players start a queued successor by themselves.
+	 * @param supported <c>true</c> if <c>IPlayer.queueSuccessor</c> is
+	 * 	supported.
+	 */
+	public void setSuccessorQueueingSupported(final boolean supported) {
+		successorQueueingSupported = supported;
+	}
+
+	/**
+	 * @return <c>true</c> if the players start a queued successor by
+	 * 	themselves.
+	 */
+	public boolean isSuccessorQueueingSupported() {
+		return successorQueueingSupported;
+	}
+
+	/**
+	 * The capabilities follow the simulated features; the speed can always
+	 * be changed.
+	 */
+	@Override
+	public Set<EngineCapability> getCapabilities() {
+		Set<EngineCapability> capabilities = EnumSet.of(EngineCapability.PLAYBACK_SPEED);
+		if (volumeSlideSupported) {
+			capabilities.add(EngineCapability.VOLUME_SLIDES);
+		}
+		if (playerEventsSupported) {
+			capabilities.add(EngineCapability.PLAYER_EVENTS);
+		}
+		if (successorQueueingSupported) {
+			capabilities.add(EngineCapability.SUCCESSOR_QUEUE);
+		}
+		return capabilities;
+	}
+
+	@Override
+	public synchronized IPlayer getPlayer2D(final ISound entry) {
+		Iterator<SimulatedPlayer> it = players.iterator();
+		while (it.hasNext()) {
+			if (it.next().isFinished()) {
+				it.remove();
+			}
+		}
+		SimulatedPlayer player = new SimulatedPlayer(this, entry, getSoundLength(entry));
+		players.add(player);
+		createdPlayers++;
+		return player;
+	}
+
+	@Override
+	public IPlayer getPlayer3D(final ISound entry) {
+		return getPlayer2D(entry);
+	}
+
+	/**
+	 * Simulated players are created without any I/O, so they are created
+	 * by the calling thread. This keeps runs with a <c>VirtualClock</c>
+	 * reproducible.
+	 */
+	@Override
+	protected Executor getIOExecutor() {
+		return new Executor() {
+			@Override
+			public void execute(final Runnable command) {
+				command.run();
+			}
+		};
+	}
+
+	@Override
+	public synchronized void setMasterVolume(final float volume) {
+		masterVolume = volume;
+	}
+
+	/**
+	 * @return The master volume as value between 0 and 1.0.
+	 */
+	public synchronized float getMasterVolume() {
+		return masterVolume;
+	}
+
+	@Override
+	public synchronized void stopAllPlayers() {
+		for (SimulatedPlayer player : players) {
+			player.release();
+		}
+		players.clear();
+	}
+
+	@Override
+	public synchronized void setAllPlayersPaused(final boolean paused) {
+		for (SimulatedPlayer player : players) {
+			if (paused) {
+				player.pause();
+			} else if (player.getPaused()) {
+				player.play();
+			}
+		}
+	}
+
+	/**
+	 * @return The number of players which have been started and are not
+	 * 	finished yet.
+	 */
+	public synchronized int getActivePlayerCount() {
+		int count = 0;
+		for (SimulatedPlayer player : players) {
+			if (player.isStarted() && !player.isFinished()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return The number of players created by this engine.
+	 */
+	public synchronized int getCreatedPlayerCount() {
+		return createdPlayers;
+	}
+}
@@ -23,6 +23,7 @@ import java.util.UUID;
 import smartsound.common.IObserver;
 import smartsound.common.PropertyMap;
 import smartsound.common.Tuple;
+import smartsound.player.FadeCurve;
 import smartsound.player.ItemData;
 import smartsound.player.LoadingException;
 import smartsound.view.gui.GUIController;
@@ -80,6 +81,8 @@ public abstract class AbstractViewController
 
 	public abstract boolean isStopAfterEachSound(UUID uuid);
 
+	public abstract boolean isGapless(UUID uuid);
+
 	public abstract float getRandomizeVolumeFrom(UUID uuid);
 
 	public abstract float getRandomizeVolumeTo(UUID uuid);
@@ -90,6 +93,8 @@ public abstract class AbstractViewController
 
 	public abstract int getOverlap(UUID uuid);
 
+	public abstract FadeCurve getFadeCurve(UUID uuid);
+
 	public abstract float getVolume(UUID uuid);
 
 	public abstract Action getPlayAction(UUID uuid, int i, String description);
@@ -104,6 +109,8 @@ public abstract class AbstractViewController
 
 	public abstract Action getStopAfterEachSoundAction(UUID uuid, String description);
 
+	public abstract Action getGaplessAction(UUID uuid, String description);
+
 	public abstract Action getFadeInAction(UUID uuid, String description);
 
 	public abstract Action getFadeOutAction(UUID uuid, String description);
@@ -112,12 +119,16 @@ public abstract class AbstractViewController
 
 	public abstract Action getOverlapAction(UUID uuid, String description);
 
+	public abstract Action getFadeCurveAction(UUID uuid, String description);
+
 	public abstract Action getVolumeAction(UUID uuid, String description);
 
 	public abstract Action getSaveAction();
 
 	public abstract Action getLoadAction();
 
+	public abstract Action getRenderAction(UUID uuid, String description);
+
 	public abstract Action getStopAction(UUID uuid, String description);
 
 	public abstract Action getPlayIndexAction(UUID uuid, String description);
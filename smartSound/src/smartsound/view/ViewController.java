@@ -17,7 +17,9 @@
 
 package smartsound.view;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -27,11 +29,13 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import smartsound.common.IObserver;
 import smartsound.common.PropertyMap;
 import smartsound.common.Tuple;
 import smartsound.controller.AbstractController;
+import smartsound.player.FadeCurve;
 import smartsound.player.ItemData;
 import smartsound.player.LoadingException;
 import smartsound.view.Layout.Type;
@@ -46,6 +50,8 @@ public class ViewController extends AbstractViewController implements IObserver
 	private final Map<UUID, Layout> layoutMap = new HashMap<UUID, Layout>();
 	private final Map<UUID, Action> uuidToActionMap = new HashMap<UUID, Action>();
 	private final Map<UUID, String> commentMap = new HashMap<UUID, String>();
+	private final Set<UUID> indexedPlayLists = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+	private volatile Map<UUID, Set<UUID>> armedItems = new HashMap<UUID, Set<UUID>>();
 	private Layout rootLayout;
 
 	private static final Map<String, Class<?>> primitiveTypesMap = new HashMap<String,Class<?>>();
@@ -259,6 +265,12 @@ public class ViewController extends AbstractViewController implements IObserver
 		return controller.isStopAfterEachSound(playListUUID);
 	}
 
+	@Override
+	public boolean isGapless(final UUID playListUUID)
+	{
+		return controller.isGapless(playListUUID);
+	}
+
 	@Override
 	public float getRandomizeVolumeFrom(final UUID playListUUID)
 	{
@@ -289,6 +301,12 @@ public class ViewController extends AbstractViewController implements IObserver
 		return controller.getOverlap(playListUUID);
 	}
 
+	@Override
+	public FadeCurve getFadeCurve(final UUID playListUUID)
+	{
+		return controller.getFadeCurve(playListUUID);
+	}
+
 	@Override
 	public float getVolume(final UUID playListUUID)
 	{
@@ -451,6 +469,32 @@ public class ViewController extends AbstractViewController implements IObserver
 		controller.setStopAfterEachSound(playListUUID, stopAfterEachSound);
 	}
 
+	@Override
+	public Action getGaplessAction(final UUID playListUUID, final String description)
+	{
+		Method method;
+		try
+		{
+			method = ViewController.class.getMethod("setGapless", new Class[] {
+					UUID.class, boolean.class
+			});
+		}
+		catch(Exception e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+		Object params[] = {
+				playListUUID
+		};
+		return new Action(method, this, description, params);
+	}
+
+	public void setGapless(final UUID playListUUID, final boolean gapless)
+	{
+		controller.setGapless(playListUUID, gapless);
+	}
+
 	@Override
 	public Action getFadeInAction(final UUID playListUUID, final String description)
 	{
@@ -529,6 +573,32 @@ public class ViewController extends AbstractViewController implements IObserver
 		controller.setOverlap(playListUUID, value);
 	}
 
+	@Override
+	public Action getFadeCurveAction(final UUID playListUUID, final String description)
+	{
+		Method method;
+		try
+		{
+			method = ViewController.class.getMethod("setFadeCurve", new Class[] {
+					UUID.class, FadeCurve.class
+			});
+		}
+		catch(Exception e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+		Object params[] = {
+				playListUUID
+		};
+		return new Action(method, this, description, params);
+	}
+
+	public void setFadeCurve(final UUID playListUUID, final FadeCurve fadeCurve)
+	{
+		controller.setFadeCurve(playListUUID, fadeCurve);
+	}
+
 	@Override
 	public Action getVolumeAction(final UUID playListUUID, final String description)
 	{
@@ -603,6 +673,32 @@ public class ViewController extends AbstractViewController implements IObserver
 		controller.load(filePath);
 	}
 
+	@Override
+	public Action getRenderAction(final UUID playListSetUUID, final String description)
+	{
+		Method method;
+		try
+		{
+			method = ViewController.class.getMethod("render", new Class[] {
+					UUID.class, String.class, int.class
+			});
+		}
+		catch(Exception e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+		Object params[] = {
+				playListSetUUID
+		};
+		return new Action(method, this, description, params);
+	}
+
+	public void render(final UUID playListSetUUID, final String filePath, final int length) throws IOException
+	{
+		controller.render(playListSetUUID, filePath, length);
+	}
+
 	@Override
 	public Action getStopAction(final UUID playListUUID, final String description)
 	{
@@ -715,6 +811,7 @@ public class ViewController extends AbstractViewController implements IObserver
 		}
 		subMap.get(hotkey).add(action);
 		uuidToActionMap.put(action.getUUID(), action);
+		updateArmedItems();
 	}
 
 	@Override
@@ -796,6 +893,7 @@ public class ViewController extends AbstractViewController implements IObserver
 	@Override
 	public void removeAllHotkeys() {
 		hotkeyMap.clear();
+		updateArmedItems();
 	}
 
 	@Override
@@ -815,6 +913,47 @@ public class ViewController extends AbstractViewController implements IObserver
 
 		if (hotkeyMap.get(playListSetUUID).isEmpty())
 			hotkeyMap.remove(playListSetUUID);
+		updateArmedItems();
+	}
+
+	/**
+	 * Keeps the players of all items which are played by a hotkey opened,
+	 * so pressing the hotkey starts the sound without delay. Hotkeys which
+	 * play an item by its index are resolved again whenever their list
+	 * changes.
+	 */
+	private void updateArmedItems() {
+		Map<UUID, Set<UUID>> armedItems = new HashMap<UUID, Set<UUID>>();
+		for (Map<String, Set<Action>> actionSetMap : hotkeyMap.values())
+			for (Set<Action> actionSet : actionSetMap.values())
+				for (Action action : actionSet) {
+					if (action == null || !action.getMethod().getName().equals("play")
+							|| action.getNoOfDefaultParams() != 2)
+						continue;
+
+					UUID playListUUID = (UUID) action.getDefaultParam(0);
+					Object item = action.getDefaultParam(1);
+					UUID itemUUID = null;
+					if (item instanceof UUID) {
+						itemUUID = (UUID) item;
+					} else if (item instanceof Integer) {
+						if (indexedPlayLists.add(playListUUID))
+							controller.addObserver(this, playListUUID);
+						ItemData itemData = controller.getItemData(playListUUID, (Integer) item);
+						itemUUID = itemData == null ? null : itemData.getUUID();
+					}
+					if (itemUUID == null)
+						continue;
+
+					if (!armedItems.containsKey(playListUUID))
+						armedItems.put(playListUUID, new HashSet<UUID>());
+					armedItems.get(playListUUID).add(itemUUID);
+				}
+		if (armedItems.equals(this.armedItems))
+			return;
+
+		this.armedItems = armedItems;
+		controller.setArmedItems(armedItems);
 	}
 
 	@Override
@@ -1012,6 +1151,7 @@ public class ViewController extends AbstractViewController implements IObserver
 					if (entry.getValue().isEmpty()) {
 						hotkeyMap.remove(entry.getKey());
 					}
+					updateArmedItems();
 					return;
 				}
 			}
@@ -1080,6 +1220,8 @@ public class ViewController extends AbstractViewController implements IObserver
 
 	@Override
 	public void reloadView() {
+		// The play lists are complete now
+		updateArmedItems();
 		for (GUIController gui : guis) {
 			gui.reload();
 		}
@@ -1112,6 +1254,11 @@ public class ViewController extends AbstractViewController implements IObserver
 			return;
 		}
 
+		if (indexedPlayLists.contains(uuid)) {
+			updateArmedItems();
+			return;
+		}
+
 		refreshLayout(uuid);
 	}
 
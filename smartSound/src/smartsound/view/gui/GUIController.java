@@ -44,6 +44,7 @@ import javax.swing.KeyStroke;
 
 import smartsound.common.IObserver;
 import smartsound.common.Tuple;
+import smartsound.player.FadeCurve;
 import smartsound.player.ItemData;
 import smartsound.settings.Global;
 import smartsound.view.AbstractViewController;
@@ -169,6 +170,10 @@ public class GUIController implements IGUILadder {
 		return viewController.isStopAfterEachSound(playListUUID);
 	}
 
+	public boolean isGapless(final UUID playListUUID) {
+		return viewController.isGapless(playListUUID);
+	}
+
 	public float getRandomizeVolumeFrom(final UUID playListUUID) {
 		return viewController.getRandomizeVolumeFrom(playListUUID);
 	}
@@ -181,6 +186,10 @@ public class GUIController implements IGUILadder {
 		return viewController.getOverlap(playListUUID);
 	}
 
+	public FadeCurve getFadeCurve(final UUID playListUUID) {
+		return viewController.getFadeCurve(playListUUID);
+	}
+
 	public float getVolume(final UUID playListUUID) {
 		return viewController.getVolume(playListUUID);
 	}
@@ -225,6 +234,10 @@ public class GUIController implements IGUILadder {
 		return viewController.getStopAfterEachSoundAction(playListUUID, description);
 	}
 
+	public Action getGaplessAction(final UUID playListUUID, final String description) {
+		return viewController.getGaplessAction(playListUUID, description);
+	}
+
 	public Action getFadeInAction(final UUID playListUUID, final String description) {
 		return viewController.getFadeInAction(playListUUID, description);
 	}
@@ -237,6 +250,10 @@ public class GUIController implements IGUILadder {
 		return viewController.getOverlapAction(playListUUID, description);
 	}
 
+	public Action getFadeCurveAction(final UUID playListUUID, final String description) {
+		return viewController.getFadeCurveAction(playListUUID, description);
+	}
+
 	public Action getVolumeAction(final UUID playListUUID, final String description) {
 		return viewController.getVolumeAction(playListUUID, description);
 	}
@@ -249,6 +266,10 @@ public class GUIController implements IGUILadder {
 		return viewController.getLoadAction();
 	}
 
+	public Action getRenderAction(final UUID playListSetUUID, final String description) {
+		return viewController.getRenderAction(playListSetUUID, description);
+	}
+
 	public Action getStopAction(final UUID playListUUID, final String description) {
 		return viewController.getStopAction(playListUUID, description);
 	}
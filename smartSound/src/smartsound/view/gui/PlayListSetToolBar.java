@@ -25,6 +25,7 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.io.File;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
@@ -32,11 +33,14 @@ import java.util.UUID;
 import javax.swing.AbstractAction;
 import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
+import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
+import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
 import javax.swing.JToolBar;
 import javax.swing.SwingUtilities;
+import javax.swing.filechooser.FileFilter;
 
 import smartsound.common.Tuple;
 import smartsound.view.Action;
@@ -87,6 +91,41 @@ public class PlayListSetToolBar extends JToolBar implements IGUILadder{
 				hotkeyMenu.add(new TitledSeparator("Add Hotkeys", false));
 				menu.add(hotkeyMenu);
 
+				menu.add(new JMenuItem(new AbstractAction("Render to file...") {
+					@Override
+					public void actionPerformed(final ActionEvent e) {
+						JFileChooser fileChooser = new JFileChooser();
+						fileChooser.setFileFilter(new FileFilter() {
+							@Override
+							public boolean accept(final File file) {
+								return file.isDirectory() || file.getPath().endsWith(".wav");
+							}
+
+							@Override
+							public String getDescription() {
+								return "WAV files (*.wav)";
+							}
+						});
+						if (fileChooser.showSaveDialog(PlayListSetToolBar.this) != JFileChooser.APPROVE_OPTION)
+							return;
+						String path = fileChooser.getSelectedFile().getAbsolutePath();
+						if (!fileChooser.getSelectedFile().getName().contains("."))
+							path += ".wav";
+
+						// The length in seconds
+						Double seconds = UserInput.getInput(PlayListSetToolBar.this, 1, 3600, 1, 60);
+						final String filePath = path;
+						final int length = (int) (seconds.doubleValue() * 1000);
+						final Action action = getGUIController().getRenderAction(playListSetUUID, "Render");
+						// Rendering takes a while, so it does not block the GUI
+						new Thread(new Runnable() {
+							@Override
+							public void run() {
+								action.execute(filePath, length);
+							}
+						}, "Render").start();
+					}
+				}));
 
 				hotkeyMenu.add(new AddMenuItem(new AbstractAction("Play '" + getGUIController().getTitle(playListSetUUID) + "'") {
 					@Override
@@ -102,9 +102,9 @@ public class PlayListTransferHandler extends TransferHandler implements ITimeEve
 				PlayList list = (PlayList) t.getComponent();
 				if (currentTime == -1) {
 					lastPlayList = list;
-					TimeEventHandler.add(this, null);
+					TimeEventHandler.getInstance().addPeriodic(this, null, 250);
 				}
-				currentTime = System.currentTimeMillis(); 
+				currentTime = TimeEventHandler.getInstance().currentTimeMillis(); 
 				list.setDropLocation((JList.DropLocation) t.getDropLocation());
 				list.setDropAction(t.getDropAction());
 				list.repaint(20);
@@ -189,13 +189,13 @@ public class PlayListTransferHandler extends TransferHandler implements ITimeEve
 	}
 
 	@Override
-	public boolean receiveTimeEvent(final long currentTime, final Object obj) {
+	public long receiveTimeEvent(final long currentTime, final Object obj) {
 		if (this.currentTime == -1) {
 			if (lastPlayList != null) {
 				lastPlayList.setDropLocation(null);
 				lastPlayList.repaint(250);
 			}
-			return false;
+			return TimeEventHandler.UNSUBSCRIBE;
 		}
 		
 		if (currentTime - this.currentTime > 1000) {
@@ -203,7 +203,7 @@ public class PlayListTransferHandler extends TransferHandler implements ITimeEve
 			lastPlayList.repaint(250);
 		}
 		
-		return true;
+		return TimeEventHandler.NEXT_PERIOD;
 			
 	}
 }
@@ -23,6 +23,7 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
@@ -32,6 +33,7 @@ import java.util.UUID;
 
 import javax.swing.AbstractAction;
 import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
@@ -46,6 +48,7 @@ import javax.swing.event.ListDataEvent;
 import javax.swing.event.ListDataListener;
 
 import smartsound.common.Tuple;
+import smartsound.player.FadeCurve;
 import smartsound.view.Action;
 
 
@@ -64,9 +67,11 @@ public class SettingsPanel extends javax.swing.JPanel implements ListDataListene
 	private final Action randomizeVolumeFromAction;
 	private final Action randomizeVolumeToAction;
 	private final Action stopAfterEachSoundAction;
+	private final Action gaplessAction;
 	private final Action fadeInAction;
 	private final Action fadeOutAction;
 	private final Action overlapAction;
+	private final Action fadeCurveAction;
 
 
 	private final JCheckBox randomizeCheckBox = new JCheckBox();
@@ -75,6 +80,9 @@ public class SettingsPanel extends javax.swing.JPanel implements ListDataListene
 	private final JCheckBox stopAfterEachSoundCheckBox = new JCheckBox();
 	private final JLabel stopAfterEachSoundLabel = new JLabel("Stop after each sound");
 
+	private final JCheckBox gaplessCheckBox = new JCheckBox();
+	private final JLabel gaplessLabel = new JLabel("Gapless transitions");
+
 	private final JLabel playAtRandomVolumesLabel = new JLabel("Play at random volumes");
 	protected JSlider playAtRandomVolumesSliderFrom = new JSlider(0,100);
 	protected JLabel playAtRandomVolumesFromLabel = new JLabel(playAtRandomVolumesSliderFrom.getValue() + " %");
@@ -90,6 +98,9 @@ public class SettingsPanel extends javax.swing.JPanel implements ListDataListene
 	private final JLabel overlapLabel = new JLabel("Overlap");
 	private final JSpinner overlapSpinner = new JSpinner(new SpinnerNumberModel(0,0,9.9,0.1));
 
+	private final JLabel fadeCurveLabel = new JLabel("Fade curve");
+	private final JComboBox<FadeCurve> fadeCurveComboBox = new JComboBox<FadeCurve>(FadeCurve.values());
+
 	public SettingsPanel(final IGUILadder parent, final PlayListDataModel playListDataModel) {
 		super(new GridBagLayout());
 
@@ -103,9 +114,11 @@ public class SettingsPanel extends javax.swing.JPanel implements ListDataListene
 		randomizeVolumeFromAction = parent.getGUIController().getRandomizeVolumeFromAction(playListUUID, "Randomize volume minimum for " + playListUUID);
 		randomizeVolumeToAction = parent.getGUIController().getRandomizeVolumeToAction(playListUUID, "Randomize volume maximum for " + playListUUID);
 		stopAfterEachSoundAction = parent.getGUIController().getStopAfterEachSoundAction(playListUUID, "Stop after each sound for " + playListUUID);
+		gaplessAction = parent.getGUIController().getGaplessAction(playListUUID, "Gapless transitions for " + playListUUID);
 		fadeInAction = parent.getGUIController().getFadeInAction(playListUUID, "Set fade in for " + playListUUID);
 		fadeOutAction = parent.getGUIController().getFadeOutAction(playListUUID, "Set fade out for " + playListUUID);
 		overlapAction = parent.getGUIController().getOverlapAction(playListUUID, "Set overlapping for " + playListUUID);
+		fadeCurveAction = parent.getGUIController().getFadeCurveAction(playListUUID, "Set fade curve for " + playListUUID);
 
 
 		randomizeCheckBox.addChangeListener(new ChangeListener() {
@@ -132,6 +145,18 @@ public class SettingsPanel extends javax.swing.JPanel implements ListDataListene
 		stopAfterEachSoundCheckBox.setFocusable(false);
 		addMouseListenerToComponent(stopAfterEachSoundCheckBox);
 
+		gaplessCheckBox.addChangeListener(new ChangeListener() {
+			@Override
+			public void stateChanged(final ChangeEvent e) {
+				JCheckBox source = (JCheckBox) e.getSource();
+
+				if (!editing) gaplessAction.execute(source.isSelected());
+			}
+		});
+
+		gaplessCheckBox.setFocusable(false);
+		addMouseListenerToComponent(gaplessCheckBox);
+
 		playAtRandomVolumesSliderFrom.addChangeListener(new ChangeListener() {
 			@Override
 			public void stateChanged(final ChangeEvent e) {
@@ -207,6 +232,15 @@ public class SettingsPanel extends javax.swing.JPanel implements ListDataListene
 		overlapSpinner.setFocusable(false);
 		addMouseListenerToComponent(overlapSpinner);
 
+		fadeCurveComboBox.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				if (!editing) fadeCurveAction.execute(fadeCurveComboBox.getSelectedItem());
+			}
+		});
+		fadeCurveComboBox.setFocusable(false);
+		addMouseListenerToComponent(fadeCurveComboBox);
+
 
 		GridBagConstraints constraints = new GridBagConstraints();
 		constraints.insets = new Insets(0,5,0,0);
@@ -288,24 +322,40 @@ public class SettingsPanel extends javax.swing.JPanel implements ListDataListene
 		add(stopAfterEachSoundLabel, constraints);
 
 		constraints = new GridBagConstraints();
-		constraints.insets = new Insets(15,5,0,0);
+		constraints.insets = new Insets(0,5,0,0);
+		constraints.gridx = 0;
+		constraints.gridy = 5;
+		constraints.anchor = GridBagConstraints.LINE_START;
+		add(gaplessCheckBox, constraints);
+
+		constraints = new GridBagConstraints();
+		constraints.insets = new Insets(0,5,0,0);
 		constraints.gridx = 1;
 		constraints.gridy = 5;
 		constraints.anchor = GridBagConstraints.LINE_START;
+		constraints.gridwidth = 2;
+		constraints.fill = GridBagConstraints.HORIZONTAL;
+		add(gaplessLabel, constraints);
+
+		constraints = new GridBagConstraints();
+		constraints.insets = new Insets(15,5,0,0);
+		constraints.gridx = 1;
+		constraints.gridy = 6;
+		constraints.anchor = GridBagConstraints.LINE_START;
 		constraints.gridwidth = 1;
 		add(fadeInLabel, constraints);
 
 		constraints = new GridBagConstraints();
 		constraints.insets = new Insets(15,5,0,0);
 		constraints.gridx = 2;
-		constraints.gridy = 5;
+		constraints.gridy = 6;
 		constraints.anchor = GridBagConstraints.LINE_START;
 		add(fadeInSpinner, constraints);
 
 		constraints = new GridBagConstraints();
 		constraints.insets = new Insets(0,5,0,0);
 		constraints.gridx = 1;
-		constraints.gridy = 6;
+		constraints.gridy = 7;
 		constraints.anchor = GridBagConstraints.LINE_START;
 		constraints.gridwidth = 1;
 		add(fadeOutLabel, constraints);
@@ -313,14 +363,14 @@ public class SettingsPanel extends javax.swing.JPanel implements ListDataListene
 		constraints = new GridBagConstraints();
 		constraints.insets = new Insets(0,5,0,0);
 		constraints.gridx = 2;
-		constraints.gridy = 6;
+		constraints.gridy = 7;
 		constraints.anchor = GridBagConstraints.LINE_START;
 		add(fadeOutSpinner, constraints);
 
 		constraints = new GridBagConstraints();
 		constraints.insets = new Insets(0,5,0,0);
 		constraints.gridx = 1;
-		constraints.gridy = 7;
+		constraints.gridy = 8;
 		constraints.anchor = GridBagConstraints.LINE_START;
 		constraints.gridwidth = 1;
 		add(overlapLabel, constraints);
@@ -328,10 +378,25 @@ public class SettingsPanel extends javax.swing.JPanel implements ListDataListene
 		constraints = new GridBagConstraints();
 		constraints.insets = new Insets(0,5,0,0);
 		constraints.gridx = 2;
-		constraints.gridy = 7;
+		constraints.gridy = 8;
 		constraints.anchor = GridBagConstraints.LINE_START;
 		add(overlapSpinner, constraints);
 
+		constraints = new GridBagConstraints();
+		constraints.insets = new Insets(0,5,0,0);
+		constraints.gridx = 1;
+		constraints.gridy = 9;
+		constraints.anchor = GridBagConstraints.LINE_START;
+		constraints.gridwidth = 1;
+		add(fadeCurveLabel, constraints);
+
+		constraints = new GridBagConstraints();
+		constraints.insets = new Insets(0,5,0,0);
+		constraints.gridx = 2;
+		constraints.gridy = 9;
+		constraints.anchor = GridBagConstraints.LINE_START;
+		add(fadeCurveComboBox, constraints);
+
 		refreshValues();
 	}
 
@@ -339,11 +404,13 @@ public class SettingsPanel extends javax.swing.JPanel implements ListDataListene
 		editing = true;
 		randomizeCheckBox.setSelected(parent.getGUIController().isRandomizeList(playListUUID));
 		stopAfterEachSoundCheckBox.setSelected(parent.getGUIController().isStopAfterEachSound(playListUUID));
+		gaplessCheckBox.setSelected(parent.getGUIController().isGapless(playListUUID));
 		playAtRandomVolumesSliderFrom.setValue((int) (parent.getGUIController().getRandomizeVolumeFrom(playListUUID)*100));
 		playAtRandomVolumesSliderTo.setValue((int) (parent.getGUIController().getRandomizeVolumeTo(playListUUID)*100));
 		fadeInSpinner.setValue(parent.getGUIController().getFadeIn(playListUUID)/1000.0);
 		fadeOutSpinner.setValue(parent.getGUIController().getFadeOut(playListUUID)/1000.0);
 		overlapSpinner.setValue(parent.getGUIController().getOverlap(playListUUID)/1000.0);
+		fadeCurveComboBox.setSelectedItem(parent.getGUIController().getFadeCurve(playListUUID));
 		editing = false;
 	}
 
@@ -501,6 +568,20 @@ public class SettingsPanel extends javax.swing.JPanel implements ListDataListene
 			itemList.add(new RemoveHotkeyMenuItem(tuple.second, tuple.second.getDescription(), getGUIController()));
 		}
 
+		hotkeyMenu.add(new AddMenuItem(
+				new AbstractAction("Set gapless transitions") {
+					@Override
+					public void actionPerformed(final ActionEvent arg0) {
+						KeyEvent e = new HotkeyDialog(SwingUtilities.getWindowAncestor(SettingsPanel.this)).getEvent(); if (e.getKeyCode() == KeyEvent.VK_ESCAPE) return;
+						Object obj = UserInput.getInput(SettingsPanel.this, "Turn on", "Turn off");
+						parent.getGUIController().setHotkey(playListUUID, e, gaplessAction.specialize(obj + " gapless transitions for '" + title + "'", "Turn on".equals(obj)));
+					}
+				}));
+
+		for (Tuple<String,Action> tuple : getGUIController().getHotkeys(gaplessAction)) {
+			itemList.add(new RemoveHotkeyMenuItem(tuple.second, tuple.second.getDescription(), getGUIController()));
+		}
+
 		hotkeyMenu.add(new AddMenuItem(
 				new AbstractAction("Set fade in") {
 					@Override
@@ -546,6 +627,21 @@ public class SettingsPanel extends javax.swing.JPanel implements ListDataListene
 			itemList.add(new RemoveHotkeyMenuItem(tuple.second, tuple.second.getDescription(), getGUIController()));
 		}
 
+		hotkeyMenu.add(new AddMenuItem(
+				new AbstractAction("Set fade curve") {
+					@Override
+					public void actionPerformed(final ActionEvent arg0) {
+						KeyEvent e = new HotkeyDialog(SwingUtilities.getWindowAncestor(SettingsPanel.this)).getEvent(); if (e.getKeyCode() == KeyEvent.VK_ESCAPE) return;
+						Object obj = UserInput.getInput(SettingsPanel.this, (Object[]) FadeCurve.values());
+						if (obj != null)
+							parent.getGUIController().setHotkey(playListUUID, e, fadeCurveAction.specialize("Set fade curve for '" + title + "' to " + obj, obj));
+					}
+				}));
+
+		for (Tuple<String,Action> tuple : getGUIController().getHotkeys(fadeCurveAction)) {
+			itemList.add(new RemoveHotkeyMenuItem(tuple.second, tuple.second.getDescription(), getGUIController()));
+		}
+
 		if (!itemList.isEmpty()) {
 			hotkeyMenu.add(new TitledSeparator("Remove hotkeys", true));
 		}